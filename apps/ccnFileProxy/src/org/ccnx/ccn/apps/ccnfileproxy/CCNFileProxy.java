@@ -18,15 +18,13 @@
 package org.ccnx.ccn.apps.ccnfileproxy;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 
 import org.ccnx.ccn.CCNFilterListener;
 import org.ccnx.ccn.CCNHandle;
 import org.ccnx.ccn.config.ConfigurationException;
 import org.ccnx.ccn.impl.support.Log;
-import org.ccnx.ccn.io.CCNFileOutputStream;
+import org.ccnx.ccn.io.CCNFileSegmentCache;
 import org.ccnx.ccn.profiles.CommandMarker;
 import org.ccnx.ccn.profiles.SegmentationProfile;
 import org.ccnx.ccn.profiles.VersioningProfile;
@@ -59,14 +57,13 @@ import org.ccnx.ccn.protocol.MalformedContentNameStringException;
  * then asking for ccnx:/testprefix/bar.txt would return the file bar.txt (segmented
  * appropriately), and asking for ccnx:/testprefix/baz/box.txt would return box.txt.
  * The version for each file is set using the last modified information available from
- * the file system for the real file (but the file is re-signed every time you ask
- * for it from this server, so will result in slightly different pieces of content
- * with different signatures). The default prefix is ccnx:/, which means asking
+ * the file system for the real file. Each version is segmented and signed the first
+ * time it is asked for, and later requests are answered with the same signed content
+ * from a CCNFileSegmentCache, until the file changes. The default prefix is ccnx:/, which means asking
  * for ccnx:/bar.txt would get you bar.txt.
  * 
  * Future improvements: 
- * - cache the original signing information so even if the
- * data falls out of ccnd's cache, you get the same signature information back,
+ * - spill the signed content of large files to disk instead of holding it in memory,
  * - implement a NE responder to list files. 
  * - signal handling
  * - logging level control from a command line argument
@@ -75,13 +72,13 @@ import org.ccnx.ccn.protocol.MalformedContentNameStringException;
 public class CCNFileProxy implements CCNFilterListener {
 	
 	static String DEFAULT_URI = "ccnx:/";
-	static int BUF_SIZE = 4096;
 	
 	protected boolean _finished = false;
 	protected ContentName _prefix; 
 	protected String _filePrefix;
 	protected File _rootDirectory;
 	protected CCNHandle _handle;
+	protected CCNFileSegmentCache _fileCache;
 	
 	private ContentName _responseName = null;
 	
@@ -98,6 +95,7 @@ public class CCNFileProxy implements CCNFilterListener {
 			throw new IOException("Cannot serve files from directory " + filePrefix + ": directory does not exist!");
 		}
 		_handle = CCNHandle.open();
+		_fileCache = new CCNFileSegmentCache(_handle);
 		
 		//set response name for NE requests
 		_responseName = KeyProfile.keyName(null, _handle.keyManager().getDefaultKeyID());
@@ -172,45 +170,21 @@ public class CCNFileProxy implements CCNFilterListener {
 	 */
 	protected boolean writeFile(Interest outstandingInterest) throws IOException {
 		
-		File fileToWrite = ccnNameToFilePath(outstandingInterest.name());
+		// An interest for the first segment names the file the same way as one without a segment
+		ContentName fileName = SegmentationProfile.segmentRoot(outstandingInterest.name());
+		File fileToWrite = ccnNameToFilePath(fileName);
 		Log.info("CCNFileProxy: extracted request for file: " + fileToWrite.getAbsolutePath() + " exists? ", fileToWrite.exists());
 		if (!fileToWrite.exists()) {
 			Log.warning("File {0} does not exist. Ignoring request.", fileToWrite.getAbsoluteFile());
 			return false;
 		}
 		
-		FileInputStream fis = null;
-		try {
-			fis = new FileInputStream(fileToWrite);
-		} catch (FileNotFoundException fnf) {
-			Log.warning("Unexpected: file we expected to exist doesn't exist: {0}!", fileToWrite.getAbsolutePath());
-			return false;
-		}
-		
 		// Set the version of the CCN content to be the last modification time of the file.
 		CCNTime modificationTime = new CCNTime(fileToWrite.lastModified());
-		ContentName versionedName = 
-			VersioningProfile.addVersion(new ContentName(_prefix, 
-						outstandingInterest.name().postfix(_prefix).components()), modificationTime);
+		ContentName versionedName = new ContentName(fileName, modificationTime);
 
-		// CCNFileOutputStream will use the version on a name you hand it (or if the name
-		// is unversioned, it will version it).
-		CCNFileOutputStream ccnout = new CCNFileOutputStream(versionedName, _handle);
-		
-		// We have an interest already, register it so we can write immediately.
-		ccnout.addOutstandingInterest(outstandingInterest);
-		
-		byte [] buffer = new byte[BUF_SIZE];
-		
-		int read = fis.read(buffer);
-		while (read >= 0) {
-			ccnout.write(buffer, 0, read);
-			read = fis.read(buffer);
-		} 
-		fis.close();
-		ccnout.close(); // will flush
-		
-		return true;
+		// Segmented and signed only the first time this version is asked for.
+		return _fileCache.serve(fileToWrite, versionedName, outstandingInterest);
 	}
 	
 	/**
@@ -291,6 +265,7 @@ public class CCNFileProxy implements CCNFilterListener {
 	public void shutdown() throws IOException {
 		if (null != _handle) {
 			_handle.unregisterFilter(_prefix, this);
+			_fileCache.close();
 			Log.info("Shutting down file proxy for " + _filePrefix + " on CCNx namespace " + _prefix + "...");
 			System.out.println("Shutting down file proxy for " + _filePrefix + " on CCNx namespace " + _prefix + "...");
 		}
@@ -166,13 +166,31 @@ public class SystemConfiguration {
 	public static int CCNDID_DISCOVERY_TIMEOUT = CCNDID_DISCOVERY_TIMEOUT_DEFAULT;
 
 	/**
-	 * Pipeline size for pipeline in CCNAbstractInputStream
+	 * Pipeline size for pipeline in CCNAbstractInputStream. With an adaptive
+	 * pipeline this is the window the pipeline starts from.
 	 * Default is 4
 	 */
 	protected static final String PIPELINE_SIZE_PROPERTY = "org.ccnx.PipelineSize";
 	protected static final String PIPELINE_SIZE_ENV_VAR = "JAVA_PIPELINE_SIZE";
 	public static int PIPELINE_SIZE = 4;
 
+	/**
+	 * Largest window an adaptive pipeline in CCNAbstractInputStream grows to
+	 * Default is 256
+	 */
+	protected static final String PIPELINE_MAX_SIZE_PROPERTY = "org.ccnx.PipelineMaxSize";
+	protected static final String PIPELINE_MAX_SIZE_ENV_VAR = "JAVA_PIPELINE_MAX_SIZE";
+	public static int PIPELINE_MAX_SIZE = 256;
+
+	/**
+	 * Whether the pipeline in CCNAbstractInputStream adapts its window to the
+	 * path (see AIMDPipelineWindow), or keeps PIPELINE_SIZE segments outstanding
+	 * Default is on
+	 */
+	protected static final String PIPELINE_ADAPTIVE_PROPERTY = "org.ccnx.PipelineAdaptive";
+	protected static final String PIPELINE_ADAPTIVE_ENV_VAR = "JAVA_PIPELINE_ADAPTIVE";
+	public static boolean PIPELINE_ADAPTIVE = true;
+
 	/**
 	 * Pipeline segment attempts for pipeline in CCNAbstractInputStream
 	 * Default is 5
@@ -184,6 +202,8 @@ public class SystemConfiguration {
 	/**
 	 * Pipeline round trip time factor for pipeline in CCNAbstractInputStream
 	 * Default is 2
+	 * No longer used by the pipeline, which re-expresses interests after the
+	 * retransmission timeout of its RTTEstimator
 	 */
 	protected static final String PIPELINE_RTT_PROPERTY = "org.ccnx.PipelineRTTFactor";
 	protected static final String PIPELINE_RTT_ENV_VAR = "JAVA_PIPELINE_RTTFACTOR";
@@ -251,6 +271,76 @@ public class SystemConfiguration {
 	protected final static String SETTABLE_SHORT_TIMEOUT_ENV_VAR = "SETTABLE_SHORT_TIMEOUT";
 	public static int SETTABLE_SHORT_TIMEOUT = SHORT_TIMEOUT;
 
+	/**
+	 * Number of worker threads CCNNetworkManager uses to call content and interest handlers.
+	 * Default is 0, which calls handlers directly on the network reader thread.
+	 */
+	protected static final String DISPATCH_THREADS_PROPERTY = "org.ccnx.netmanager.DispatchThreads";
+	protected static final String DISPATCH_THREADS_ENV_VAR = "CCNX_DISPATCH_THREADS";
+	public static int DISPATCH_THREADS = 0;
+
+	/**
+	 * Maximum number of handler calls CCNNetworkManager will queue for its worker threads
+	 * before the network reader thread waits for them to catch up.
+	 * Default is 1000
+	 */
+	protected static final String DISPATCH_QUEUE_SIZE_PROPERTY = "org.ccnx.netmanager.DispatchQueueSize";
+	protected static final String DISPATCH_QUEUE_SIZE_ENV_VAR = "CCNX_DISPATCH_QUEUE_SIZE";
+	public static int DISPATCH_QUEUE_SIZE = 1000;
+
+	/**
+	 * Number of worker threads shared by input streams to verify the signatures of
+	 * the segments they receive. Default is the number of available processors;
+	 * 0 verifies segments on the thread that delivers them.
+	 */
+	protected static final String VERIFY_THREADS_PROPERTY = "org.ccnx.io.VerifyThreads";
+	protected static final String VERIFY_THREADS_ENV_VAR = "CCNX_VERIFY_THREADS";
+	public static int VERIFY_THREADS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Number of worker threads shared by CPU bound work that can be split up, such as
+	 * hashing and encoding the segments of a Merkle hash tree in CCNSegmenter. Default
+	 * is the number of available processors; 1 or less does the work on the calling thread.
+	 */
+	protected static final String PARALLEL_THREADS_PROPERTY = "org.ccnx.ParallelThreads";
+	protected static final String PARALLEL_THREADS_ENV_VAR = "CCNX_PARALLEL_THREADS";
+	public static int PARALLEL_THREADS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Should output streams sign and write out each group of segments on a background
+	 * thread, while the writer fills the next group (see CCNSegmenter#setAsynchronous)?
+	 * Default is false.
+	 */
+	protected static final String ASYNC_OUTPUT_PROPERTY = "org.ccnx.io.AsyncOutput";
+	protected static final String ASYNC_OUTPUT_ENV_VAR = "CCNX_ASYNC_OUTPUT";
+	public static boolean ASYNC_OUTPUT = false;
+
+	/**
+	 * Number of verified, decrypted segments each input stream keeps after reading them,
+	 * so that seeking back to them does not retrieve them again. Default is 32; 0 disables
+	 * the cache.
+	 */
+	protected static final String SEGMENT_CACHE_SIZE_PROPERTY = "org.ccnx.io.SegmentCacheSize";
+	protected static final String SEGMENT_CACHE_SIZE_ENV_VAR = "CCNX_SEGMENT_CACHE_SIZE";
+	public static int SEGMENT_CACHE_SIZE = 32;
+
+	/**
+	 * Number of segments past a seek target an input stream makes sure it has, or has
+	 * asked for, when the target itself is served from its segment cache. Default is 4.
+	 */
+	protected static final String SEEK_READAHEAD_PROPERTY = "org.ccnx.io.SeekReadahead";
+	protected static final String SEEK_READAHEAD_ENV_VAR = "CCNX_SEEK_READAHEAD";
+	public static int SEEK_READAHEAD = 4;
+
+	/**
+	 * Number of distinct name components ContentName will keep in its interning pool
+	 * so that decoded names with common prefixes share component storage.
+	 * Default is 0, which disables interning.
+	 */
+	protected static final String NAME_COMPONENT_POOL_SIZE_PROPERTY = "org.ccnx.ContentName.ComponentPoolSize";
+	protected static final String NAME_COMPONENT_POOL_SIZE_ENV_VAR = "CCNX_NAME_COMPONENT_POOL_SIZE";
+	public static int NAME_COMPONENT_POOL_SIZE = 0;
+
 	/**
 	 * Should we dump netmanager statistics on shutdown
 	 */
@@ -398,6 +488,17 @@ public class SystemConfiguration {
 			throw e;
 		}
 
+		// Allow override of default largest pipeline size for CCNAbstractInputStream
+		try {
+			PIPELINE_MAX_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(PIPELINE_MAX_SIZE_PROPERTY, PIPELINE_MAX_SIZE_ENV_VAR, "256"));
+		} catch (NumberFormatException e) {
+			System.err.println("The PipelineMaxSize must be an integer.");
+			throw e;
+		}
+
+		// Allow a fixed size pipeline in CCNAbstractInputStream
+		PIPELINE_ADAPTIVE = Boolean.parseBoolean(retrievePropertyOrEnvironmentVariable(PIPELINE_ADAPTIVE_PROPERTY, PIPELINE_ADAPTIVE_ENV_VAR, STRING_TRUE));
+
 		// Allow override of default pipeline size for CCNAbstractInputStream
 		try {
 			PIPELINE_SEGMENTATTEMPTS = Integer.parseInt(retrievePropertyOrEnvironmentVariable(PIPELINE_ATTEMPTS_PROPERTY, PIPELINE_ATTEMPTS_ENV_VAR, "5"));
@@ -480,6 +581,61 @@ public class SystemConfiguration {
 			throw e;
 		}
 		
+		// Allow handler dispatch from CCNNetworkManager on worker threads
+		try {
+			DISPATCH_THREADS = Integer.parseInt(retrievePropertyOrEnvironmentVariable(DISPATCH_THREADS_PROPERTY, DISPATCH_THREADS_ENV_VAR, Integer.toString(DISPATCH_THREADS)));
+		} catch (NumberFormatException e) {
+			System.err.println("The number of dispatch threads must be an integer.");
+			throw e;
+		}
+
+		try {
+			DISPATCH_QUEUE_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(DISPATCH_QUEUE_SIZE_PROPERTY, DISPATCH_QUEUE_SIZE_ENV_VAR, Integer.toString(DISPATCH_QUEUE_SIZE)));
+		} catch (NumberFormatException e) {
+			System.err.println("The dispatch queue size must be an integer.");
+			throw e;
+		}
+
+		// Allow segment verification in input streams on worker threads
+		try {
+			VERIFY_THREADS = Integer.parseInt(retrievePropertyOrEnvironmentVariable(VERIFY_THREADS_PROPERTY, VERIFY_THREADS_ENV_VAR, Integer.toString(VERIFY_THREADS)));
+		} catch (NumberFormatException e) {
+			System.err.println("The number of verification threads must be an integer.");
+			throw e;
+		}
+
+		// Allow parallel segment signing
+		try {
+			PARALLEL_THREADS = Integer.parseInt(retrievePropertyOrEnvironmentVariable(PARALLEL_THREADS_PROPERTY, PARALLEL_THREADS_ENV_VAR, Integer.toString(PARALLEL_THREADS)));
+		} catch (NumberFormatException e) {
+			System.err.println("The number of parallel threads must be an integer.");
+			throw e;
+		}
+
+		ASYNC_OUTPUT = Boolean.parseBoolean(retrievePropertyOrEnvironmentVariable(ASYNC_OUTPUT_PROPERTY, ASYNC_OUTPUT_ENV_VAR, STRING_FALSE));
+
+		// Allow sizing of the input stream segment cache and seek readahead
+		try {
+			SEGMENT_CACHE_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(SEGMENT_CACHE_SIZE_PROPERTY, SEGMENT_CACHE_SIZE_ENV_VAR, Integer.toString(SEGMENT_CACHE_SIZE)));
+		} catch (NumberFormatException e) {
+			System.err.println("The segment cache size must be an integer.");
+			throw e;
+		}
+		try {
+			SEEK_READAHEAD = Integer.parseInt(retrievePropertyOrEnvironmentVariable(SEEK_READAHEAD_PROPERTY, SEEK_READAHEAD_ENV_VAR, Integer.toString(SEEK_READAHEAD)));
+		} catch (NumberFormatException e) {
+			System.err.println("The seek readahead must be an integer.");
+			throw e;
+		}
+
+		// Allow sharing of common name components between decoded ContentNames
+		try {
+			NAME_COMPONENT_POOL_SIZE = Integer.parseInt(retrievePropertyOrEnvironmentVariable(NAME_COMPONENT_POOL_SIZE_PROPERTY, NAME_COMPONENT_POOL_SIZE_ENV_VAR, Integer.toString(NAME_COMPONENT_POOL_SIZE)));
+		} catch (NumberFormatException e) {
+			System.err.println("The name component pool size must be an integer.");
+			throw e;
+		}
+
 		_systemThreadpool.setKeepAliveTime(SYSTEM_THREAD_LIFE, TimeUnit.SECONDS);
 		
 		// Dump netmanager statistics if requested
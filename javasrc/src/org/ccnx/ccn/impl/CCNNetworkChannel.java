@@ -221,7 +221,10 @@ public class CCNNetworkChannel extends InputStream {
 				if (ret <= 0 || !isConnected())
 					return null;
 			}
-			_decoder.beginDecoding(this);
+			// If the whole packet is already in the buffer we can decode it in place,
+			// otherwise decode from the channel as a stream which reads in the rest
+			if (! _decoder.beginDecoding(_datagram))
+				_decoder.beginDecoding(this);
 			return _decoder.getPacket();
 		}
 		try {
@@ -327,6 +330,51 @@ public class CCNNetworkChannel extends InputStream {
 		return -1;
 	}
 
+	/**
+	 * Write several packets to ccnd. Over TCP this is done as a gathering write so the packets can
+	 * go out in a single system call. Over UDP each packet must be its own datagram.
+	 * @param srcs - ByteBuffers to write, each containing one or more complete packets
+	 * @return - number of bytes written
+	 * @throws IOException
+	 */
+	public long write(ByteBuffer[] srcs) throws IOException {
+		if (! isConnected())
+			return -1;
+		if (Log.isLoggable(Log.FAC_NETMANAGER, Level.FINEST))
+			Log.finest(Log.FAC_NETMANAGER,
+					"NetworkChannel {0}: write() of {1} buffers on port {2}", _channelId, srcs.length, _ncLocalPort);
+
+		try {
+			long written = 0;
+			if (_ncDGrmChannel != null) {
+				for (ByteBuffer src : srcs)
+					written += _ncDGrmChannel.write(src);
+				return written;
+			} else {
+				// XXX -this depends on synchronization in caller, as for write(ByteBuffer)
+				int first = 0;
+				while (first < srcs.length) {
+					if (! isConnected())
+						return -1;
+					long b = _ncSockChannel.write(srcs, first, srcs.length - first);
+					if (b > 0) {
+						written += b;
+					} else {
+						_ncWriteSelector.selectedKeys().clear();
+						_ncWriteSelector.select();
+					}
+					while (first < srcs.length && !srcs[first].hasRemaining())
+						first++;
+				}
+				return written;
+			}
+		} catch (PortUnreachableException pue) {}
+		  catch (ClosedChannelException cce) {}
+		Log.info(Log.FAC_NETMANAGER, "NetworkChannel {0}: closing due to error on write", _channelId);
+		close(true);
+		return -1;
+	}
+
 	/**
 	 * Force wakeup from a select
 	 * @return the selector
@@ -26,11 +26,22 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.NotYetConnectedException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -43,7 +54,6 @@ import org.ccnx.ccn.config.SystemConfiguration;
 import org.ccnx.ccn.impl.CCNStats.CCNEnumStats;
 import org.ccnx.ccn.impl.CCNStats.CCNEnumStats.IStatsEnum;
 import org.ccnx.ccn.impl.InterestTable.Entry;
-import org.ccnx.ccn.impl.encoding.GenericXMLEncodable;
 import org.ccnx.ccn.impl.encoding.XMLEncodable;
 import org.ccnx.ccn.impl.support.Log;
 import org.ccnx.ccn.io.content.ContentEncodingException;
@@ -70,6 +80,10 @@ import org.ccnx.ccn.protocol.PublisherPublicKeyDigest;
  * within the callback. This is similar to the restrictions on the event dispatching thread in Swing. The
  * setup of callback handlers should also normally be done via the CCNHandle API.
  *
+ * Alternatively, SystemConfiguration.DISPATCH_THREADS can be set to call the handlers from a pool of
+ * worker threads instead. Each handler is still called back from only one thread at a time, in the order
+ * its packets were read, but different handlers may then be called back concurrently.
+ *
  * The class also has a separate timer process which is used to refresh unsatisfied interests and to
  * keep UDP connections alive by sending a heartbeat packet at regular intervals.
  *
@@ -92,6 +106,8 @@ public class CCNNetworkManager implements Runnable {
 	public static final String KEEPALIVE_NAME = "/HereIAm";
 	public static final int THREAD_LIFE = 8;	// in seconds
 	public static final int MAX_PAYLOAD = 8800; // number of bytes in UDP payload
+	public static final int MAX_WRITE_BATCH = 64; // max number of packets in one write to the channel
+	public static final int MAX_WRITE_QUEUE_BYTES = 1024 * 1024; // max bytes waiting to be written
 
 	// These are to make log messages from CCNNetworkManager intelligable when
 	// there are multiple managers running
@@ -139,6 +155,16 @@ public class CCNNetworkManager implements Runnable {
 	protected InterestTable<InterestRegistration> _myInterests = new InterestTable<InterestRegistration>();
 	protected InterestTable<Filter> _myFilters = new InterestTable<Filter>();
 
+	// Registered interests ordered by the time they next need to be refreshed, so the periodic
+	// writer only has to look at the ones that are due. Registrations are not removed from the
+	// queue when they are unregistered - they are dropped when they reach the head of the queue.
+	protected PriorityQueue<InterestRegistration> _refreshQueue = new PriorityQueue<InterestRegistration>(11,
+			new Comparator<InterestRegistration>() {
+				public int compare(InterestRegistration r1, InterestRegistration r2) {
+					return (r1.nextRefresh < r2.nextRefresh) ? -1 : ((r1.nextRefresh == r2.nextRefresh) ? 0 : 1);
+				}
+			});
+
 	// Prefix registration handling. Only one registration change (add or remove a registration) with ccnd is
 	// allowed at once. To enforce this, before attempting a registration change, users must acquire
 	// _registrationChangeInProgress which locks access to ccnd registration across the entire face.
@@ -162,6 +188,16 @@ public class CCNNetworkManager implements Runnable {
 	// to make it impossible or at least unlikely that this semaphore can be held for a long period without being released.
 	protected Semaphore _registrationChangeInProgress = new Semaphore(1);
 
+	// Packets waiting to be written. Only one thread at a time writes to the channel - the
+	// one that set _writing - and it writes only what was queued when it took over. Threads
+	// whose packets were queued after that wait for them to be taken, one of them becoming
+	// the next writer. _writeQueued and _writeTaken count packets added to and taken from the queue.
+	protected ArrayDeque<ByteBuffer> _writeQueue = new ArrayDeque<ByteBuffer>();
+	protected int _writeQueueBytes = 0;
+	protected boolean _writing = false;
+	protected long _writeQueued = 0;
+	protected long _writeTaken = 0;
+
 	// Periodic timer
 	protected Timer _periodicTimer = null;
 	protected Object _timersSetupLock = new Object();
@@ -173,10 +209,18 @@ public class CCNNetworkManager implements Runnable {
 	protected long _currentHandler = 0;
 	protected long _lastHandler = -1;
 
-	// Atomic cancel
-	protected InterestRegistration _beingDelivered = null;
+	// Atomic cancel - registrations whose content is being delivered, or is waiting for a
+	// dispatch thread to deliver it
+	protected Set<InterestRegistration> _beingDelivered = Collections.newSetFromMap(new IdentityHashMap<InterestRegistration, Boolean>());
 	protected Object _beingDeliveredLock = new Object();
 
+	// Optional dispatch of handler callbacks to worker threads. If there is no pool, handlers
+	// are called directly from the reader thread. _dispatchSlots bounds the number of callbacks
+	// waiting for the pool, and _dispatchers holds the queue of waiting callbacks for each handler.
+	protected ThreadPoolExecutor _dispatchPool = null;
+	protected Semaphore _dispatchSlots = null;
+	protected IdentityHashMap<Object, HandlerDispatcher> _dispatchers = new IdentityHashMap<Object, HandlerDispatcher>();
+
 	/**
 	 * Keep track of prefixes that are actually registered with ccnd (as opposed to Filters used
 	 * to dispatch interests). There may be several filters for each registered prefix.
@@ -249,27 +293,40 @@ public class CCNNetworkManager implements Runnable {
             long ourTime = System.currentTimeMillis();
             long minInterestRefreshTime = PERIOD + ourTime;
 
-			// Re-express interests that need to be re-expressed
+			// Re-express interests that need to be re-expressed. Due interests are taken from the
+			// head of the refresh queue and rescheduled, then all written out together.
+			ArrayList<Interest> refreshes = new ArrayList<Interest>();
+			synchronized (_refreshQueue) {
+				InterestRegistration reg;
+				while (null != (reg = _refreshQueue.peek())) {
+					if (!reg.registered) {
+						_refreshQueue.poll();
+						continue;
+					}
+					// allow some slop for scheduling
+					if (ourTime + 20 <= reg.nextRefresh) {
+						minInterestRefreshTime = Math.min(minInterestRefreshTime, reg.nextRefresh);
+						break;
+					}
+					_refreshQueue.poll();
+					if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINER) )
+						Log.finer(Log.FAC_NETMANAGER, "Refresh interest: {0}", reg.interest);
+					refreshes.add(reg.interest);
+					reg.nextRefresh = ourTime + SystemConfiguration.INTEREST_REEXPRESSION_DEFAULT;
+					// The refresh time is always in the future, so it can't be seen again by this loop
+					_refreshQueue.add(reg);
+				}
+			}
 			try {
-				for (Entry<InterestRegistration> entry : _myInterests.values()) {
-					InterestRegistration reg = entry.value();
-					 // allow some slop for scheduling
-                    if (ourTime + 20 > reg.nextRefresh) {
-                            if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINER) )
-                                    Log.finer(Log.FAC_NETMANAGER, "Refresh interest: {0}", reg.interest);
-                            _lastHeartbeat = ourTime;
-                            reg.nextRefresh = ourTime + SystemConfiguration.INTEREST_REEXPRESSION_DEFAULT;
-;
-                            try {
-                                write(reg.interest);
-                        } catch (NotYetConnectedException nyce) {
-                                refreshError = true;
-                        }
-                    }
-					if (minInterestRefreshTime > reg.nextRefresh)
-						minInterestRefreshTime = reg.nextRefresh;
+				if (refreshes.size() > 0) {
+					_lastHeartbeat = ourTime;
+					_stats.increment(StatsEnum.RefreshInterests, refreshes.size());
+					try {
+						write(refreshes);
+					} catch (NotYetConnectedException nyce) {
+						refreshError = true;
+					}
 				}
-
 			} catch (ContentEncodingException xmlex) {
                 Log.severe(Log.FAC_NETMANAGER, "PeriodicWriter interest refresh thread failure (Malformed datagram): {0}", xmlex.getMessage());
                 Log.warningStackTrace(xmlex);
@@ -471,6 +528,7 @@ public class CCNNetworkManager implements Runnable {
 	protected class InterestRegistration extends CallbackHandlerRegistration {
 		public final Interest interest;
 		protected long nextRefresh;		// next time to refresh the interest
+		protected volatile boolean registered = false;	// still in _myInterests (and so needs refreshing)
 		protected ContentObject content;
 
 		// All internal client interests must have an owner
@@ -485,19 +543,15 @@ public class CCNNetworkManager implements Runnable {
 		}
 
 		/**
-		 * Deliver content to a registered handler
+		 * Deliver content to a registered handler. A registration with a handler must
+		 * already have been unregistered by the caller.
 		 */
 		public void deliver(ContentObject co) {
-			synchronized (_beingDeliveredLock) {
-				_beingDelivered = this;
-			}
 			try {
 				if (null != this.handler) {
 					if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINER) )
 						Log.finer(Log.FAC_NETMANAGER, "Content callback (" + co + " data) for: {0}", this.interest.name());
 
-					unregisterInterest(this);
-
 					// Callback the client - we can't hold any locks here!
 					Interest updatedInterest = ((CCNContentHandler)handler).handleContent(co, interest);
 
@@ -536,10 +590,10 @@ public class CCNNetworkManager implements Runnable {
 				_stats.increment(StatsEnum.DeliverContentFailed);
 				Log.warning(Log.FAC_NETMANAGER, "failed to deliver data: {0}", ex);
 				Log.warningStackTrace(ex);
-			}
-
-			synchronized (_beingDeliveredLock) {
-				_beingDelivered = null;
+			} finally {
+				synchronized (_beingDeliveredLock) {
+					_beingDelivered.remove(this);
+				}
 			}
 		}
 
@@ -584,6 +638,115 @@ public class CCNNetworkManager implements Runnable {
 		}
 	} /* protected class Filter extends CallbackHandlerRegistration */
 
+	/**
+	 * A handler callback waiting for a dispatch thread
+	 */
+	protected abstract class Dispatch implements Runnable {
+		protected final long queued = System.nanoTime();
+		protected boolean holdsSlot = false;	// whether this callback took one of _dispatchSlots
+	}
+
+	/**
+	 * Runs the callbacks for one handler on the dispatch pool. Callbacks for a handler are
+	 * run one at a time in the order they were queued, so a handler never sees callbacks
+	 * concurrently or out of order, while different handlers run in parallel.
+	 * A dispatcher only exists while it has callbacks to run.
+	 */
+	protected class HandlerDispatcher implements Runnable {
+		protected final Object _handler;
+		protected final ArrayDeque<Dispatch> _pending = new ArrayDeque<Dispatch>();
+
+		public HandlerDispatcher(Object handler) {
+			_handler = handler;
+		}
+
+		public void run() {
+			while (true) {
+				Dispatch dispatch = null;
+				synchronized (_dispatchers) {
+					dispatch = _pending.poll();
+					if (null == dispatch) {
+						_dispatchers.remove(_handler);
+						return;
+					}
+				}
+				if (dispatch.holdsSlot)
+					_dispatchSlots.release();
+				_stats.addSample(StatsEnum.DispatchWaitTime, System.nanoTime() - dispatch.queued);
+				try {
+					dispatch.run();
+				} catch (RuntimeException ex) {
+					Log.warning(Log.FAC_NETMANAGER, formatMessage("Dispatch thread failure: {0}"), ex);
+					Log.warningStackTrace(ex);
+				} catch (Error er) {
+					Log.severe(Log.FAC_NETMANAGER, formatMessage("Dispatch thread error: " + er.getMessage() + " - exiting"));
+					Log.severeStackTrace(Log.FAC_NETMANAGER, er);
+					System.exit(1);
+				}
+			}
+		}
+	} /* protected class HandlerDispatcher implements Runnable */
+
+	/**
+	 * Run the interest handlers of a list of filters until one of them handles the interest.
+	 * Each handler is called from its own HandlerDispatcher.
+	 */
+	protected class InterestDispatch extends Dispatch {
+		protected final List<Filter> _filters;
+		protected final int _index;
+		protected final Interest _interest;
+
+		public InterestDispatch(List<Filter> filters, int index, Interest interest) {
+			_filters = filters;
+			_index = index;
+			_interest = interest;
+		}
+
+		public void run() {
+			Filter filter = _filters.get(_index);
+			boolean succeeded = false;
+			if (!filter.cancelled) {
+				long startTime = System.nanoTime();
+				succeeded = filter.deliver(_interest);
+				_stats.addSample(StatsEnum.InterestHandlerTime, System.nanoTime() - startTime);
+			}
+			if (!succeeded && _index + 1 < _filters.size()) {
+				Filter next = _filters.get(_index + 1);
+				// We're on a dispatch thread, so we must not wait for a slot here - the threads
+				// that would free one may all be waiting too
+				dispatch(next.handler, new InterestDispatch(_filters, _index + 1, _interest), false);
+			}
+		}
+	}
+
+	/**
+	 * Deliver content to the handler of an interest registration
+	 */
+	protected class ContentDispatch extends Dispatch {
+		protected final InterestRegistration _reg;
+		protected final ContentObject _content;
+
+		public ContentDispatch(InterestRegistration reg, ContentObject content) {
+			_reg = reg;
+			_content = content;
+		}
+
+		public void run() {
+			if (_reg.cancelled) {
+				// Cancelled while waiting for a dispatch thread
+				if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINER) )
+					Log.finer(Log.FAC_NETMANAGER, "Content callback skipped (cancelled) for: {0}", _reg.interest.name());
+				synchronized (_beingDeliveredLock) {
+					_beingDelivered.remove(_reg);
+				}
+				return;
+			}
+			long startTime = System.nanoTime();
+			_reg.deliver(_content);
+			_stats.addSample(StatsEnum.ContentHandlerTime, System.nanoTime() - startTime);
+		}
+	}
+
 	private class CCNDIdGetter implements Runnable {
 		CCNNetworkManager _networkManager;
 		KeyManager _keyManager;
@@ -670,6 +833,22 @@ public class CCNNetworkManager implements Runnable {
 			setTap(unique_tapname);
 		}
 
+		if (SystemConfiguration.DISPATCH_THREADS > 0) {
+			if( Log.isLoggable(Log.FAC_NETMANAGER, Level.INFO) )
+				Log.info(Log.FAC_NETMANAGER, formatMessage("Dispatching handlers on " + SystemConfiguration.DISPATCH_THREADS + " threads"));
+			_dispatchSlots = new Semaphore(SystemConfiguration.DISPATCH_QUEUE_SIZE);
+			_dispatchPool = new ThreadPoolExecutor(SystemConfiguration.DISPATCH_THREADS, SystemConfiguration.DISPATCH_THREADS,
+					THREAD_LIFE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private int _count = 0;
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "CCNNetworkManager " + _managerId + " dispatch " + (++_count));
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			_dispatchPool.allowCoreThreadTimeOut(true);
+		}
+
 		_channel = new CCNNetworkChannel(_host, _port, _protocol, _tapStreamIn);
 		_ccndId = null;
 		_channel.open();
@@ -686,6 +865,8 @@ public class CCNNetworkManager implements Runnable {
 			_periodicTimer.cancel();
 		if (_thread != null)
 			_thread.interrupt();
+		if (null != _dispatchPool)
+			_dispatchPool.shutdown();
 		if (null != _channel) {
 			try {
 				setTap(null);
@@ -923,8 +1104,10 @@ public class CCNNetworkManager implements Runnable {
 
 		// Make sure potential remnants of cancelled interest are also cancelled
 		synchronized (_beingDeliveredLock) {
-			if (null != _beingDelivered  && _beingDelivered.equals(reg))
-				_beingDelivered.cancelled = true;
+			for (InterestRegistration delivering : _beingDelivered) {
+				if (delivering.equals(reg))
+					delivering.cancelled = true;
+			}
 		}
 	}
 
@@ -1079,6 +1262,8 @@ public class CCNNetworkManager implements Runnable {
 		Entry<Filter> found = null;
 		found = _myFilters.remove(filter, newOne);
 		if (null != found) {
+			// Don't call the handler for interests still waiting for a dispatch thread
+			found.value().cancelled = true;
 			boolean semaAcquired = false;
 			if (_usePrefixReg) {
 				// Deregister it with ccnd only if the refCount would go to 0
@@ -1163,7 +1348,7 @@ public class CCNNetworkManager implements Runnable {
 	protected void write(ContentObject data) throws ContentEncodingException {
 		_stats.increment(StatsEnum.WriteObject);
 
-		writeInner(data);
+		writeInner(Collections.singletonList(data.wireEncoding()));
 		if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINEST) )
 			Log.finest(Log.FAC_NETMANAGER, formatMessage("Wrote content object: {0}"), data.name());
 	}
@@ -1178,31 +1363,109 @@ public class CCNNetworkManager implements Runnable {
 	 */
 	public void write(Interest interest) throws ContentEncodingException {
 		_stats.increment(StatsEnum.WriteInterest);
-		writeInner(interest);
+		writeInner(Collections.singletonList(interest.wireEncoding()));
+	}
+
+	/**
+	 * Write several interests to ccnd, packing as many as will fit into each write
+	 * @param interests
+	 * @throws ContentEncodingException
+	 */
+	protected void write(List<Interest> interests) throws ContentEncodingException {
+		_stats.increment(StatsEnum.WriteInterest, interests.size());
+		ArrayList<byte[]> packets = new ArrayList<byte[]>(interests.size());
+		for (Interest interest : interests)
+			packets.add(interest.wireEncoding());
+		writeInner(packets);
+	}
+
+	/**
+	 * Queue packets to be written to ccnd. If no other thread is writing, this thread becomes
+	 * the writer and sends everything in the queue at that point, including packets left by
+	 * other threads, in batches. Otherwise we wait for the current writer to take our packets,
+	 * or to finish without them, in which case we become the next writer. So no thread writes
+	 * more than one queue's worth, however fast other threads add packets.
+	 * @param packets encoded packets
+	 */
+	private void writeInner(List<byte[]> packets) {
+		long toWrite;
+		synchronized (_writeQueue) {
+			boolean interrupted = false;
+			while (_writing && _writeQueueBytes >= MAX_WRITE_QUEUE_BYTES) {
+				try {
+					_writeQueue.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			for (byte[] bytes : packets) {
+				_writeQueue.add(ByteBuffer.wrap(bytes));
+				_writeQueueBytes += bytes.length;
+			}
+			_writeQueued += packets.size();
+			long ours = _writeQueued;
+			while (_writing && _writeTaken < ours) {
+				try {
+					_writeQueue.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			if (_writeTaken >= ours)
+				return;
+			_writing = true;
+			toWrite = _writeQueue.size();
+		}
+
+		try {
+			while (toWrite > 0) {
+				ByteBuffer[] batch;
+				int length = 0;
+				synchronized (_writeQueue) {
+					batch = new ByteBuffer[(int)Math.min(toWrite, MAX_WRITE_BATCH)];
+					for (int i = 0; i < batch.length; i++) {
+						batch[i] = _writeQueue.poll();
+						length += batch[i].remaining();
+					}
+					toWrite -= batch.length;
+					_writeTaken += batch.length;
+					_writeQueueBytes -= length;
+					_writeQueue.notifyAll();
+				}
+				writeBatch(batch, length);
+			}
+		} finally {
+			synchronized (_writeQueue) {
+				_writing = false;
+				_writeQueue.notifyAll();
+			}
+		}
 	}
 
 	// DKS TODO unthrown exception
-	private void writeInner(GenericXMLEncodable packet) throws ContentEncodingException {
+	private void writeBatch(ByteBuffer[] batch, int length) {
 		try {
-			byte[] bytes = packet.encode();
-			ByteBuffer datagram = ByteBuffer.wrap(bytes);
 			synchronized (_channel) {
-				int result = _channel.write(datagram);
+				long result = _channel.write(batch);
+				_stats.addSample(StatsEnum.WritePacketsPerFlush, batch.length);
 				if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINEST) )
-					Log.finest(Log.FAC_NETMANAGER, formatMessage("Wrote datagram (" + datagram.position() + " bytes, result " + result + ")"));
+					Log.finest(Log.FAC_NETMANAGER, formatMessage("Wrote " + batch.length + " packets (" + length + " bytes, result " + result + ")"));
 
-				if( result < bytes.length ) {
+				if( result < length ) {
 					_stats.increment(StatsEnum.WriteUnderflows);
 					if( Log.isLoggable(Log.FAC_NETMANAGER, Level.INFO) )
 						Log.info(Log.FAC_NETMANAGER,
-								formatMessage("Wrote datagram {0} bytes to channel, but packet was {1} bytes"),
+								formatMessage("Wrote {0} bytes to channel, but packets were {1} bytes"),
 								result,
-								bytes.length);
+								length);
 				}
 
 				if (null != _tapStreamOut) {
 					try {
-						_tapStreamOut.write(bytes);
+						for (ByteBuffer packet : batch)
+							_tapStreamOut.write(packet.array());
 					} catch (IOException io) {
 						Log.warning(Log.FAC_NETMANAGER, formatMessage("Unable to write packet to tap stream for debugging"));
 					}
@@ -1227,7 +1490,11 @@ public class CCNNetworkManager implements Runnable {
 		setupTimers();
 		if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINEST) )
 			Log.finest(Log.FAC_NETMANAGER, formatMessage("registerInterest for {0}, and obj is " + _myInterests.hashCode()), reg.interest.name());
+		reg.registered = true;
 		_myInterests.add(reg.interest, reg);
+		synchronized (_refreshQueue) {
+			_refreshQueue.add(reg);
+		}
 		return reg;
 	}
 
@@ -1242,8 +1509,10 @@ public class CCNNetworkManager implements Runnable {
 	private InterestRegistration unregisterInterest(InterestRegistration reg) {
 		InterestRegistration result = reg;
 		Entry<InterestRegistration> entry = _myInterests.remove(reg.interest, reg);
-		if (null != entry)
+		if (null != entry) {
 			result = entry.value();
+			result.registered = false;
+		}
 		return result;
 	}
 
@@ -1332,6 +1601,23 @@ public class CCNNetworkManager implements Runnable {
 	protected void deliverInterest(InterestRegistration ireg, Interest interest) {
 		_stats.increment(StatsEnum.DeliverInterest);
 
+		if (null != _dispatchPool) {
+			// The handlers are called in turn from the dispatch threads until one succeeds
+			ArrayList<Filter> filters = new ArrayList<Filter>();
+			for (Filter filter : _myFilters.getValues(ireg.interest.name())) {
+				if (filter.owner != ireg.owner) {
+					_stats.increment(StatsEnum.DeliverInterestMatchingFilters);
+					filters.add(filter);
+				}
+			}
+			if (filters.size() > 0) {
+				if( Log.isLoggable(Log.FAC_NETMANAGER, Level.FINER) )
+					Log.finer(Log.FAC_NETMANAGER, formatMessage("Dispatch delivery for interest: {0}"), interest);
+				dispatch(filters.get(0).handler, new InterestDispatch(filters, 0, interest), true);
+			}
+			return;
+		}
+
 		// Call any handlers with matching filters
 		for (Filter filter : _myFilters.getValues(ireg.interest.name())) {
 			if (filter.owner != ireg.owner) {
@@ -1356,12 +1642,64 @@ public class CCNNetworkManager implements Runnable {
 
 		for (InterestRegistration ireg : _myInterests.getValues(co)) {
 			_stats.increment(StatsEnum.DeliverContentMatchingInterests);
+			synchronized (_beingDeliveredLock) {
+				_beingDelivered.add(ireg);
+			}
+			if (null != ireg.handler) {
+				// Unregister here on the reader thread so later content can't also be
+				// delivered to this registration
+				unregisterInterest(ireg);
+				if (null != _dispatchPool) {
+					dispatch(ireg.handler, new ContentDispatch(ireg, co), true);
+					continue;
+				}
+			}
 			long startTime = System.nanoTime();
 			ireg.deliver(co);
 			_stats.addSample(StatsEnum.ContentHandlerTime, System.nanoTime() - startTime);
 		}
 	}
 
+	/**
+	 * Queue a handler callback for the dispatch threads. If too many callbacks are already
+	 * waiting, the network reader waits here for some to complete, which pushes back on it.
+	 * The dispatch threads themselves must never wait for a slot, so when they queue a
+	 * callback and none is free it is queued without one.
+	 * @param handler the handler which will be called
+	 * @param dispatch the callback
+	 * @param block true to wait for a free slot, false to queue without one if none is free
+	 */
+	protected void dispatch(Object handler, Dispatch dispatch, boolean block) {
+		if (_dispatchSlots.tryAcquire()) {
+			dispatch.holdsSlot = true;
+		} else {
+			_stats.increment(StatsEnum.DispatchQueueFull);
+			if (block) {
+				_dispatchSlots.acquireUninterruptibly();
+				dispatch.holdsSlot = true;
+			}
+		}
+		_stats.addSample(StatsEnum.DispatchQueueDepth, SystemConfiguration.DISPATCH_QUEUE_SIZE - _dispatchSlots.availablePermits());
+		synchronized (_dispatchers) {
+			HandlerDispatcher dispatcher = _dispatchers.get(handler);
+			if (null == dispatcher) {
+				dispatcher = new HandlerDispatcher(handler);
+				_dispatchers.put(handler, dispatcher);
+				dispatcher._pending.add(dispatch);
+				try {
+					_dispatchPool.execute(dispatcher);
+				} catch (RejectedExecutionException ree) {
+					// We're shutting down
+					_dispatchers.remove(handler);
+					if (dispatch.holdsSlot)
+						_dispatchSlots.release();
+				}
+			} else {
+				dispatcher._pending.add(dispatch);
+			}
+		}
+	}
+
 	/**
 	 * Diagnostic routine to get a handler stack trace in time of suspected problem
 	 */
@@ -1479,6 +1817,13 @@ public class CCNNetworkManager implements Runnable {
 		ReceiveErrors ("errors", "Number of errors from the channel in run() loop"),
 
 		ContentObjectsIgnored ("ContentObjects", "The number of ContentObjects that are never handled"),
+
+		WritePacketsPerFlush ("packets", "The average number of packets sent by each write to the channel"),
+		RefreshInterests ("interests", "The number of interests re-expressed by the periodic refresh"),
+
+		DispatchQueueDepth ("callbacks", "The average number of handler callbacks waiting for dispatch threads"),
+		DispatchWaitTime ("nanos", "The average time handler callbacks wait for a dispatch thread"),
+		DispatchQueueFull ("count", "The number of times the reader thread waited for dispatch threads to catch up"),
 		;
 
 		// ====================================
@@ -20,12 +20,20 @@ package org.ccnx.ccn.impl;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.SignatureException;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.crypto.BadPaddingException;
@@ -40,6 +48,7 @@ import org.ccnx.ccn.impl.security.crypto.CCNMerkleTree;
 import org.ccnx.ccn.impl.security.crypto.CCNMerkleTreeSigner;
 import org.ccnx.ccn.impl.security.crypto.ContentKeys;
 import org.ccnx.ccn.impl.security.crypto.UnbufferedCipherInputStream;
+import org.ccnx.ccn.impl.support.ConcurrencyUtils;
 import org.ccnx.ccn.impl.support.Log;
 import org.ccnx.ccn.io.content.ContentEncodingException;
 import org.ccnx.ccn.profiles.SegmentationProfile;
@@ -122,8 +131,24 @@ public class CCNSegmenter {
 	protected int _byteScale = SegmentationProfile.DEFAULT_SCALE;
 	protected SegmentNumberType _sequenceType = SegmentNumberType.SEGMENT_FIXED_INCREMENT;
 
+	protected static final int THREAD_LIFE = 20;	// in seconds
+
 	protected ArrayList<ContentObject> _blocks = new ArrayList<ContentObject>(HOLD_COUNT + 1);
 
+	/**
+	 * In asynchronous mode, groups of blocks are signed and handed to the flow controller
+	 * on a background thread while the caller builds the next group. At most one group is
+	 * in progress at a time; the next waits for it, so at most two groups are held.
+	 * A failure of a background group is kept in _outputFailure and thrown by every
+	 * later call that puts content, until resetOutputFailure().
+	 */
+	protected boolean _asynchronous = SystemConfiguration.ASYNC_OUTPUT;
+	protected Future<Void> _pendingOutput = null;
+	protected Throwable _outputFailure = null;
+	protected ContentName _outputNameSpace = null;
+
+	protected static ThreadPoolExecutor _outputPool = null;
+
 	protected CCNHandle _handle;
 
 	/**
@@ -470,6 +495,7 @@ public class CCNSegmenter {
 		// hash tree.   Build header, for each block, get authinfo for block,
 		// (with hash tree, block identifier, timestamp -- SQLDateTime)
 		// insert header using mid-level insert, low-level insert for actual blocks.
+		checkOutput(false);
 		if (length == 0)
 			return baseSegmentNumber;
 
@@ -508,6 +534,8 @@ public class CCNSegmenter {
 		if (_blocks.size() >= HOLD_COUNT || null != finalSegmentIndex) {
 			outputCurrentBlocks(signingKey);
 		}
+		if (null != finalSegmentIndex)
+			waitForOutput();
 
 		return nextSegmentIndex;
 	}
@@ -574,6 +602,7 @@ public class CCNSegmenter {
 			boolean flushNow) throws InvalidKeyException, SignatureException,
 			NoSuchAlgorithmException, IOException, InvalidAlgorithmParameterException {
 
+		checkOutput(false);
 		if (!flushNow && blockCount == 0)
 			return baseSegmentNumber;
 
@@ -620,6 +649,7 @@ public class CCNSegmenter {
 		}
 		if (flushNow || null != finalSegmentIndex) {
 			outputCurrentBlocks(signingKey);
+			waitForOutput();
 		}
 
 		return nextIndex;
@@ -640,20 +670,50 @@ public class CCNSegmenter {
 	 * straight signature block in rare cases where only a single block is left over for the flush
 	 * after a bulk signing pass.
 	 *
+	 * In asynchronous mode the blocks are signed and output on a background thread, once
+	 * the previous group has been.
+	 *
 	 * @param signingKey
-	 * @param finalFlush sign and dump everything if true
 	 * @throws InvalidKeyException
 	 * @throws SignatureException
 	 * @throws NoSuchAlgorithmException
 	 * @throws IOException
 	 */
-	protected void outputCurrentBlocks(PrivateKey signingKey) throws InvalidKeyException, SignatureException, NoSuchAlgorithmException, IOException {
+	protected void outputCurrentBlocks(final PrivateKey signingKey) throws InvalidKeyException, SignatureException, NoSuchAlgorithmException, IOException {
 		if (_blocks.size() == 0)
 			return;
 
-		if (_blocks.size() == 1) {
+		if (!_asynchronous) {
+			outputBlocks(_blocks, signingKey);
+			_blocks.clear();
+			return;
+		}
+
+		// Back-pressure: one group in progress at a time
+		waitForOutput();
+		final ArrayList<ContentObject> blocks = _blocks;
+		_blocks = new ArrayList<ContentObject>(HOLD_COUNT + 1);
+		_pendingOutput = outputPool().submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				outputBlocks(blocks, signingKey);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Sign a group of blocks and output them to the flow controller.
+	 * @param blockList
+	 * @param signingKey
+	 * @throws InvalidKeyException
+	 * @throws SignatureException
+	 * @throws NoSuchAlgorithmException
+	 * @throws IOException
+	 */
+	protected void outputBlocks(ArrayList<ContentObject> blockList, PrivateKey signingKey) throws InvalidKeyException, SignatureException, NoSuchAlgorithmException, IOException {
+		if (blockList.size() == 1) {
 
-			ContentObject co = _blocks.get(0);
+			ContentObject co = blockList.get(0);
 			co.sign(signingKey);
 			if( Log.isLoggable(Level.FINER))
 				Log.finer("CCNSegmenter: putting " + co.name() + " (timestamp: " + co.signedInfo().getTimestamp() + ", length: " + co.contentLength() + ")");
@@ -667,16 +727,113 @@ public class CCNSegmenter {
 			// and signedInfos in the MerkleTree blocks.
 			// For now, this generates the root signature too, so can
 			// ask for the signature for each block.
-			ContentObject[] blocks = new ContentObject[_blocks.size()];
-			_blocks.toArray(blocks);
+			ContentObject[] blocks = new ContentObject[blockList.size()];
+			blockList.toArray(blocks);
 
 			if (Log.isLoggable(Log.FAC_IO, Level.INFO))
 				Log.info(Log.FAC_IO, "flush: putting merkle tree to the network, name starts with " + blocks[0].name() + "; "
-	                    + _blocks.size() + " blocks");
+	                    + blocks.length + " blocks");
 			_bulkSigner.signBlocks(blocks, signingKey);
+			encodeBlocks(blocks);
 			getFlowControl().put(blocks);
 		}
-		_blocks.clear();
+	}
+
+	/**
+	 * Should groups of blocks be signed and output on a background thread? Defaults
+	 * to SystemConfiguration.ASYNC_OUTPUT. A failure on the background thread is thrown
+	 * by every later call that puts content, and by waitForOutput(), until
+	 * resetOutputFailure() is called.
+	 * @param asynchronous
+	 * @throws IOException if output already in progress failed
+	 */
+	public void setAsynchronous(boolean asynchronous) throws IOException {
+		if (!asynchronous)
+			waitForOutput();
+		_asynchronous = asynchronous;
+	}
+
+	public boolean isAsynchronous() { return _asynchronous; }
+
+	/**
+	 * Wait for any group of blocks being output on a background thread.
+	 * @throws IOException if that output failed
+	 */
+	public void waitForOutput() throws IOException {
+		checkOutput(true);
+	}
+
+	/**
+	 * Forget the failure of output in the background, so content can be put again.
+	 */
+	public void resetOutputFailure() {
+		_outputFailure = null;
+	}
+
+	/**
+	 * Throw the failure of the group of blocks being output in the background, or of
+	 * any earlier group, if there was one.
+	 * @param wait wait for the output to finish
+	 * @throws IOException
+	 */
+	protected void checkOutput(boolean wait) throws IOException {
+		Future<Void> pending = _pendingOutput;
+		if ((null != pending) && (wait || pending.isDone())) {
+			_pendingOutput = null;
+			try {
+				pending.get();
+			} catch (InterruptedException e) {
+				_pendingOutput = pending;
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for output of segments");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if ((cause instanceof IOException) || (cause instanceof RuntimeException) || (cause instanceof Error)) {
+					_outputFailure = cause;
+				} else {
+					// signing failures
+					IOException ioe = new IOException("Cannot sign content: " + cause.getMessage());
+					ioe.initCause(cause);
+					_outputFailure = ioe;
+				}
+			}
+		}
+		if (null == _outputFailure)
+			return;
+		if (_outputFailure instanceof IOException)
+			throw (IOException)_outputFailure;
+		if (_outputFailure instanceof RuntimeException)
+			throw (RuntimeException)_outputFailure;
+		throw (Error)_outputFailure;
+	}
+
+	protected static synchronized ThreadPoolExecutor outputPool() {
+		if (null == _outputPool) {
+			_outputPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+					THREAD_LIFE, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+						private int _count = 0;
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "CCNSegmenter output " + (++_count));
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return _outputPool;
+	}
+
+	/**
+	 * Encode a batch of signed blocks on the shared worker threads, so the encodings
+	 * are cached and ready when the flow controller writes them out.
+	 * @param blocks
+	 * @throws IOException
+	 */
+	protected void encodeBlocks(final ContentObject [] blocks) throws IOException {
+		ConcurrencyUtils.runParallel(blocks.length, new ConcurrencyUtils.IndexedTask() {
+			public void run(int index) throws IOException {
+				blocks[index].wireEncoding();
+			}
+		});
 	}
 
 	/**
@@ -721,6 +878,7 @@ public class CCNSegmenter {
 			ContentKeys keys) throws InvalidKeyException, SignatureException,
 			NoSuchAlgorithmException, IOException, InvalidAlgorithmParameterException {
 
+		checkOutput(false);
 		if (null == publisher) {
 			publisher = _handle.keyManager().getDefaultKeyID();
 		}
@@ -734,6 +892,11 @@ public class CCNSegmenter {
 		}
 
 		ContentName rootName = SegmentationProfile.segmentRoot(name);
+		if (!rootName.equals(_outputNameSpace)) {
+			// don't add to the flow controller's namespaces while it is putting output
+			waitForOutput();
+			_outputNameSpace = rootName;
+		}
 		_flowControl.addNameSpace(rootName);
 
 		byte [] finalBlockID = ((null == finalSegmentIndex) ? null :
@@ -747,6 +910,8 @@ public class CCNSegmenter {
 				signedInfo, content, offset, length, keys);
 		if (_blocks.size() >= HOLD_COUNT + 1 || null != finalSegmentIndex)
 			outputCurrentBlocks(signingKey);
+		if (null != finalSegmentIndex)
+			waitForOutput();
 
 		return segmentNumber;
 	}
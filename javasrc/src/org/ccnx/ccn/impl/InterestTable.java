@@ -21,15 +21,19 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.logging.Level;
 
+import org.ccnx.ccn.impl.CCNStats.CCNEnumStats;
+import org.ccnx.ccn.impl.CCNStats.CCNStatistics;
+import org.ccnx.ccn.impl.CCNStats.CCNEnumStats.IStatsEnum;
 import org.ccnx.ccn.impl.support.Log;
 import org.ccnx.ccn.protocol.ContentName;
+import org.ccnx.ccn.protocol.ContentNameProvider;
+import org.ccnx.ccn.protocol.ContentNameSlice;
 import org.ccnx.ccn.protocol.ContentObject;
 import org.ccnx.ccn.protocol.Interest;
 
@@ -49,7 +53,7 @@ import org.ccnx.ccn.protocol.Interest;
  * bounds.
  */
 
-public class InterestTable<V> {
+public class InterestTable<V> implements CCNStatistics {
 
 	public interface Entry<T> {
 		/**
@@ -71,14 +75,26 @@ public class InterestTable<V> {
 		public T value();
 	}
 
-    protected final static class LongestFirstComparator implements Comparator<ContentName>{
-        public int compare(ContentName o1, ContentName o2) {
+    protected final static class LongestFirstComparator implements Comparator<ContentNameProvider>{
+        public int compare(ContentNameProvider o1, ContentNameProvider o2) {
             if (o1 == o2)
                 return 0;
-            int thisCount = o1.count();
-            int oCount = o2.count();
+            // Keys are always ContentNames, but lookups may use a ContentNameSlice
+            if (o1 instanceof ContentNameSlice) {
+                ContentNameSlice slice = (ContentNameSlice) o1;
+                int oCount = (o2 instanceof ContentNameSlice) ? ((ContentNameSlice) o2).count() : ((ContentName) o2).count();
+                if (slice.count() == oCount)
+                    return slice.compareTo(o2);
+                return (oCount - slice.count());
+            }
+            if (o2 instanceof ContentNameSlice)
+                return -compare(o2, o1);
+            ContentName n1 = (ContentName) o1;
+            ContentName n2 = (ContentName) o2;
+            int thisCount = n1.count();
+            int oCount = n2.count();
             if (thisCount == oCount)
-                return o1.compareTo(o2);
+                return n1.compareTo(n2);
             return (oCount - thisCount);
         }
     }
@@ -95,7 +111,9 @@ public class InterestTable<V> {
         }
     };
 
-	protected List<ContentName> _contentNamesLRU = null;
+	// Names in least to most recently used order. A LinkedHashSet lets us move a name to
+	// the most recently used end and find the least recently used one in constant time.
+	protected LinkedHashSet<ContentName> _contentNamesLRU = null;
 
 	protected Integer _capacity = null;	// For LRU size control - default is none
 
@@ -144,7 +162,7 @@ public class InterestTable<V> {
 	public void setCapacity(int capacity) {
 		synchronized (_contents) {
 			_capacity = capacity;
-			_contentNamesLRU = new LinkedList<ContentName>();
+			_contentNamesLRU = new LinkedHashSet<ContentName>(_contents.keySet());
 		}
 	}
 
@@ -214,16 +232,18 @@ public class InterestTable<V> {
 				list.add(holder);
 
 				if (null != _capacity) {
-					if ( _contents.size() >= _capacity) {
+					while ((_contents.size() >= _capacity) && !_contentNamesLRU.isEmpty()) {
 						// The LRU is the first key in the LRU list. So remove the contents
 						// corresponding to that one.
 						// XXX - should we care about whether the key has multiple
 						// interests attached?
+						ContentName lruName = _contentNamesLRU.iterator().next();
 						if (Log.isLoggable(Log.FAC_ENCODING, Level.INFO)) {
-							Log.info(Log.FAC_ENCODING, "removing entry associated with name {0}", _contentNamesLRU.get(0));
+							Log.info(Log.FAC_ENCODING, "removing entry associated with name {0}", lruName);
 						}
-						_contents.remove(_contentNamesLRU.get(0));
-						_contentNamesLRU.remove(0);
+						List<Holder<V>> evicted = removeName(lruName);
+						_stats.increment(StatsEnum.Evictions);
+						_stats.increment(StatsEnum.EvictedEntries, evicted.size());
 					}
 					_contentNamesLRU.add(name);
 				}
@@ -232,6 +252,58 @@ public class InterestTable<V> {
 		}
 	}
 
+	/**
+	 * Internal: remove a name and all its entries from the table, keeping the LRU
+	 * list (if any) in step. Must be called with _contents locked.
+	 *
+	 * @param name	name to remove
+	 * @return the entries that were held under name, or null if none
+	 */
+	protected List<Holder<V>> removeName(ContentName name) {
+		if (null != _contentNamesLRU)
+			_contentNamesLRU.remove(name);
+		return _contents.remove(name);
+	}
+
+	/**
+	 * Internal: find the names in the table which could hold entries matching target.
+	 * Only prefixes of the target name can match, so rather than walking every name
+	 * in the table we probe each prefix of target directly, which makes matching
+	 * proportional to the length of the target name instead of the size of the table.
+	 * If digestTarget is non-null, the name of digestTarget with its implicit digest
+	 * appended is also a candidate; the digest is only computed if the table contains a
+	 * name one component longer than target that starts with target.
+	 *
+	 * Must be called with _contents locked.
+	 *
+	 * @param target		name to find prefixes of
+	 * @param digestTarget	ContentObject whose full name should also be considered, or null
+	 * @return names present in the table, ordered from longest to shortest
+	 */
+	protected List<ContentName> matchingNames(ContentName target, ContentObject digestTarget) {
+		List<ContentName> names = new ArrayList<ContentName>();
+		if (null != digestTarget) {
+			// Names are sorted longest first and then in canonical order within a length, so
+			// all names of one more component than target starting with target are grouped
+			// together starting at the first name at least target plus an empty component.
+			SortedMap<ContentName, List<Holder<V>>> tail = _contents.tailMap(new ContentName(target, new byte[0]));
+			if (!tail.isEmpty()) {
+				ContentName first = tail.firstKey();
+				if ((first.count() == target.count() + 1) && target.isPrefixOf(first)) {
+					ContentName fullName = digestTarget.fullName();
+					if (_contents.containsKey(fullName))
+						names.add(fullName);
+				}
+			}
+		}
+		for (int i = target.count(); i >= 0; i--) {
+			ContentNameSlice prefix = target.prefix(i);
+			if (_contents.containsKey(prefix))
+				names.add(prefix.getContentName());
+		}
+		return names;
+	}
+
 	protected Holder<V> getMatchByName(ContentName name, ContentObject target) {
 		List<Holder<V>> list;
 		synchronized (_contents) {
@@ -293,7 +365,7 @@ public class InterestTable<V> {
 						if (holder.interest().matches(target)) {
 							holdIt.remove();
 							if (list.size() == 0) {
-								_contents.remove(name);
+								removeName(name);
 							}
 							return holder;
 						}
@@ -332,9 +404,7 @@ public class InterestTable<V> {
 					}
 				}
 				if (list.size() == 0) {
-					synchronized (_contents) {
-						_contents.remove(name);
-					}
+					removeName(name);
 				}
 			}
 		}
@@ -372,7 +442,7 @@ public class InterestTable<V> {
 					}
 				}
 				if (list.size() == 0) {
-					_contents.remove(name);
+					removeName(name);
 				}
 			}
 		}
@@ -394,7 +464,7 @@ public class InterestTable<V> {
 					}
 				}
 				if (list.size() == 0) {
-					_contents.remove(name);
+					removeName(name);
 				}
 			}
 		}
@@ -431,10 +501,8 @@ public class InterestTable<V> {
 		if(Log.isLoggable(Log.FAC_ENCODING, Level.FINEST))
 			Log.finest(Log.FAC_ENCODING, "target: {0}", target.name());
 		Entry<V> match = null;
-		Set<ContentName> names;
 		synchronized (_contents) {
-			names = _contents.keySet();
-			for (ContentName name : names) {
+			for (ContentName name : matchingNames(target.name(), target)) {
 				match = getMatchByName(name, target);
 				if (null != match)
 					break;
@@ -482,7 +550,7 @@ public class InterestTable<V> {
 		List<Entry<V>> matches = new ArrayList<Entry<V>>();
 		if (null != target) {
 			synchronized (_contents) {
-				for (ContentName name : _contents.keySet()) {
+				for (ContentName name : matchingNames(target.name(), target)) {
 					// Name match - is there an interest match here?
 					matches.addAll(getAllMatchByName(name, target));
 				}
@@ -526,12 +594,9 @@ public class InterestTable<V> {
 
 		Entry<V> match = null;
 		synchronized (_contents) {
-			for (ContentName name : _contents.keySet()) {
-				if (name.isPrefixOf(target)) {
-					match = _contents.get(name).get(0);
-					break;
-				}
-			}
+			List<ContentName> names = matchingNames(target, null);
+			if (names.size() > 0)
+				match = _contents.get(names.get(0)).get(0);
 		}
 		return match;
 	}
@@ -570,10 +635,8 @@ public class InterestTable<V> {
 
 		List<Entry<V>> matches = new ArrayList<Entry<V>>();
 		synchronized (_contents) {
-			for (ContentName name : _contents.keySet()) {
-				if (name.isPrefixOf(target)) {
-					matches.addAll(_contents.get(name));
-				}
+			for (ContentName name : matchingNames(target, null)) {
+				matches.addAll(_contents.get(name));
 			}
 		}
 		return matches;
@@ -629,10 +692,8 @@ public class InterestTable<V> {
 			ContentName matchName = null;
 			if(Log.isLoggable(Log.FAC_ENCODING, Level.FINEST))
 				Log.finest(Log.FAC_ENCODING, "removeMatch: looking for match to target {0} among {1} possibilities.", target.name(), _contents.keySet().size());
-			Set<ContentName> names;
 			synchronized (_contents) {
-				names = _contents.keySet();
-				for (ContentName name : names) {
+				for (ContentName name : matchingNames(target.name(), target)) {
 					match = getMatchByName(name, target);
 					if (null != match) {
 						matchName = name;
@@ -679,16 +740,12 @@ public class InterestTable<V> {
 	 */
 	public List<Entry<V>> removeMatches(ContentObject target) {
 		List<Entry<V>> matches = new ArrayList<Entry<V>>();
-		List<ContentName> names = new ArrayList<ContentName>();
-		Set<ContentName> LFCnames;
+		List<ContentName> names;
 		synchronized (_contents) {
-			LFCnames = _contents.keySet();
-			for (ContentName name : LFCnames) {
-				if (name.isPrefixOf(target.name())) {
-					// Name match - is there an interest match here?
-					matches.addAll(getAllMatchByName(name, target));
-					names.add(name);
-				}
+			names = matchingNames(target.name(), null);
+			for (ContentName name : names) {
+				// Name match - is there an interest match here?
+				matches.addAll(getAllMatchByName(name, target));
 			}
 			if (matches.size() != 0) {
 				for (ContentName contentName : names) {
@@ -737,7 +794,66 @@ public class InterestTable<V> {
 	public void clear() {
 		synchronized (_contents) {
 			_contents.clear();
+			if (null != _contentNamesLRU)
+				_contentNamesLRU.clear();
 		}
 	}
 
+	// ==============================================================
+	// Statistics
+
+	protected CCNEnumStats<StatsEnum> _stats = new CCNEnumStats<StatsEnum>(StatsEnum.Evictions);
+
+	public CCNStats getStats() {
+		return _stats;
+	}
+
+	public enum StatsEnum implements IStatsEnum {
+		// ====================================
+		// Just edit this list, dont need to change anything else
+
+		Evictions ("names", "The number of names removed to keep the table within its capacity"),
+		EvictedEntries ("entries", "The number of entries removed along with evicted names"),
+		;
+
+		// ====================================
+		// This is the same for every user of IStatsEnum
+
+		protected final String _units;
+		protected final String _description;
+		protected final static String [] _names;
+
+		static {
+			_names = new String[StatsEnum.values().length];
+			for(StatsEnum stat : StatsEnum.values() )
+				_names[stat.ordinal()] = stat.toString();
+
+		}
+
+		StatsEnum(String units, String description) {
+			_units = units;
+			_description = description;
+		}
+
+		public String getDescription(int index) {
+			return StatsEnum.values()[index]._description;
+		}
+
+		public int getIndex(String name) {
+			StatsEnum x = StatsEnum.valueOf(name);
+			return x.ordinal();
+		}
+
+		public String getName(int index) {
+			return StatsEnum.values()[index].toString();
+		}
+
+		public String getUnits(int index) {
+			return StatsEnum.values()[index]._units;
+		}
+
+		public String [] getNames() {
+			return _names;
+		}
+	}
 }
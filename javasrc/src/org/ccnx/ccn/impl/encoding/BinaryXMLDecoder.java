@@ -19,6 +19,8 @@ package org.ccnx.ccn.impl.encoding;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.TreeMap;
 import java.util.logging.Level;
 
@@ -40,6 +42,13 @@ import org.ccnx.ccn.protocol.Interest;
  * It also exposes the segment buffer through getBytes() and the
  * segment DOM via getElement().
  *
+ * A packet which is entirely contained in a ByteBuffer can be decoded with
+ * beginDecoding(ByteBuffer). This parses straight from the buffer rather than
+ * byte by byte through an InputStream, and leaves BLOB and UDATA values in
+ * the buffer as offset/length slices. A value is only copied out to a byte[]
+ * when it is actually read, so values which are never asked for are never
+ * copied. The buffer must not be changed until decoding is finished.
+ *
  * TODO:
  * - Try buffering reads from the network channel rather than byte-by-byte.
  *   CCNNetworkChannel is rewindable, so if we read past the end of the
@@ -120,6 +129,7 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 	 */
 	@Override
 	public final void beginDecoding(InputStream istream) throws ContentDecodingException {
+		_source = null;
 		if (_resyncable)
 			istream.mark(_resyncLimit);
 
@@ -152,6 +162,53 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 		}
 	}
 
+	/**
+	 * Reset the Decoder's state and start parsing a packet from the current position of
+	 * a buffer. If the buffer holds a complete packet, the buffer is positioned after it
+	 * and we return true. If the packet is not complete, or can't be parsed and we are
+	 * resyncable, the buffer is left unchanged and we return false so that the caller
+	 * can decode from a stream instead.
+	 *
+	 * @param buffer
+	 * @return true if a complete packet was parsed
+	 * @throws ContentDecodingException if the packet can't be parsed and we aren't resyncable
+	 */
+	public final boolean beginDecoding(ByteBuffer buffer) throws ContentDecodingException {
+		int start = buffer.position();
+		initialize();
+		_source = buffer.duplicate();
+		try {
+			int opentags = 0;
+			do {
+				int	index = readTypeAndValue(buffer);
+				int type = _elements_type[index];
+
+				if( type == BinaryXMLCodec.XML_DTAG ) {
+					opentags++;
+				} else if( type  == BinaryXMLCodec.XML_CLOSE ) {
+					opentags--;
+				} else {
+					// BLOB or UDATA - just remember where it is
+					int position = buffer.position();
+					if (buffer.limit() - position < _elements_value[index])
+						throw new BufferUnderflowException();
+					_elements_offset[index] = position;
+					buffer.position(position + _elements_value[index]);
+				}
+			} while(opentags > 0);
+			return true;
+		} catch (BufferUnderflowException bue) {
+			// Incomplete packet
+		} catch (ContentDecodingException cde) {
+			if (! _resyncable)
+				throw cde;
+		}
+		initialize();
+		_source = null;
+		buffer.position(start);
+		return false;
+	}
+
 	/**
 	 * This method does the initial parsing into elements
 	 * @param istream
@@ -220,8 +277,13 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 	private int [] _elements_type = new int[ELEM_FIRST];
 	private int [] _elements_value = new int[ELEM_FIRST];
 	private byte [][] _elements_blob = new byte[ELEM_FIRST][];
+	private int [] _elements_offset = new int[ELEM_FIRST];
 	private int _bytesRead = 0;
 
+	// When decoding from a ByteBuffer, our own view of it. BLOB and UDATA values which
+	// haven't been read yet are at _elements_offset in here and have a null _elements_blob.
+	private ByteBuffer _source = null;
+
 	// BLOB and UDATA now go in their own buffers, so don't really need the full BLOCKSIZE
 
 //	private final byte [] _bytes = new byte[_blockSize];
@@ -304,6 +366,51 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 		if (next < 0)
 			throw new IOException("Unexpected EOF");
 
+		return addElement(typ, val, true);
+	}
+
+	/**
+	 * Parse the type and value from a buffer.
+	 * BLOB and UDATA values are left in the buffer - the caller must note where they are.
+	 * @param buffer
+	 * @return the index in to the _element_X arrays
+	 * @throws BufferUnderflowException if we reach the end of the buffer
+	 * @throws ContentDecodingException If not DTAG or BLOB/UDATA or CLOSE (END)
+	 */
+	private final int readTypeAndValue(final ByteBuffer buffer) throws ContentDecodingException {
+		int typ = -1;
+		long val = 0;
+
+		int next = buffer.get() & 0xff;
+
+		// detect the CLOSE marker
+		if( 0 == next ) {
+			typ = 0;
+			val = 0;
+		} else {
+			while (0 == (next & BinaryXMLCodec.XML_TT_NO_MORE)) {
+				val = val << BinaryXMLCodec.XML_REG_VAL_BITS;
+				val |= (next & BinaryXMLCodec.XML_REG_VAL_MASK);
+				next = buffer.get() & 0xff;
+			}
+			// last byte
+			typ = next & BinaryXMLCodec.XML_TT_MASK;
+			val = val << BinaryXMLCodec.XML_TT_VAL_BITS;
+			val |= ((next >>> BinaryXMLCodec.XML_TT_BITS) & BinaryXMLCodec.XML_TT_VAL_MASK);
+		}
+
+		return addElement(typ, val, false);
+	}
+
+	/**
+	 * Check a newly parsed type and value and add it to the DOM.
+	 * @param typ
+	 * @param val
+	 * @param allocate if true allocate the byte buffer for a BLOB or UDATA
+	 * @return the index in to the _element_X arrays
+	 * @throws ContentDecodingException If not DTAG or BLOB/UDATA or CLOSE (END)
+	 */
+	private final int addElement(int typ, long val, boolean allocate) throws ContentDecodingException {
 		// sanity check.  tag needs to be either a DTAG or a BLOB
 		if( typ != BinaryXMLCodec.XML_DTAG && typ != BinaryXMLCodec.XML_BLOB &&
 				typ != BinaryXMLCodec.XML_UDATA && typ != BinaryXMLCodec.XML_CLOSE )
@@ -313,13 +420,14 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 		if( typ == BinaryXMLCodec.XML_BLOB || typ == BinaryXMLCodec.XML_UDATA ) {
 			if (val < 0 || val > CCNNetworkManager.MAX_PAYLOAD)
 				throw new ContentDecodingException("Invalid blob size: " + val);
-			buffer = new byte[(int) val];
+			if (allocate)
+				buffer = new byte[(int) val];
 		}
 
 //		System.out.println(String.format("Decode tag 0x%02x value 0x%02x pos %d", typ, val, pos));
 
 		int index = _elementCount;
-		setElement(index, typ, (int)val, buffer);
+		setElement(index, typ, (int)val, buffer, 0);
 		_elementCount++;
 		return index;
 	}
@@ -330,8 +438,9 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 	 * @param typ
 	 * @param val
 	 * @param buffer
+	 * @param offset
 	 */
-	private void setElement(int index, int typ, int val, byte[] buffer) {
+	private void setElement(int index, int typ, int val, byte[] buffer, int offset) {
 		try {
 			_elements_type[index]  = typ;
 		} catch (ArrayIndexOutOfBoundsException aiobe) {
@@ -345,12 +454,16 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 			byte[][] newBlobs = new byte[_currentElements][];
 			System.arraycopy(_elements_blob, 0, newBlobs, 0, _currentElements - ELEM_INCR);
 			_elements_blob = newBlobs;
+			int[] newOffsets = new int[_currentElements];
+			System.arraycopy(_elements_offset, 0, newOffsets, 0, _currentElements - ELEM_INCR);
+			_elements_offset = newOffsets;
 			_elements_type[index] = typ;
 			if (Log.isLoggable(Log.FAC_ENCODING, Level.INFO))
 				Log.info("Reset decode array sizes to {0}", _currentElements);
 		}
 		_elements_value[index] = val;
 		_elements_blob[index]  = buffer;
+		_elements_offset[index] = offset;
 	}
 
 	/**
@@ -391,7 +504,7 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 		// This seems a little bogus but it emulates what the original code did...
 		if (type == BinaryXMLCodec.XML_BLOB) {
 			for (int i = _parsingElement; i < _elementCount; i++) {
-				setElement(i + 1, _elements_type[i], _elements_value[i], _elements_blob[i]);
+				setElement(i + 1, _elements_type[i], _elements_value[i], _elements_blob[i], _elements_offset[i]);
 			}
 			_elementCount++;
 			_elements_blob[_parsingElement] = new byte[0];
@@ -468,7 +581,14 @@ public final class BinaryXMLDecoder extends GenericXMLDecoder implements XMLDeco
 //		Log.fine(Log.FAC_ENCODING, "readBinary type {0} start {1} length {2} buffer len {3}",
 //				type, elem.position, elem.value, _bytes.length);
 
-		final byte [] buffer = _elements_blob[index];
+		byte [] buffer = _elements_blob[index];
+		if (null == buffer) {
+			// Still in the source buffer - copy it out now
+			buffer = new byte[_elements_value[index]];
+			_source.position(_elements_offset[index]);
+			_source.get(buffer);
+			_elements_blob[index] = buffer;
+		}
 
 		return buffer;
 	}
@@ -21,6 +21,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import org.ccnx.ccn.impl.support.Log;
 import org.ccnx.ccn.io.content.ContentDecodingException;
@@ -72,8 +73,19 @@ public abstract class GenericXMLEncodable implements XMLEncodable {
 	}
 
 	public void decode(byte [] content, String codec) throws ContentDecodingException {
+		XMLDecoder decoder = XMLCodecFactory.getDecoder(codec);
+		if (decoder instanceof BinaryXMLDecoder) {
+			// Decode in place if we can
+			if (((BinaryXMLDecoder)decoder).beginDecoding(ByteBuffer.wrap(content))) {
+				decode(decoder);
+				decoder.endDecoding();
+				return;
+			}
+		}
  		ByteArrayInputStream bais = new ByteArrayInputStream(content);
- 		decode(bais, codec);
+		decoder.beginDecoding(bais);
+		decode(decoder);
+		decoder.endDecoding();
  	}
 	
 	public void encode(OutputStream ostream) throws ContentEncodingException {
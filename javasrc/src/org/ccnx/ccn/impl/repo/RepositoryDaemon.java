@@ -23,6 +23,7 @@ import java.io.PrintStream;
 import java.security.InvalidParameterException;
 import java.util.logging.Level;
 
+import org.ccnx.ccn.impl.CCNStats;
 import org.ccnx.ccn.impl.support.Daemon;
 import org.ccnx.ccn.impl.support.Log;
 import org.ccnx.ccn.test.BitBucketRepository;
@@ -78,6 +79,8 @@ public class RepositoryDaemon extends Daemon {
 			}
 			if( REPO_CLEAR_STATS.equalsIgnoreCase(name) ) {
 				_server.getStats().clearCounters();
+				if (null != _server.getHomeAgentStats())
+					_server.getHomeAgentStats().clearCounters();
 				return true;
 			}
 			return _repo.diagnostic(name);
@@ -254,6 +257,9 @@ public class RepositoryDaemon extends Daemon {
 			}
 			statsOut = new PrintStream(statsFile);
 			statsOut.println(_server.getStats().toString());
+			CCNStats homeAgentStats = _server.getHomeAgentStats();
+			if (null != homeAgentStats)
+				statsOut.println(homeAgentStats.toString());
 		} catch (FileNotFoundException ex) {
 			Log.warning(Log.FAC_REPO, "Unable to dump stats to " + statsFile.getAbsolutePath());
 		} finally {
@@ -65,6 +65,13 @@ public class RepositoryInterestHandler extends QueuedContentHandler<Interest> im
 			_homeAgent = new HomeAgent(_server, this);
 	}
 
+	/**
+	 * @return the HomeAgent handling interests for mobile nodes, or null if CCNMP is disabled
+	 */
+	public HomeAgent getHomeAgent() {
+		return _homeAgent;
+	}
+
 	public boolean handleInterest(Interest interest) {
 		_server._stats.increment(RepositoryServer.StatsEnum.HandleInterest);
 		if (Log.isLoggable(Log.FAC_REPO, Level.FINEST))
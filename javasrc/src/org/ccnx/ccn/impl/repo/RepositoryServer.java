@@ -644,6 +644,15 @@ public class RepositoryServer implements CCNStatistics {
 		return _stats;
 	}
 
+	/**
+	 * @return the statistics of the CCNMP HomeAgent, or null if there is none
+	 */
+	public CCNStats getHomeAgentStats() {
+		if (null == _iHandler || null == _iHandler.getHomeAgent())
+			return null;
+		return _iHandler.getHomeAgent().getStats();
+	}
+
 	public enum StatsEnum implements IStatsEnum {
 		// ====================================
 		// Just edit this list, dont need to change anything else
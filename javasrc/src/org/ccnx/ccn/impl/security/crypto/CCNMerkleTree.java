@@ -17,13 +17,17 @@
 
 package org.ccnx.ccn.impl.security.crypto;
 
+import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.SignatureException;
+import java.util.List;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 import org.bouncycastle.asn1.DEROctetString;
+import org.ccnx.ccn.impl.support.ConcurrencyUtils;
 import org.ccnx.ccn.impl.support.DataUtils;
 import org.ccnx.ccn.impl.support.Log;
 import org.ccnx.ccn.io.content.ContentEncodingException;
@@ -67,6 +71,10 @@ import org.ccnx.ccn.protocol.SignedInfo;
  *     ContentObjects; this may be a useful way of limiting the number of
  *     signatures generated on constrained platforms. Eventually the CCNSegmenter
  *     will be extended to handle such collections of arbitrary objects.
+ *
+ * The leaf digests, and the MerklePaths of the leaves, are computed on the worker
+ * threads of ConcurrencyUtils#runParallel; the paths are computed while the
+ * root is being signed.
  *     
  */
 public class CCNMerkleTree extends MerkleTree {
@@ -75,6 +83,7 @@ public class CCNMerkleTree extends MerkleTree {
 	
 	byte [] _rootSignature = null;
 	ContentObject [] _segmentObjects = null;
+	byte [][] _witnesses = null;
 	
 	/**
 	 * Build a CCNMerkleTree from a set of leaf ContentObjects. 
@@ -97,7 +106,20 @@ public class CCNMerkleTree extends MerkleTree {
 		// DKS TODO -- all we're essentially doing is running the constructor now.
 		// Maybe make a static method to process blocks.
 		initializeTree(contentObjects);
-		_rootSignature = computeRootSignature(root(), signingKey);
+
+		// The paths don't depend on the root signature, compute them while we sign
+		_witnesses = new byte[numLeaves()][];
+		try {
+			List<Future<Void>> paths = ConcurrencyUtils.startParallel(numLeaves(), new ConcurrencyUtils.IndexedTask() {
+				public void run(int leafIndex) {
+					_witnesses[leafIndex] = path(leafIndex).derEncodedPath();
+				}
+			});
+			_rootSignature = computeRootSignature(root(), signingKey);
+			ConcurrencyUtils.awaitParallel(paths);
+		} catch (IOException e) {
+			throw new SignatureException("Cannot compute Merkle paths: " + e.getMessage(), e);
+		}
 		setSignatures();
 		Log.info("CCNMerkleTree: built a tree of " + contentObjects.length + " objects.");
 	}
@@ -187,6 +209,8 @@ public class CCNMerkleTree extends MerkleTree {
 	 * @return the signature
 	 */
 	protected Signature computeSignature(int leafIndex) {
+		if ((null != _witnesses) && (null != _witnesses[leafIndex]))
+			return new Signature(_witnesses[leafIndex], rootSignature());
 		MerklePath path = path(leafIndex);
 		return new Signature(path.derEncodedPath(), rootSignature());		
 	}
@@ -226,26 +250,33 @@ public class CCNMerkleTree extends MerkleTree {
 	 * @param contentObjects the content
 	 * @throws NoSuchAlgorithmException if the digestAlgorithm unknown
 	 */
-	protected void computeLeafValues(ContentObject [] contentObjects) throws NoSuchAlgorithmException {
+	protected void computeLeafValues(final ContentObject [] contentObjects) throws NoSuchAlgorithmException {
 		// Hash the leaves
-		for (int i=0; i < numLeaves(); ++i) {
-			// DKS -- need to make sure content() doesn't clone
-			try {
-				ContentObject co = contentObjects[i];
-				byte [] blockDigest = CCNDigestHelper.digest(co.prepareContent()); 
-				_tree[leafNodeIndex(i)-1] = new DEROctetString(blockDigest);
-				
-				if (Log.isLoggable(Log.FAC_SIGNING, Level.INFO)) {
-					Log.info("offset: " + 0 + " block length: " + co.contentLength() + " blockDigest " + 
-							DataUtils.printBytes(blockDigest) + " content digest: " + 
-							DataUtils.printBytes(CCNDigestHelper.digest(co.content(), 0, co.contentLength())));
-				}
+		try {
+			ConcurrencyUtils.runParallel(numLeaves(), new ConcurrencyUtils.IndexedTask() {
+				public void run(int i) {
+					// DKS -- need to make sure content() doesn't clone
+					try {
+						ContentObject co = contentObjects[i];
+						byte [] blockDigest = CCNDigestHelper.digest(co.prepareContent()); 
+						_tree[leafNodeIndex(i)-1] = new DEROctetString(blockDigest);
 
-			} catch (ContentEncodingException e) {
-				Log.info("Exception in computeBlockDigest, leaf: " + i + " out of " + numLeaves() + " type: " + e.getClass().getName() + ": " + e.getMessage());
-				e.printStackTrace();
-				// DKS todo -- what to throw?
-			}
+						if (Log.isLoggable(Log.FAC_SIGNING, Level.INFO)) {
+							Log.info("offset: " + 0 + " block length: " + co.contentLength() + " blockDigest " + 
+									DataUtils.printBytes(blockDigest) + " content digest: " + 
+									DataUtils.printBytes(CCNDigestHelper.digest(co.content(), 0, co.contentLength())));
+						}
+
+					} catch (ContentEncodingException e) {
+						Log.info("Exception in computeBlockDigest, leaf: " + i + " out of " + numLeaves() + " type: " + e.getClass().getName() + ": " + e.getMessage());
+						e.printStackTrace();
+						// DKS todo -- what to throw?
+					}
+				}
+			});
+		} catch (IOException e) {
+			// only interruption, the leaf digests handle their own failures
+			throw new IllegalStateException("Interrupted computing leaf digests: " + e.getMessage(), e);
 		}
 	}
 }
@@ -16,9 +16,124 @@
  */
 package org.ccnx.ccn.impl.support;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import org.ccnx.ccn.config.SystemConfiguration;
 
 public class ConcurrencyUtils {
+
+	protected static final int THREAD_LIFE = 20;	// in seconds
+
+	protected static ThreadPoolExecutor _parallelPool = null;
+
+	/**
+	 * The body of a loop run by startParallel or runParallel, called once for each index.
+	 * Calls for different indices may run at the same time on different threads.
+	 */
+	public interface IndexedTask {
+		public void run(int index) throws IOException;
+	}
+
+	/**
+	 * Start running task for each index from 0 to count - 1, split into contiguous ranges
+	 * run on the worker threads shared by all callers (SystemConfiguration.PARALLEL_THREADS).
+	 * If there is only one worker thread, or one index, the task is run on the calling thread
+	 * before this returns.
+	 *
+	 * @param count number of indices
+	 * @param task the loop body
+	 * @return the started work, to hand to awaitParallel
+	 * @throws IOException if the task is run on the calling thread and fails
+	 */
+	public static List<Future<Void>> startParallel(final int count, final IndexedTask task) throws IOException {
+		int ranges = Math.min(SystemConfiguration.PARALLEL_THREADS, count);
+		if (ranges <= 1) {
+			for (int i = 0; i < count; i++)
+				task.run(i);
+			return Collections.emptyList();
+		}
+
+		ThreadPoolExecutor pool = parallelPool();
+		ArrayList<Future<Void>> started = new ArrayList<Future<Void>>(ranges);
+		for (int r = 0; r < ranges; r++) {
+			final int start = (int)((long)count * r / ranges);
+			final int end = (int)((long)count * (r + 1) / ranges);
+			started.add(pool.submit(new Callable<Void>() {
+				public Void call() throws IOException {
+					for (int i = start; i < end; i++)
+						task.run(i);
+					return null;
+				}
+			}));
+		}
+		return started;
+	}
+
+	/**
+	 * Wait for work begun by startParallel to finish.
+	 * @param started
+	 * @throws IOException the first failure of the task, if any
+	 */
+	public static void awaitParallel(List<Future<Void>> started) throws IOException {
+		IOException failure = null;
+		for (Future<Void> future : started) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				for (Future<Void> f : started)
+					f.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for parallel work");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException)cause;
+				if (cause instanceof Error)
+					throw (Error)cause;
+				if ((null == failure) && (cause instanceof IOException))
+					failure = (IOException)cause;
+			}
+		}
+		if (null != failure)
+			throw failure;
+	}
+
+	/**
+	 * Run task for each index from 0 to count - 1 on the shared worker threads,
+	 * and wait for it to finish.
+	 * @see #startParallel(int, IndexedTask)
+	 */
+	public static void runParallel(int count, IndexedTask task) throws IOException {
+		awaitParallel(startParallel(count, task));
+	}
+
+	protected static synchronized ThreadPoolExecutor parallelPool() {
+		if (null == _parallelPool) {
+			int threads = Math.max(SystemConfiguration.PARALLEL_THREADS, 1);
+			_parallelPool = new ThreadPoolExecutor(threads, threads,
+					THREAD_LIFE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private int _count = 0;
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "ConcurrencyUtils parallel " + (++_count));
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			_parallelPool.allowCoreThreadTimeOut(true);
+		}
+		return _parallelPool;
+	}
 	
 	/**
 	 * A generic waiter implemented as an abstract class
@@ -0,0 +1,95 @@
+/*
+ * Part of the CCNx Java Library.
+ *
+ * Copyright (C) 2008, 2009 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ccnx.ccn.io;
+
+/**
+ * A pipeline window that adapts to the path the way TCP Reno's congestion window
+ * does. The window starts in slow start, growing by a segment for every segment
+ * received, so it doubles every round trip. Once it has backed off, it grows by
+ * one segment per round trip (additive increase).
+ *
+ * A lost segment halves the window (multiplicative decrease); a timeout drops it
+ * back to its initial size and restarts slow start. Only one decrease is made for
+ * the losses of a round trip: losses of segments requested before the last
+ * decrease are ignored.
+ */
+public class AIMDPipelineWindow implements PipelineWindow {
+
+	protected int _minSize;
+	protected int _maxSize;
+	protected double _window;
+
+	/**
+	 * Slow start ends when the window reaches this size
+	 */
+	protected double _threshold;
+
+	/**
+	 * Highest segment requested when the window was last decreased
+	 */
+	protected long _recoveryPoint = -1;
+
+	/**
+	 * @param initialSize the window to start from, and to fall back to on timeouts
+	 * @param maxSize the largest window to grow to
+	 */
+	public AIMDPipelineWindow(int initialSize, int maxSize) {
+		if ((initialSize < 1) || (maxSize < initialSize))
+			throw new IllegalArgumentException("Invalid pipeline window sizes: initial " + initialSize + " maximum " + maxSize);
+		_minSize = initialSize;
+		_maxSize = maxSize;
+		_window = initialSize;
+		_threshold = maxSize;
+	}
+
+	public int size() {
+		return (int)_window;
+	}
+
+	public void segmentReceived(long segmentNumber) {
+		if (_window < _threshold)
+			_window += 1;
+		else
+			_window += 1 / _window;
+		if (_window > _maxSize)
+			_window = _maxSize;
+	}
+
+	public void segmentLost(long segmentNumber, long lastRequested) {
+		if (segmentNumber <= _recoveryPoint)
+			return;
+		_threshold = Math.max(_window / 2, _minSize);
+		_window = _threshold;
+		_recoveryPoint = lastRequested;
+	}
+
+	public void segmentTimedOut(long segmentNumber, long lastRequested) {
+		if (segmentNumber <= _recoveryPoint)
+			return;
+		_threshold = Math.max(_window / 2, _minSize);
+		_window = _minSize;
+		_recoveryPoint = lastRequested;
+	}
+
+	/**
+	 * @return the window size at which slow start ends
+	 */
+	public int threshold() {
+		return (int)_threshold;
+	}
+}
@@ -25,6 +25,7 @@ import java.security.InvalidKeyException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.logging.Level;
 
 import javax.crypto.BadPaddingException;
@@ -132,17 +133,6 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 	protected Cipher _cipher;
 	protected ContentKeys _keys;
 
-	/**
-	 * If this content uses Merkle Hash Trees or other bulk signatures to amortize
-	 * signature cost, we can amortize verification cost as well by caching verification
-	 * data as follows: store the currently-verified root signature, so we don't have to re-verify it;
-	 * and the verified root hash. For each piece of incoming content, see if it aggregates
-	 * to the same root, if so don't reverify signature. If not, assume it's part of
-	 * a new tree and change the root.
-	 */
-	protected byte [] _verifiedRootSignature = null;
-	protected byte [] _verifiedProxy = null;
-
 	protected boolean _atEOF = false;
 
 	/**
@@ -168,12 +158,38 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 	private final Object readerReadyObj = new Object();
 	private long readerReadyVal = -1;
 
-	private double avgResponseTime = -1;
+	/**
+	 * Round trip time of the pipeline's interests, and when to express them again
+	 */
+	protected RTTEstimator _rtt = new RTTEstimator();
+
+	/**
+	 * How many segments the pipeline keeps requested or buffered
+	 */
+	protected PipelineWindow _window = SystemConfiguration.PIPELINE_ADAPTIVE ?
+			new AIMDPipelineWindow(SystemConfiguration.PIPELINE_SIZE, Math.max(SystemConfiguration.PIPELINE_SIZE, SystemConfiguration.PIPELINE_MAX_SIZE)) :
+			new FixedPipelineWindow(SystemConfiguration.PIPELINE_SIZE);
+
+	/**
+	 * Verifies received segments off the thread that delivers them, and hands them
+	 * back to the pipeline in the order they arrived. If this content uses Merkle Hash
+	 * Trees to amortize signature cost, the queue amortizes verification cost as well.
+	 */
+	protected SegmentVerificationQueue _verificationQueue = null;
 
+	/**
+	 * Segments received and matched to an interest, but not yet through verification;
+	 * they count against the pipeline window. Lock inOrderSegments before this lock
+	 * if both are needed.
+	 */
 	private final Object processingSegmentLock = new Object();
-	private long processingSegment = -1;
+	private HashSet<Long> _processingSegments = new HashSet<Long>();
 
-	private final int processingDefer = 0;
+	/**
+	 * Segments already read, kept so that seeks and resets back to them, and
+	 * segments dropped by a pipeline jump, are served without retrieving them again.
+	 */
+	protected SegmentCache _segmentCache = new SegmentCache(SystemConfiguration.SEGMENT_CACHE_SIZE);
 
 	/**
 	 * Set up an input stream to read segmented CCN content under a given name.
@@ -293,7 +309,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 
 			_pipelineStartTime = System.currentTimeMillis();
 			if (SystemConfiguration.PIPELINE_STATS)
-				System.out.println("plot "+(System.currentTimeMillis() - _pipelineStartTime)+" inOrder: "+inOrderSegments.size() +" outOfOrder: "+outOfOrderSegments.size() + " interests: "+_sentInterests.size() +" holes: "+_holes + " received: "+_totalReceived+" ["+_baseName+"].1"+ "avgResponseTime "+avgResponseTime);
+				System.out.println("plot "+(System.currentTimeMillis() - _pipelineStartTime)+" inOrder: "+inOrderSegments.size() +" outOfOrder: "+outOfOrderSegments.size() + " interests: "+_sentInterests.size() +" holes: "+_holes + " received: "+_totalReceived+" ["+_baseName+"].1"+ " srtt "+_rtt.srtt()+" window "+_window.size());
 
 			long segmentToGet = -1;
 			Interest interest = null;
@@ -383,6 +399,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 
 			if (returnedSegment == _nextPipelineSegment) {
 				_totalReceived++;
+				_window.segmentReceived(returnedSegment);
 				if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 					Log.info(Log.FAC_PIPELINE, "PIPELINE: we got the segment ({0}) we were expecting!", returnedSegment);
 				if(waitingSegment!=-1)
@@ -437,6 +454,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 						Log.info(Log.FAC_PIPELINE, "PIPELINE: this is a pipeline segment, add to outOfOrderSegment queue");
 					_totalReceived++;
 					_holes++;
+					_window.segmentReceived(returnedSegment);
 					int i = 0;
 					for (ContentObject c:outOfOrderSegments) {
 						if(returnedSegment < SegmentationProfile.getSegmentNumber(c.name()))
@@ -456,10 +474,6 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 			_nextPipelineSegment = nextInOrderSegmentNeeded();
 			if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 				Log.info(Log.FAC_PIPELINE, "PIPELINE: the next segment needed is {0}", _nextPipelineSegment);
-			synchronized(processingSegmentLock) {
-				processingSegment = -1;
-			}
-
 			if(returnedSegment == waitingSegment) {
 				inOrderSegments.notifyAll();
 			}
@@ -486,9 +500,9 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 
 			Interest i = null;
 
-			while (_sentInterests.size() + inOrderSegments.size() + outOfOrderSegments.size() + processingDefer < SystemConfiguration.PIPELINE_SIZE && !doneAdvancing) {
+			while (_sentInterests.size() + inOrderSegments.size() + outOfOrderSegments.size() + processingSegments() < _window.size() && !doneAdvancing) {
 				if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-					Log.info(Log.FAC_PIPELINE, "PIPELINE: _sentInterests.size() = {0} inOrderSegments.size() = {1} outOfOrderSegments.size()  = {2} processingDefer = {3} total = {4}", _sentInterests.size(), inOrderSegments.size(), outOfOrderSegments.size(), processingDefer, (_sentInterests.size() + inOrderSegments.size() + outOfOrderSegments.size() + processingDefer) );
+					Log.info(Log.FAC_PIPELINE, "PIPELINE: _sentInterests.size() = {0} inOrderSegments.size() = {1} outOfOrderSegments.size()  = {2} processingSegments = {3} total = {4}", _sentInterests.size(), inOrderSegments.size(), outOfOrderSegments.size(), processingSegments(), (_sentInterests.size() + inOrderSegments.size() + outOfOrderSegments.size() + processingSegments()) );
 
 				//we have tokens to use
 				i = null;
@@ -519,7 +533,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 						_sentInterests.add(i);
 						_lastRequestedPipelineSegment++;
 						if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-							Log.info(Log.FAC_PIPELINE, "PIPELINE: requested segment "+_lastRequestedPipelineSegment +" ("+(SystemConfiguration.PIPELINE_SIZE - _sentInterests.size())+" tokens)");
+							Log.info(Log.FAC_PIPELINE, "PIPELINE: requested segment "+_lastRequestedPipelineSegment +" ("+(_window.size() - _sentInterests.size())+" tokens)");
 					} catch (IOException e) {
 						// This could happen if the handle got closed underneath us - maybe that's OK?
 						// For now will leave it as a warning
@@ -558,7 +572,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 
 		//first check the incoming segment to see if it is here already
 		synchronized (processingSegmentLock) {
-			if(processingSegment != -1 && hole == processingSegment) {
+			if(_processingSegments.contains(hole)) {
 				if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 					Log.info(Log.FAC_PIPELINE, "PIPELINE: the segment is being processed... not a hole.");
 				return;
@@ -674,7 +688,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 						elapsed2 = System.currentTimeMillis() - expressed.userTime;
 						if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 							Log.info(Log.FAC_PIPELINE, "PIPELINE: elapsed2 time {0}", elapsed2);
-						if(elapsed2 > avgResponseTime * SystemConfiguration.PIPELINE_RTTFACTOR && avgResponseTime > -1) {
+						if(elapsed2 > _rtt.rto()) {
 							if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 								Log.info(Log.FAC_PIPELINE, "PIPELINE: expressing the next interest! {0} old express time {1} new express time {2}", i, expressed.userTime, newUserTime);
 							//i.userTime = System.currentTimeMillis();
@@ -685,7 +699,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 							_handle.cancelInterest(toDelete, this);
 							_sentInterests.remove(toDelete);
 
-							adjustAvgResponseTimeForHole();
+							interestReexpressed(hole);
 
 							if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO)) {
 								Log.info(Log.FAC_PIPELINE, "PIPELINE: expressed: {0} deleted: {1}", i, toDelete);
@@ -711,7 +725,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 					}
 				}
 
-				if((elapsed1 > avgResponseTime * 2 && avgResponseTime > -1) || (avgResponseTime == -1 && elapsed1 > SystemConfiguration.INTEREST_REEXPRESSION_DEFAULT) || notRequested) {
+				if(elapsed1 > _rtt.rto() || notRequested) {
 					//long userTime = System.currentTimeMillis();
 					if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO)) {
 						if (notRequested)
@@ -738,7 +752,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 					// interest
 					if (index != -1) {
 						_handle.cancelInterest(_sentInterests.remove(index+1), this);
-						adjustAvgResponseTimeForHole();
+						interestReexpressed(hole);
 					}
 
 					if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
@@ -746,7 +760,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 					return;
 				} else {
 					if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-						Log.info(Log.FAC_PIPELINE, "PIPELINE: we need to wait longer to see if the original interest will return the segment: avgResponseTime: {0}", avgResponseTime);
+						Log.info(Log.FAC_PIPELINE, "PIPELINE: we need to wait longer to see if the original interest will return the segment: {0}", _rtt);
 				}
 			}
 			//}
@@ -756,12 +770,21 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 		}
 	}
 
-	private void adjustAvgResponseTimeForHole() {
-		synchronized (processingSegmentLock) {
-			Log.info(Log.FAC_PIPELINE, "PIPELINE: before adjusting avgResponseTime for hole. avgResponseTime = {0}", avgResponseTime);
-			avgResponseTime = 0.9 * avgResponseTime + 0.1 * (SystemConfiguration.PIPELINE_RTTFACTOR * avgResponseTime);
-			Log.info(Log.FAC_PIPELINE, "PIPELINE: after adjusting avgResponseTime for hole. avgResponseTime = {0}", avgResponseTime);
+	/**
+	 * The interest for a segment was expressed again. If later segments have arrived
+	 * the segment was lost, otherwise it timed out: either way shrink the window,
+	 * and on a timeout also back off the retransmission timeout.
+	 * Must be called with inOrderSegments locked.
+	 */
+	private void interestReexpressed(long segmentNumber) {
+		if (outOfOrderSegments.size() > 0) {
+			_window.segmentLost(segmentNumber, _lastRequestedPipelineSegment);
+		} else {
+			_rtt.backoff();
+			_window.segmentTimedOut(segmentNumber, _lastRequestedPipelineSegment);
 		}
+		if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+			Log.info(Log.FAC_PIPELINE, "PIPELINE: re-expressed interest for segment {0}, window now {1}, {2}", segmentNumber, _window.size(), _rtt);
 	}
 
 	private void printSegments() {
@@ -848,6 +871,8 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 						advancePipeline();
 					return co;
 				}
+				// not the one we want, but the reader may come back for it
+				_segmentCache.put(SegmentationProfile.getSegmentNumber(co.name()), co);
 			}
 
 			while (outOfOrderSegments.size() > 0) {
@@ -867,6 +892,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 						break;
 					} else {
 						outOfOrderSegments.remove(0);
+						_segmentCache.put(SegmentationProfile.getSegmentNumber(co.name()), co);
 					}
 				}
 			}
@@ -891,145 +917,188 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 				attemptHoleFilling(segmentNumber);
 			} else {
 				//we haven't requested it...  send request and ditch what we have
-				if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO)){
+				jumpPipeline(segmentNumber);
+			}
 
-					Log.info(Log.FAC_PIPELINE, "PIPELINE: detected a pipeline jump!!!!");
+			//check outstanding interests
+			if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO)) {
+				String s = "have interests out for segments: [";
+				for(Interest i: _sentInterests)
+					s += " "+SegmentationProfile.getSegmentNumber(i.name());
+				s += "]";
+				Log.info(Log.FAC_PIPELINE, "PIPELINE: "+s);
+			}
+		}
 
-					Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump adjustment conditions");
-					printSegments();
-					String s = "pre-pipeline jump interests: [";
-					for(Interest i: _sentInterests)
-						s += " "+SegmentationProfile.getSegmentNumber(i.name());
-					s += "]";
-					Log.info(Log.FAC_PIPELINE, "PIPELINE: "+s);
-				}
+		return null;
+	}
 
-				Interest interest = SegmentationProfile.segmentInterest(_basePipelineName, segmentNumber, _publisher);
-				try {
-					//probably could just clear out some pipeline state instead of clearing all of it...
-					interest.userTime = System.currentTimeMillis();
-					_handle.expressInterest(interest, this);
-					ArrayList<Object> toRemove = new ArrayList<Object>();
-					long maxExpress = segmentNumber + SystemConfiguration.PIPELINE_SIZE-1;
-					long lastExpressed = segmentNumber;
-					long segNum;
-					for (Interest i: _sentInterests) {
-						segNum = SegmentationProfile.getSegmentNumber(i.name());
-						if (segNum > maxExpress) {
-							_handle.cancelInterest(i, this);
-							toRemove.add(i);
-							if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-								Log.info(Log.FAC_PIPELINE, "PIPELINE: canceling interest: {0}", i);
-						} else {
-							lastExpressed = segNum;
-						}
-					}
-					//cancelInterests();
-					_sentInterests.removeAll(toRemove);
-					_sentInterests.add(0, interest);
-					//resetPipelineState();
-					//_lastRequestedPipelineSegment = segmentNumber;
-					_nextPipelineSegment = segmentNumber;
-
-					//now check our received segments
-					for (ContentObject segment : inOrderSegments) {
-						segNum = SegmentationProfile.getSegmentNumber(segment.name());
-						if (segNum > maxExpress) {
-							toRemove.add(segment);
-							if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-								Log.info(Log.FAC_PIPELINE, "PIPELINE: removing segment past buffer limit after pipeline jump in inOrderSegments: {0}", segment);
-						} else if (segNum < segmentNumber) {
-							toRemove.add(segment);
-							if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-								Log.info(Log.FAC_PIPELINE, "PIPELINE: removing segment before requested segment pipeline jump in inOrderSegments: {0}", segment);
-						} else {
-							if (lastExpressed < segNum) {
-								lastExpressed = segNum;
-							}
-							if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-								Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump - will move segment in inOrderSegments: {0} to outOfOrderSegments", segment);
-						}
-					}
-					inOrderSegments.removeAll(toRemove);
+	/**
+	 * Restart the pipeline at a segment we have not asked for, as after a seek or skip.
+	 * Interests and segments past the new window are dropped; verified segments dropped
+	 * are kept in the segment cache in case the reader comes back to them.
+	 * @param segmentNumber the segment the pipeline should start from
+	 */
+	private void jumpPipeline(long segmentNumber) {
+		synchronized(inOrderSegments) {
+			if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO)){
 
-					toRemove.clear();
-					for (ContentObject segment : outOfOrderSegments) {
-						segNum = SegmentationProfile.getSegmentNumber(segment.name());
-						if (segNum > maxExpress) {
-							toRemove.add(segment);
-							if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-								Log.info(Log.FAC_PIPELINE, "PIPELINE: removing segment past buffer limit after pipeline jump in outOfOrderSegments: {0}", segment);
-						} else if (segNum < segmentNumber) {
-							toRemove.add(segment);
-							if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-								Log.info(Log.FAC_PIPELINE, "PIPELINE: removing segment before requested segment pipeline jump in outOfOrderSegments: {0}", segment);
-						} else if (lastExpressed < segNum) {
+				Log.info(Log.FAC_PIPELINE, "PIPELINE: detected a pipeline jump!!!!");
+
+				Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump adjustment conditions");
+				printSegments();
+				String s = "pre-pipeline jump interests: [";
+				for(Interest i: _sentInterests)
+					s += " "+SegmentationProfile.getSegmentNumber(i.name());
+				s += "]";
+				Log.info(Log.FAC_PIPELINE, "PIPELINE: "+s);
+			}
+
+			Interest interest = SegmentationProfile.segmentInterest(_basePipelineName, segmentNumber, _publisher);
+			try {
+				//probably could just clear out some pipeline state instead of clearing all of it...
+				interest.userTime = System.currentTimeMillis();
+				_handle.expressInterest(interest, this);
+				ArrayList<Object> toRemove = new ArrayList<Object>();
+				long maxExpress = segmentNumber + _window.size()-1;
+				long lastExpressed = segmentNumber;
+				long segNum;
+				for (Interest i: _sentInterests) {
+					segNum = SegmentationProfile.getSegmentNumber(i.name());
+					if (segNum > maxExpress) {
+						_handle.cancelInterest(i, this);
+						toRemove.add(i);
+						if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+							Log.info(Log.FAC_PIPELINE, "PIPELINE: canceling interest: {0}", i);
+					} else {
+						lastExpressed = segNum;
+					}
+				}
+				//cancelInterests();
+				_sentInterests.removeAll(toRemove);
+				_sentInterests.add(0, interest);
+				//resetPipelineState();
+				//_lastRequestedPipelineSegment = segmentNumber;
+				_nextPipelineSegment = segmentNumber;
+
+				//now check our received segments
+				for (ContentObject segment : inOrderSegments) {
+					segNum = SegmentationProfile.getSegmentNumber(segment.name());
+					if (segNum > maxExpress) {
+						toRemove.add(segment);
+						_segmentCache.put(segNum, segment);
+						if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+							Log.info(Log.FAC_PIPELINE, "PIPELINE: removing segment past buffer limit after pipeline jump in inOrderSegments: {0}", segment);
+					} else if (segNum < segmentNumber) {
+						toRemove.add(segment);
+						_segmentCache.put(segNum, segment);
+						if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+							Log.info(Log.FAC_PIPELINE, "PIPELINE: removing segment before requested segment pipeline jump in inOrderSegments: {0}", segment);
+					} else {
+						if (lastExpressed < segNum) {
 							lastExpressed = segNum;
 						}
+						if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+							Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump - will move segment in inOrderSegments: {0} to outOfOrderSegments", segment);
+					}
+				}
+				inOrderSegments.removeAll(toRemove);
+
+				toRemove.clear();
+				for (ContentObject segment : outOfOrderSegments) {
+					segNum = SegmentationProfile.getSegmentNumber(segment.name());
+					if (segNum > maxExpress) {
+						toRemove.add(segment);
+						_segmentCache.put(segNum, segment);
+						if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+							Log.info(Log.FAC_PIPELINE, "PIPELINE: removing segment past buffer limit after pipeline jump in outOfOrderSegments: {0}", segment);
+					} else if (segNum < segmentNumber) {
+						toRemove.add(segment);
+						_segmentCache.put(segNum, segment);
+						if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+							Log.info(Log.FAC_PIPELINE, "PIPELINE: removing segment before requested segment pipeline jump in outOfOrderSegments: {0}", segment);
+					} else if (lastExpressed < segNum) {
+						lastExpressed = segNum;
 					}
-					outOfOrderSegments.removeAll(toRemove);
+				}
+				outOfOrderSegments.removeAll(toRemove);
 
-					long segNum2;
-					//now move segments from in order to out of order...
-					if (outOfOrderSegments.size() == 0) {
-						outOfOrderSegments.addAll(inOrderSegments);
-						Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump - moving segments from inOrderSegments to outOfOrderSegments");
-					} else {
-						ContentObject segX;
-						for (int x = 0 ; x < inOrderSegments.size(); x++) {
-							segX = inOrderSegments.get(x);
-							segNum = SegmentationProfile.getSegmentNumber(segX.name());
-							for (int y = 0 ; y < inOrderSegments.size(); y++) {
-								segNum2 = SegmentationProfile.getSegmentNumber((outOfOrderSegments.get(y)).name());
-								if (segNum < segNum2) {
-									Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump - moving segment {0} to position {1} in outOfOrderSegments", segNum, y);
-									outOfOrderSegments.add(y, segX);
-								}
+				long segNum2;
+				//now move segments from in order to out of order...
+				if (outOfOrderSegments.size() == 0) {
+					outOfOrderSegments.addAll(inOrderSegments);
+					Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump - moving segments from inOrderSegments to outOfOrderSegments");
+				} else {
+					ContentObject segX;
+					for (int x = 0 ; x < inOrderSegments.size(); x++) {
+						segX = inOrderSegments.get(x);
+						segNum = SegmentationProfile.getSegmentNumber(segX.name());
+						for (int y = 0 ; y < inOrderSegments.size(); y++) {
+							segNum2 = SegmentationProfile.getSegmentNumber((outOfOrderSegments.get(y)).name());
+							if (segNum < segNum2) {
+								Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump - moving segment {0} to position {1} in outOfOrderSegments", segNum, y);
+								outOfOrderSegments.add(y, segX);
 							}
-							Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump - check buffered segments");
-							printSegments();
 						}
+						Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump - check buffered segments");
+						printSegments();
 					}
-					inOrderSegments.clear();
+				}
+				inOrderSegments.clear();
 
 
-					//resetting some of the state...
-					_lastRequestedPipelineSegment = lastExpressed;
-					_lastInOrderSegment = segmentNumber - 1;
+				//resetting some of the state...
+				_lastRequestedPipelineSegment = lastExpressed;
+				_lastInOrderSegment = segmentNumber - 1;
 
-					Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump - we have now reset the state...  now we can try asking for the next segments - advance pipeline with holefilling");
-					advancePipeline();
+				Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump - we have now reset the state...  now we can try asking for the next segments - advance pipeline with holefilling");
+				advancePipeline();
 
-					if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO)) {
-						Log.info(Log.FAC_PIPELINE, "PIPELINE: we hadn't asked for segment {0} asking now... {1}", segmentNumber, interest);
-						Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump _lastRequestedPipelineSegment {0} _lastInOrderSegment {1}", _lastRequestedPipelineSegment, _lastInOrderSegment);
-						Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump adjustment results");
-						printSegments();
-						String s = "post-pipeline jump interests: [";
-						for(Interest i: _sentInterests)
-							s += " "+SegmentationProfile.getSegmentNumber(i.name());
-						s += "]";
-						Log.info(Log.FAC_PIPELINE, "PIPELINE: "+s);
-					}
+				if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO)) {
+					Log.info(Log.FAC_PIPELINE, "PIPELINE: we hadn't asked for segment {0} asking now... {1}", segmentNumber, interest);
+					Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump _lastRequestedPipelineSegment {0} _lastInOrderSegment {1}", _lastRequestedPipelineSegment, _lastInOrderSegment);
+					Log.info(Log.FAC_PIPELINE, "PIPELINE: pipeline jump adjustment results");
+					printSegments();
+					String s = "post-pipeline jump interests: [";
+					for(Interest i: _sentInterests)
+						s += " "+SegmentationProfile.getSegmentNumber(i.name());
+					s += "]";
+					Log.info(Log.FAC_PIPELINE, "PIPELINE: "+s);
+				}
 
 
-				} catch (IOException e) {
-					if (Log.isLoggable(Log.FAC_PIPELINE, Level.WARNING))
-						Log.warning(Log.FAC_PIPELINE, "failed to express interest for CCNAbstractInputStream pipeline: {0}", e.getMessage());
-				}
+			} catch (IOException e) {
+				if (Log.isLoggable(Log.FAC_PIPELINE, Level.WARNING))
+					Log.warning(Log.FAC_PIPELINE, "failed to express interest for CCNAbstractInputStream pipeline: {0}", e.getMessage());
 			}
+		}
+	}
 
-			//check outstanding interests
-			if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO)) {
-				String s = "have interests out for segments: [";
-				for(Interest i: _sentInterests)
-					s += " "+SegmentationProfile.getSegmentNumber(i.name());
-				s += "]";
-				Log.info(Log.FAC_PIPELINE, "PIPELINE: "+s);
+	/**
+	 * Called when a segment is served from the segment cache, as after seeking back to
+	 * it. Makes sure the SystemConfiguration.SEEK_READAHEAD segments following it are
+	 * cached, buffered or requested, so that reading on from it does not stall; if they
+	 * are not, the pipeline is restarted at the first segment we would be missing.
+	 * @param segment the segment served
+	 */
+	private void readAhead(ContentObject segment) {
+		if (SegmentationProfile.isLastSegment(segment))
+			return;
+		long number = SegmentationProfile.getSegmentNumber(segment.name());
+		synchronized(inOrderSegments) {
+			for (long next = number + 1; next <= number + SystemConfiguration.SEEK_READAHEAD; next++) {
+				if ((_lastSegmentNumber > -1) && (next > _lastSegmentNumber))
+					return;
+				if (_segmentCache.contains(next))
+					continue;
+				if (!haveSegmentBuffered(next) && !requestedSegment(next)) {
+					if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+						Log.info(Log.FAC_PIPELINE, "PIPELINE: reading ahead of cached segment {0} from segment {1}", number, next);
+					jumpPipeline(next);
+				}
+				return;
 			}
 		}
-
-		return null;
 	}
 
 	private void cancelInterests() {
@@ -1058,7 +1127,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 
 	private boolean requestedSegment(long number) {
 		synchronized(processingSegmentLock) {
-			if (processingSegment!=-1 && processingSegment == number) {
+			if (_processingSegments.contains(number)) {
 				if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 					Log.info(Log.FAC_PIPELINE, "PIPELINE: someone is processing it right now!");
 				return true;
@@ -1077,6 +1146,8 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 		_basePipelineName = n;
 		if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 			Log.info(Log.FAC_PIPELINE, "PIPELINE: setting _basePipelineName {0}", _basePipelineName);
+		// segments of a different name are no use to us
+		_segmentCache.clear();
 
 		synchronized(inOrderSegments) {
 			//need to remove interest for first segment of old name
@@ -1143,31 +1214,23 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 		IncomingSegment is;
 
 		synchronized(processingSegmentLock) {
-			Log.info(Log.FAC_PIPELINE, "PIPELINE: before adjusting avgResponseTime after reception. avgResponseTime = {0} elapsed time {1}", avgResponseTime, (starttime - interest.userTime));
-			if (avgResponseTime == -1) {
-				avgResponseTime = starttime - interest.userTime;
+			// Only sample interests expressed once (Karn's algorithm): hole filling interests
+			// carry an exclude and the express time of the interest they replace, and an
+			// interest already answered has its express time cleared
+			if (interest.userTime > 0 && null == interest.exclude()) {
+				_rtt.sample(starttime - interest.userTime);
 			} else {
-				//do not include hole filling responses, they will be extra fast
-				//if (interest.exclude()==null)
-
-				//TODO:  find true cause of this bug, temporary fix to get seek/skip fix merged
-				long newResponseTime = starttime - interest.userTime;
-				if (newResponseTime < 100 * avgResponseTime)
-					avgResponseTime = 0.9 * avgResponseTime + 0.1 * newResponseTime;
-				else {
-					//do not include this response time for now.  Will be fixed in bug 100478
-					Log.info(Log.FAC_PIPELINE, "PIPELINE: did not use response time for calculation...  would have been incorrect.  will be fixed in a new branch for 100478 {0}", newResponseTime);
-				}
+				if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+					Log.info(Log.FAC_PIPELINE, "PIPELINE: not sampling response time of re-expressed or answered interest {0}", interest);
 			}
-			Log.info(Log.FAC_PIPELINE, "PIPELINE: after adjusting avgResponseTime after reception. avgResponseTime = {0}", avgResponseTime);
 
 			interest.userTime = -1;
 
 			if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
-				Log.info(Log.FAC_PIPELINE, "PIPELINE: in handleContent after reading {0} avgResponseTime {1}", result.name(), avgResponseTime);
+				Log.info(Log.FAC_PIPELINE, "PIPELINE: in handleContent after reading {0} {1}", result.name(), _rtt);
 			is = new IncomingSegment(result, interest);
 
-			processingSegment = SegmentationProfile.getSegmentNumber(is.content.name());
+			_processingSegments.add(SegmentationProfile.getSegmentNumber(is.content.name()));
 		}
 
 		synchronized(inOrderSegments){
@@ -1176,7 +1239,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 			//synchronized(inOrderSegments) {
 
 			if (SystemConfiguration.PIPELINE_STATS)
-				System.out.println("plot "+(System.currentTimeMillis() - _pipelineStartTime)+" inOrder: "+inOrderSegments.size() +" outOfOrder: "+outOfOrderSegments.size() + " interests: "+_sentInterests.size() +" holes: "+_holes + " received: "+_totalReceived+" ["+_baseName+"].2" + " avgResponseTime "+avgResponseTime);
+				System.out.println("plot "+(System.currentTimeMillis() - _pipelineStartTime)+" inOrder: "+inOrderSegments.size() +" outOfOrder: "+outOfOrderSegments.size() + " interests: "+_sentInterests.size() +" holes: "+_holes + " received: "+_totalReceived+" ["+_baseName+"].2" + " srtt "+_rtt.srtt()+" window "+_window.size());
 
 			if (_sentInterests.remove(is.interest)) {
 				//we had this interest outstanding...
@@ -1203,28 +1266,16 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 				if (is.interest == null) {
 					is = null;
 					synchronized(processingSegmentLock) {
-						processingSegment = -1;
+						_processingSegments.remove(SegmentationProfile.getSegmentNumber(result.name()));
 					}
 				}
 			}
+		}
 
-			if (is != null) {
-				// verify the content object
-				if (_handle.defaultVerifier().verify(is.content)) {
-					// this content verified
-					receivePipelineContent(is.content);
-				} else {
-					// content didn't verify, don't hand it up...
-					// TODO content that fails verification needs to be handled better.  need to express a new interest
-					if (Log.isLoggable(Log.FAC_PIPELINE, Level.WARNING))
-						Log.warning(Log.FAC_PIPELINE, "Dropping content object due to failed verification: {0} Need to add interest re-expression with exclude", is.content.name());
-					_sentInterests.remove(is.interest);
-				}
-			}
-
-			advancePipeline();
-		}//try holding lock more consistently to control how notify is done
-		attemptHoleFilling();
+		// verification, and the rest of the pipeline's work, happens off this thread;
+		// the segment is handed back to segmentVerified in the order it arrived
+		if (is != null)
+			verificationQueue().submit(is.content, is.interest);
 
 		if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 			Log.info(Log.FAC_PIPELINE, "PIPELINE: {0} done with handleContent after reading {1}", (System.currentTimeMillis() - starttime),  result.name());
@@ -1232,6 +1283,51 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 		return null;
 	}
 
+	private SegmentVerificationQueue verificationQueue() {
+		synchronized(processingSegmentLock) {
+			if (null == _verificationQueue) {
+				_verificationQueue = new SegmentVerificationQueue(_handle.defaultVerifier(), new SegmentVerificationQueue.Listener() {
+					public void segmentVerified(ContentObject segment, Interest interest, boolean verified) {
+						CCNAbstractInputStream.this.segmentVerified(segment, interest, verified);
+					}
+				});
+			}
+			return _verificationQueue;
+		}
+	}
+
+	private int processingSegments() {
+		synchronized(processingSegmentLock) {
+			return _processingSegments.size();
+		}
+	}
+
+	/**
+	 * Called by the verification queue with each segment handleContent accepted, in the
+	 * order they arrived.
+	 */
+	private void segmentVerified(ContentObject segment, Interest interest, boolean verified) {
+		synchronized(inOrderSegments) {
+			synchronized(processingSegmentLock) {
+				_processingSegments.remove(SegmentationProfile.getSegmentNumber(segment.name()));
+			}
+
+			if (verified) {
+				// this content verified
+				receivePipelineContent(segment);
+			} else {
+				// content didn't verify, don't hand it up...
+				// TODO content that fails verification needs to be handled better.  need to express a new interest
+				if (Log.isLoggable(Log.FAC_PIPELINE, Level.WARNING))
+					Log.warning(Log.FAC_PIPELINE, "Dropping content object due to failed verification: {0} Need to add interest re-expression with exclude", segment.name());
+				_sentInterests.remove(interest);
+			}
+
+			advancePipeline();
+		}//try holding lock more consistently to control how notify is done
+		attemptHoleFilling();
+	}
+
 
 
 	/**
@@ -1243,6 +1339,33 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 		_timeout = timeout;
 	}
 
+	/**
+	 * Set the window controller that decides how many segments this stream keeps
+	 * requested or buffered. Default is an AIMDPipelineWindow, or a FixedPipelineWindow
+	 * if SystemConfiguration.PIPELINE_ADAPTIVE is off.
+	 * @param window
+	 */
+	public void setPipelineWindow(PipelineWindow window) {
+		synchronized (inOrderSegments) {
+			_window = window;
+		}
+		advancePipeline();
+	}
+
+	/**
+	 * @return the window controller of this stream's pipeline
+	 */
+	public PipelineWindow getPipelineWindow() {
+		return _window;
+	}
+
+	/**
+	 * @return the round trip time estimate of this stream's pipeline
+	 */
+	public RTTEstimator getRTTEstimator() {
+		return _rtt;
+	}
+
 	/**
 	 * Add flags to this stream. Adds to existing flags.
 	 */
@@ -1454,6 +1577,17 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 		_publisher = newSegment.signedInfo().getPublisherKeyID();
 
 		if (deletionInformation() != newSegment) { // want pointer ==, not equals() here
+			// Have we read this segment already? Then we don't need to decrypt it again.
+			long segmentNumber = -1;
+			if (SegmentationProfile.isSegment(newSegment.name())) {
+				segmentNumber = SegmentationProfile.getSegmentNumber(newSegment.name());
+				byte [] data = _segmentCache.getData(segmentNumber, newSegment);
+				if (null != data) {
+					_segmentReadStream = new ByteArrayInputStream(data);
+					return;
+				}
+			}
+			byte [] data = null;
 			// if we're decrypting, then set it up now
 			if (_keys != null) {
 				// We only do automated lookup of keys on first segment. Otherwise
@@ -1508,25 +1642,27 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 					throw new IOException("BadPaddingException: " + e.getMessage());
 				}
 				if ((null == tailData) || (0 == tailData.length)) {
-					_segmentReadStream = new ByteArrayInputStream(bodyData);
+					data = bodyData;
 				}
 				else if ((null == bodyData) || (0 == bodyData.length)) {
-					_segmentReadStream = new ByteArrayInputStream(tailData);
+					data = tailData;
 				}
 				else {
-					byte [] allData = new byte[bodyData.length + tailData.length];
+					data = new byte[bodyData.length + tailData.length];
 					// Still avoid 1.6 array ops
-					System.arraycopy(bodyData, 0, allData, 0, bodyData.length);
-					System.arraycopy(tailData, 0, allData, bodyData.length, tailData.length);
-					_segmentReadStream = new ByteArrayInputStream(allData);
+					System.arraycopy(bodyData, 0, data, 0, bodyData.length);
+					System.arraycopy(tailData, 0, data, bodyData.length, tailData.length);
 				}
 			} else {
 				if (_currentSegment.signedInfo().getType().equals(ContentType.ENCR)) {
 					// We only do automated lookup of keys on first segment.
 					Log.warning(Log.FAC_IO, "Asked to read encrypted content, but not given a key to decrypt it. Decryption happening at higher level?");
 				}
-				_segmentReadStream = new ByteArrayInputStream(_currentSegment.content());
+				data = _currentSegment.content();
 			}
+			_segmentReadStream = new ByteArrayInputStream(data);
+			if (segmentNumber >= 0)
+				_segmentCache.put(segmentNumber, newSegment, data);
 		}
 	}
 
@@ -1573,7 +1709,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 			if (_baseName.equals(_basePipelineName)) {
 				// we already have the base name...
 				if (SystemConfiguration.PIPELINE_STATS)
-					System.out.println("plot " + (System.currentTimeMillis() - _pipelineStartTime) + " inOrder: " + inOrderSegments.size() + " outOfOrder: " + outOfOrderSegments.size() + " interests: " + _sentInterests.size() + " holes: " + _holes + " received: " + _totalReceived + " [" + _baseName + "].3" +" avgResponseTime "+avgResponseTime);
+					System.out.println("plot " + (System.currentTimeMillis() - _pipelineStartTime) + " inOrder: " + inOrderSegments.size() + " outOfOrder: " + outOfOrderSegments.size() + " interests: " + _sentInterests.size() + " holes: " + _holes + " received: " + _totalReceived + " [" + _baseName + "].3" +" srtt "+_rtt.srtt()+" window "+_window.size());
 			} else {
 				// we don't have the base name... set for pipelining.
 				Log.info(Log.FAC_PIPELINE, "PIPELINE: in getSegment and we detected a name change.  _baseName: {0} _basePipelineName: {1}", _baseName, _basePipelineName);
@@ -1593,7 +1729,19 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 				Log.info(Log.FAC_PIPELINE, "PIPELINE: getSegment currentSegment was null");
 			}
 
-			ContentObject co = getPipelineSegment(number);
+			// have we read it before? then we don't need to retrieve it again
+			ContentObject co = _segmentCache.getSegment(number);
+			if (co != null) {
+				if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
+					Log.info(Log.FAC_PIPELINE, "PIPELINE: segment {0} was in the segment cache", number);
+				readAhead(co);
+				synchronized(readerReadyObj) {
+					readerReadyVal = -1;
+				}
+				return co;
+			}
+
+			co = getPipelineSegment(number);
 			if (co != null) {
 				if (Log.isLoggable(Log.FAC_PIPELINE, Level.INFO))
 					Log.info(Log.FAC_PIPELINE, "PIPELINE: we had segment {0} already!!", number);
@@ -1629,11 +1777,12 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 							sleepCheck = SystemConfiguration.EXTRA_LONG_TIMEOUT;
 						else
 							sleepCheck = _timeout - sleep;
-						if(avgResponseTime > 0 && avgResponseTime < SystemConfiguration.SHORT_TIMEOUT) {
-							if(avgResponseTime > sleepCheck)
+						long srtt = (long)Math.ceil(_rtt.srtt());
+						if(srtt > 0 && srtt < SystemConfiguration.SHORT_TIMEOUT) {
+							if(srtt > sleepCheck)
 								inOrderSegments.wait(sleepCheck);
 							else
-								inOrderSegments.wait((long)avgResponseTime);
+								inOrderSegments.wait(srtt);
 						}
 						else {
 							if(SystemConfiguration.SHORT_TIMEOUT > sleepCheck)
@@ -1991,6 +2140,7 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 		//cancel our outstanding interests
 		cancelInterests();
 		resetPipelineState();
+		_segmentCache.clear();
 	}
 
 	@Override
@@ -2103,6 +2253,9 @@ public abstract class CCNAbstractInputStream extends InputStream implements CCNC
 			Log.finer(Log.FAC_IO, "Seeking stream to {0}", position);
 		}
 
+		// skip will find the end again if we seek past it
+		_atEOF = false;
+
 		// TODO: when first block is read in constructor this check can be removed
 		if ((_currentSegment == null) || (!SegmentationProfile.isFirstSegment(_currentSegment.name()))) {
 			setFirstSegment(getFirstSegment());
@@ -0,0 +1,267 @@
+/*
+ * Part of the CCNx Java Library.
+ *
+ * Copyright (C) 2008, 2009 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ccnx.ccn.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.ccnx.ccn.CCNHandle;
+import org.ccnx.ccn.impl.CCNFlowServer;
+import org.ccnx.ccn.impl.support.Log;
+import org.ccnx.ccn.profiles.VersioningProfile;
+import org.ccnx.ccn.protocol.ContentName;
+import org.ccnx.ccn.protocol.Interest;
+
+/**
+ * Serves local files over CCN, segmenting and signing each version of a file
+ * only once. The signed segments and header of a file are held in a persistent
+ * CCNFlowServer, which answers all later interests for them, so a file that
+ * is asked for many times costs one signing pass instead of one per request,
+ * and every requester gets the same signatures back.
+ *
+ * Files are keyed by their absolute path and the unversioned name they are
+ * published under, so the same file may be held under several names, and the
+ * held content for a name is replaced when the file's last modified time
+ * changes. Content is held in memory only; the least recently used files are
+ * dropped once the files held are larger than a given number of bytes.
+ */
+public class CCNFileSegmentCache {
+
+	public static final long DEFAULT_CACHE_BYTES = 64 * 1024 * 1024;
+
+	protected static final int BUF_SIZE = 4096;
+
+	/**
+	 * The published content of one version of a file.
+	 */
+	protected static class CacheEntry {
+		protected long _lastModified;
+		protected long _length;
+		protected ContentName _versionedName;
+		protected CCNFlowServer _flowServer;
+		protected volatile boolean _complete = false;
+	}
+
+	/**
+	 * A file and the unversioned name it is published under.
+	 */
+	protected static class EntryKey {
+		protected final String _path;
+		protected final ContentName _name;
+
+		protected EntryKey(String path, ContentName name) {
+			_path = path;
+			_name = name;
+		}
+
+		@Override
+		public int hashCode() {
+			return _path.hashCode() * 31 + _name.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof EntryKey))
+				return false;
+			EntryKey other = (EntryKey)obj;
+			return _path.equals(other._path) && _name.equals(other._name);
+		}
+	}
+
+	protected CCNHandle _handle;
+	protected long _maxBytes;
+	protected long _bytes = 0;
+
+	/**
+	 * Entries by absolute file path and unversioned name, in least to most recently used order
+	 */
+	protected LinkedHashMap<EntryKey, CacheEntry> _entries = new LinkedHashMap<EntryKey, CacheEntry>(16, 0.75f, true);
+
+	/**
+	 * Create a cache holding DEFAULT_CACHE_BYTES of files.
+	 * @param handle the handle to publish content with
+	 */
+	public CCNFileSegmentCache(CCNHandle handle) {
+		this(DEFAULT_CACHE_BYTES, handle);
+	}
+
+	/**
+	 * @param maxBytes the most file bytes to hold published content for
+	 * @param handle the handle to publish content with
+	 */
+	public CCNFileSegmentCache(long maxBytes, CCNHandle handle) {
+		_maxBytes = maxBytes;
+		_handle = handle;
+	}
+
+	/**
+	 * Answer an interest for a file. The file is segmented and signed if the cache
+	 * holds no content for its current version under versionedName, otherwise the
+	 * interest is answered from the content already held.
+	 *
+	 * @param file the file to serve
+	 * @param versionedName the versioned name to publish the file under
+	 * @param interest the interest to answer
+	 * @return true if the interest was answered, false if the cache holds a complete
+	 * 	copy of the file but nothing in it matches interest
+	 * @throws IOException if the file cannot be read or published
+	 */
+	public boolean serve(File file, ContentName versionedName, Interest interest) throws IOException {
+		ContentName baseName = VersioningProfile.cutTerminalVersion(versionedName).first();
+		EntryKey key = new EntryKey(file.getAbsolutePath(), baseName);
+		long lastModified = file.lastModified();
+		CacheEntry entry;
+		boolean write = false;
+
+		synchronized (_entries) {
+			entry = _entries.get(key);
+			if ((null != entry) && ((entry._lastModified != lastModified) || !entry._versionedName.equals(versionedName))) {
+				if (Log.isLoggable(Log.FAC_IO, Level.FINE))
+					Log.fine(Log.FAC_IO, "CCNFileSegmentCache: {0} changed, replacing {1} with {2}", key._path, entry._versionedName, versionedName);
+				remove(key);
+				entry = null;
+			}
+			if (null == entry) {
+				entry = new CacheEntry();
+				entry._lastModified = lastModified;
+				entry._length = file.length();
+				entry._versionedName = versionedName;
+				// Listen above the version, as CCNVersionedOutputStream does, to see latest version interests
+				entry._flowServer = new CCNFlowServer(baseName, null, true, _handle);
+				entry._flowServer.setMaximumCapacity();
+				_entries.put(key, entry);
+				_bytes += entry._length;
+				write = true;
+				evict(key);
+			}
+		}
+
+		if (!write) {
+			if (Log.isLoggable(Log.FAC_IO, Level.FINER))
+				Log.finer(Log.FAC_IO, "CCNFileSegmentCache: answering {0} from held content of {1}", interest.name(), versionedName);
+			// While another thread is still writing the file, an unmatched interest is held
+			// by the flow server and answered as the content is put
+			return entry._flowServer.handleInterest(interest) || !entry._complete;
+		}
+
+		try {
+			write(file, entry, interest);
+		} catch (IOException e) {
+			synchronized (_entries) {
+				if (_entries.get(key) == entry)
+					remove(key);
+			}
+			throw e;
+		}
+		return true;
+	}
+
+	/**
+	 * Segment and sign a file into the flow server of its entry.
+	 */
+	protected void write(File file, CacheEntry entry, Interest interest) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			CCNFileOutputStream ccnout = new CCNFileOutputStream(entry._versionedName, null, null, null, null, entry._flowServer);
+
+			// We have an interest already, register it so we can write immediately.
+			ccnout.addOutstandingInterest(interest);
+
+			byte [] buffer = new byte[BUF_SIZE];
+			int read = fis.read(buffer);
+			while (read >= 0) {
+				ccnout.write(buffer, 0, read);
+				read = fis.read(buffer);
+			}
+			ccnout.close(); // will flush, but leaves the flow server open
+		} finally {
+			fis.close();
+		}
+		entry._complete = true;
+		if (Log.isLoggable(Log.FAC_IO, Level.FINE))
+			Log.fine(Log.FAC_IO, "CCNFileSegmentCache: published {0} as {1}, holding {2} segments", file.getAbsolutePath(), entry._versionedName, entry._flowServer.size());
+	}
+
+	/**
+	 * @return the number of files held
+	 */
+	public int size() {
+		synchronized (_entries) {
+			return _entries.size();
+		}
+	}
+
+	/**
+	 * @return the number of file bytes held
+	 */
+	public long bytes() {
+		synchronized (_entries) {
+			return _bytes;
+		}
+	}
+
+	/**
+	 * Drop all held content and stop answering interests for it.
+	 */
+	public void close() {
+		synchronized (_entries) {
+			for (CacheEntry entry : _entries.values())
+				entry._flowServer.close();
+			_entries.clear();
+			_bytes = 0;
+		}
+	}
+
+	/**
+	 * Drop least recently used files until within _maxBytes, never the entry at keep.
+	 * Must be called with _entries locked.
+	 */
+	protected void evict(EntryKey keep) {
+		// Iterate over entries, as a get() would reorder an access ordered map
+		Iterator<Map.Entry<EntryKey, CacheEntry>> it = _entries.entrySet().iterator();
+		while ((_bytes > _maxBytes) && it.hasNext()) {
+			Map.Entry<EntryKey, CacheEntry> next = it.next();
+			if (next.getKey().equals(keep))
+				continue;
+			CacheEntry eldest = next.getValue();
+			it.remove();
+			_bytes -= eldest._length;
+			eldest._flowServer.close();
+			if (Log.isLoggable(Log.FAC_IO, Level.FINER))
+				Log.finer(Log.FAC_IO, "CCNFileSegmentCache: evicted {0}", eldest._versionedName);
+		}
+	}
+
+	/**
+	 * Must be called with _entries locked.
+	 */
+	protected void remove(EntryKey key) {
+		CacheEntry entry = _entries.remove(key);
+		if (null != entry) {
+			_bytes -= entry._length;
+			entry._flowServer.close();
+		}
+	}
+}
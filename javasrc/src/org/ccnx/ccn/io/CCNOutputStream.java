@@ -274,6 +274,23 @@ public class CCNOutputStream extends CCNAbstractOutputStream {
 		_freshnessSeconds = freshnessSeconds;
 	}
 
+	/**
+	 * Sign and write out each group of segments on a background thread, while writes
+	 * fill the next group, rather than on the writing thread. Only one group is written
+	 * out at a time; a write that fills another waits for it. A failure in the background
+	 * is thrown by every later write, flush and close. flush() and close() wait until everything
+	 * written has been handed to the flow controller. Defaults to SystemConfiguration.ASYNC_OUTPUT.
+	 * @param asynchronous
+	 * @throws IOException if output in progress failed
+	 */
+	public void setAsynchronous(boolean asynchronous) throws IOException {
+		_segmenter.setAsynchronous(asynchronous);
+	}
+
+	public boolean isAsynchronous() {
+		return _segmenter.isAsynchronous();
+	}
+
 	@Override
 	public void close() throws IOException {
 		try {
@@ -388,6 +405,7 @@ public class CCNOutputStream extends CCNAbstractOutputStream {
 				if (!_nameSpaceAdded) {
 					if( Log.isLoggable(Level.INFO))
 						Log.info("Adding namespace in writeToNetwork. Namespace: {0}", _baseName);
+					_segmenter.waitForOutput(); // not while the flow controller is putting output
 					_segmenter.getFlowControl().addNameSpace(_baseName);
 					_nameSpaceAdded = true;
 				}
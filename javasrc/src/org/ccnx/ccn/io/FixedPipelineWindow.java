@@ -0,0 +1,45 @@
+/*
+ * Part of the CCNx Java Library.
+ *
+ * Copyright (C) 2008, 2009 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ccnx.ccn.io;
+
+/**
+ * A pipeline window that never changes size.
+ */
+public class FixedPipelineWindow implements PipelineWindow {
+
+	protected int _size;
+
+	/**
+	 * @param size the number of segments to keep requested or buffered
+	 */
+	public FixedPipelineWindow(int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("Pipeline window must hold at least one segment!");
+		_size = size;
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public void segmentReceived(long segmentNumber) {}
+
+	public void segmentLost(long segmentNumber, long lastRequested) {}
+
+	public void segmentTimedOut(long segmentNumber, long lastRequested) {}
+}
@@ -0,0 +1,59 @@
+/*
+ * Part of the CCNx Java Library.
+ *
+ * Copyright (C) 2008, 2009 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ccnx.ccn.io;
+
+/**
+ * Decides how many segments the pipeline of a CCNAbstractInputStream keeps
+ * requested or buffered ahead of the reader. The stream tells the window about
+ * each segment that arrives and each segment it has to ask for again, and the
+ * window grows or shrinks in answer.
+ *
+ * Calls are made with the stream's pipeline lock held.
+ *
+ * @see AIMDPipelineWindow
+ * @see FixedPipelineWindow
+ */
+public interface PipelineWindow {
+
+	/**
+	 * @return the number of segments that may be requested or buffered at once
+	 */
+	public int size();
+
+	/**
+	 * A segment asked for by the pipeline has arrived.
+	 * @param segmentNumber
+	 */
+	public void segmentReceived(long segmentNumber);
+
+	/**
+	 * A segment was missing after later segments arrived, and has been
+	 * asked for again.
+	 * @param segmentNumber the missing segment
+	 * @param lastRequested the highest segment number requested so far
+	 */
+	public void segmentLost(long segmentNumber, long lastRequested);
+
+	/**
+	 * Nothing arrived for a segment within the retransmission timeout, and
+	 * it has been asked for again.
+	 * @param segmentNumber the missing segment
+	 * @param lastRequested the highest segment number requested so far
+	 */
+	public void segmentTimedOut(long segmentNumber, long lastRequested);
+}
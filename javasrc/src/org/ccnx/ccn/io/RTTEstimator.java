@@ -0,0 +1,124 @@
+/*
+ * Part of the CCNx Java Library.
+ *
+ * Copyright (C) 2008, 2009 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ccnx.ccn.io;
+
+import org.ccnx.ccn.config.SystemConfiguration;
+
+/**
+ * Estimates the round trip time of interests, and the retransmission timeout
+ * after which an interest that has not been answered should be expressed again,
+ * as TCP does (RFC 6298): a smoothed round trip time SRTT and its variation
+ * RTTVAR are kept, and the timeout is SRTT + 4 * RTTVAR. Each retransmission
+ * doubles the timeout until the next sample is taken.
+ *
+ * Samples should only be taken from interests that were expressed once, as the
+ * response to a re-expressed interest cannot be told apart from a late response
+ * to the original (Karn's algorithm).
+ *
+ * Times are in ms.
+ */
+public class RTTEstimator {
+
+	public static final double ALPHA = 0.125;
+	public static final double BETA = 0.25;
+	public static final int K = 4;
+
+	/**
+	 * Shortest retransmission timeout, so that a path with very little jitter does
+	 * not cause spurious re-expressions
+	 */
+	public static final long MIN_RTO = 50;
+
+	protected double _srtt = -1;
+	protected double _rttvar = 0;
+	protected long _rto;
+	protected long _maxRTO;
+
+	/**
+	 * Create an estimator that uses SystemConfiguration.INTEREST_REEXPRESSION_DEFAULT
+	 * as the timeout until the first sample, and as the longest timeout.
+	 */
+	public RTTEstimator() {
+		this(SystemConfiguration.INTEREST_REEXPRESSION_DEFAULT);
+	}
+
+	/**
+	 * @param maxRTO the timeout to use until the first sample, and the longest timeout
+	 */
+	public RTTEstimator(long maxRTO) {
+		_maxRTO = maxRTO;
+		_rto = maxRTO;
+	}
+
+	/**
+	 * Add a round trip time sample.
+	 * @param rtt
+	 */
+	public synchronized void sample(long rtt) {
+		if (rtt < 0)
+			return;
+		if (_srtt < 0) {
+			_srtt = rtt;
+			_rttvar = rtt / 2.0;
+		} else {
+			_rttvar = (1 - BETA) * _rttvar + BETA * Math.abs(_srtt - rtt);
+			_srtt = (1 - ALPHA) * _srtt + ALPHA * rtt;
+		}
+		_rto = Math.min(Math.max((long)Math.ceil(_srtt + K * _rttvar), MIN_RTO), _maxRTO);
+	}
+
+	/**
+	 * An interest was re-expressed after the timeout, back off the timeout.
+	 */
+	public synchronized void backoff() {
+		_rto = Math.min(_rto * 2, _maxRTO);
+	}
+
+	/**
+	 * @return true once a sample has been taken
+	 */
+	public synchronized boolean hasSample() {
+		return _srtt >= 0;
+	}
+
+	/**
+	 * @return the smoothed round trip time, or -1 if no sample has been taken
+	 */
+	public synchronized double srtt() {
+		return _srtt;
+	}
+
+	/**
+	 * @return the round trip time variation
+	 */
+	public synchronized double rttvar() {
+		return _rttvar;
+	}
+
+	/**
+	 * @return the retransmission timeout
+	 */
+	public synchronized long rto() {
+		return _rto;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "srtt " + _srtt + " rttvar " + _rttvar + " rto " + _rto;
+	}
+}
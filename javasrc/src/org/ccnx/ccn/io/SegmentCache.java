@@ -0,0 +1,134 @@
+/*
+ * Part of the CCNx Java Library.
+ *
+ * Copyright (C) 2008, 2009 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ccnx.ccn.io;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ccnx.ccn.protocol.ContentObject;
+
+/**
+ * A bounded cache of the segments an input stream has read, by segment number, so
+ * that seeking or resetting back to them is served locally rather than retrieving
+ * them again. Segments are added once verified; the readable data of a segment
+ * (decrypted, if the stream is encrypted) is kept with it once it has been read, so
+ * it is not decrypted again. The least recently used segment is dropped when the
+ * cache is full (SystemConfiguration.SEGMENT_CACHE_SIZE).
+ */
+public class SegmentCache {
+
+	protected final int _capacity;
+
+	@SuppressWarnings("serial")
+	protected final Map<Long, Entry> _segments = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+			return size() > _capacity;
+		}
+	};
+
+	/**
+	 * @param capacity the number of segments to keep; 0 or less keeps none
+	 */
+	public SegmentCache(int capacity) {
+		_capacity = capacity;
+	}
+
+	/**
+	 * @return the number of segments this cache will keep
+	 */
+	public int capacity() {
+		return _capacity;
+	}
+
+	/**
+	 * Add a verified segment, keeping any data already held for it.
+	 * @param segmentNumber
+	 * @param segment
+	 */
+	public void put(long segmentNumber, ContentObject segment) {
+		put(segmentNumber, segment, null);
+	}
+
+	/**
+	 * Add a verified segment along with its readable data.
+	 * @param segmentNumber
+	 * @param segment
+	 * @param data the segment's content, decrypted if necessary; null if not yet known
+	 */
+	public synchronized void put(long segmentNumber, ContentObject segment, byte [] data) {
+		if (_capacity <= 0)
+			return;
+		Entry entry = _segments.get(segmentNumber);
+		if ((null != entry) && (null == data) && entry._segment.name().equals(segment.name()))
+			return;
+		_segments.put(segmentNumber, new Entry(segment, data));
+	}
+
+	/**
+	 * @param segmentNumber
+	 * @return the cached segment, or null if we don't have it
+	 */
+	public synchronized ContentObject getSegment(long segmentNumber) {
+		Entry entry = _segments.get(segmentNumber);
+		return (null == entry) ? null : entry._segment;
+	}
+
+	/**
+	 * @param segmentNumber
+	 * @param segment the segment the data must belong to
+	 * @return the readable data held for this segment, or null if we don't have it
+	 */
+	public synchronized byte [] getData(long segmentNumber, ContentObject segment) {
+		Entry entry = _segments.get(segmentNumber);
+		if ((null == entry) || (null == entry._data))
+			return null;
+		if ((entry._segment != segment) && !entry._segment.name().equals(segment.name()))
+			return null;
+		return entry._data;
+	}
+
+	/**
+	 * @param segmentNumber
+	 * @return true if we have this segment
+	 */
+	public synchronized boolean contains(long segmentNumber) {
+		return _segments.containsKey(segmentNumber);
+	}
+
+	/**
+	 * @return the number of segments held
+	 */
+	public synchronized int size() {
+		return _segments.size();
+	}
+
+	public synchronized void clear() {
+		_segments.clear();
+	}
+
+	protected static class Entry {
+		protected final ContentObject _segment;
+		protected final byte [] _data;
+
+		protected Entry(ContentObject segment, byte [] data) {
+			_segment = segment;
+			_data = data;
+		}
+	}
+}
@@ -0,0 +1,303 @@
+/*
+ * Part of the CCNx Java Library.
+ *
+ * Copyright (C) 2008, 2009 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ccnx.ccn.io;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.ccnx.ccn.ContentVerifier;
+import org.ccnx.ccn.config.SystemConfiguration;
+import org.ccnx.ccn.impl.support.Log;
+import org.ccnx.ccn.protocol.ContentObject;
+import org.ccnx.ccn.protocol.Interest;
+import org.ccnx.ccn.protocol.PublisherPublicKeyDigest;
+
+/**
+ * Verifies the segments an input stream receives on a pool of worker threads shared
+ * by all streams (SystemConfiguration.VERIFY_THREADS), so that the thread that
+ * delivers content only has to match and enqueue it. Segments are handed back to the
+ * stream's Listener in the order they were submitted, whatever order their
+ * verification finishes in.
+ *
+ * Segments written by CCNSegmenter carry a Merkle hash tree witness, and one
+ * signature over the root of the tree covers every segment of a batch. For those,
+ * the expensive public key check is made once per batch: each segment's root is
+ * computed from its content and witness (the path check), and a segment whose root,
+ * signature and publisher match a batch already verified is accepted without checking
+ * the signature again. Segments of a batch arriving together wait for the one check
+ * rather than each making it. This is only done for ContentObject.SimpleVerifier,
+ * whose result depends on nothing else; other verifiers see every segment.
+ */
+public class SegmentVerificationQueue {
+
+	/**
+	 * Receives segments once they have been verified, in the order they were submitted.
+	 */
+	public interface Listener {
+		/**
+		 * @param segment the segment submitted
+		 * @param interest the interest it was submitted with
+		 * @param verified true if the segment verified
+		 */
+		public void segmentVerified(ContentObject segment, Interest interest, boolean verified);
+	}
+
+	/**
+	 * Number of recent batch roots remembered
+	 */
+	public static final int BATCH_CACHE_SIZE = 16;
+
+	protected static final int THREAD_LIFE = 20;	// in seconds
+
+	protected static ThreadPoolExecutor _pool = null;
+
+	protected final ContentVerifier _verifier;
+	protected final Listener _listener;
+	protected final LinkedList<PendingSegment> _pending = new LinkedList<PendingSegment>();
+	protected boolean _releasing = false;
+
+	@SuppressWarnings("serial")
+	protected final Map<BatchKey, FutureTask<Boolean>> _batches = new LinkedHashMap<BatchKey, FutureTask<Boolean>>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<BatchKey, FutureTask<Boolean>> eldest) {
+			return size() > BATCH_CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * @param verifier the verifier to check segments with
+	 * @param listener receives the segments in order once verified
+	 */
+	public SegmentVerificationQueue(ContentVerifier verifier, Listener listener) {
+		_verifier = verifier;
+		_listener = listener;
+	}
+
+	/**
+	 * Queue a segment for verification. If SystemConfiguration.VERIFY_THREADS is 0, the
+	 * segment is verified, and handed to the listener, before this returns.
+	 * @param segment
+	 * @param interest the interest the segment answered, handed back to the listener
+	 */
+	public void submit(ContentObject segment, Interest interest) {
+		PendingSegment pending = new PendingSegment(segment, interest);
+		synchronized (_pending) {
+			_pending.add(pending);
+		}
+		ThreadPoolExecutor pool = pool();
+		if (null == pool)
+			pending.run();
+		else
+			pool.execute(pending);
+	}
+
+	/**
+	 * @return the number of segments submitted and not yet handed to the listener
+	 */
+	public int size() {
+		synchronized (_pending) {
+			return _pending.size();
+		}
+	}
+
+	/**
+	 * @return the shared pool, sized to the current SystemConfiguration.VERIFY_THREADS, or
+	 * 	null if that is 0 and segments are to be verified on the submitting thread
+	 */
+	protected static synchronized ThreadPoolExecutor pool() {
+		int threads = SystemConfiguration.VERIFY_THREADS;
+		if (threads <= 0)
+			return null;
+		if (null != _pool) {
+			if (_pool.getCorePoolSize() != threads) {
+				if (threads > _pool.getMaximumPoolSize()) {
+					_pool.setMaximumPoolSize(threads);
+					_pool.setCorePoolSize(threads);
+				} else {
+					_pool.setCorePoolSize(threads);
+					_pool.setMaximumPoolSize(threads);
+				}
+			}
+		} else {
+			_pool = new ThreadPoolExecutor(threads, threads,
+					THREAD_LIFE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private int _count = 0;
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "SegmentVerificationQueue " + (++_count));
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			_pool.allowCoreThreadTimeOut(true);
+		}
+		return _pool;
+	}
+
+	/**
+	 * Hand the verified segments at the head of the queue to the listener. Only
+	 * one thread releases segments at a time, so the listener sees them in order.
+	 */
+	protected void release() {
+		while (true) {
+			PendingSegment next;
+			synchronized (_pending) {
+				if (_releasing || _pending.isEmpty() || !_pending.getFirst()._done)
+					return;
+				next = _pending.removeFirst();
+				_releasing = true;
+			}
+			try {
+				_listener.segmentVerified(next._segment, next._interest, next._verified);
+			} catch (RuntimeException e) {
+				Log.warning(Log.FAC_IO, "SegmentVerificationQueue: listener failed on {0}: {1}", next._segment.name(), e.getMessage());
+				Log.warningStackTrace(Log.FAC_IO, e);
+			} finally {
+				synchronized (_pending) {
+					_releasing = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Verify a segment, checking the signature over its Merkle root only once per batch.
+	 * @param segment
+	 * @return true if the segment verified
+	 */
+	protected boolean verifySegment(final ContentObject segment) {
+		if (!(_verifier instanceof ContentObject.SimpleVerifier))
+			return _verifier.verify(segment);
+
+		byte [] root = null;
+		try {
+			root = segment.computeProxy();
+		} catch (Exception e) {
+			if (Log.isLoggable(Log.FAC_IO, Level.INFO))
+				Log.info(Log.FAC_IO, "SegmentVerificationQueue: cannot compute root of {0}: {1}", segment.name(), e.getMessage());
+		}
+		if (null == root)
+			return _verifier.verify(segment);
+
+		BatchKey key = new BatchKey(root, segment);
+		FutureTask<Boolean> check;
+		boolean first = false;
+		synchronized (_batches) {
+			check = _batches.get(key);
+			if (null == check) {
+				check = new FutureTask<Boolean>(new Callable<Boolean>() {
+					public Boolean call() {
+						return _verifier.verify(segment);
+					}
+				});
+				_batches.put(key, check);
+				first = true;
+			}
+		}
+
+		if (first) {
+			check.run();
+		} else if (Log.isLoggable(Log.FAC_IO, Level.FINE)) {
+			Log.fine(Log.FAC_IO, "SegmentVerificationQueue: {0} is part of a known batch", segment.name());
+		}
+
+		boolean verified = false;
+		try {
+			verified = check.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Log.warning(Log.FAC_IO, "SegmentVerificationQueue: verification of {0} failed: {1}", segment.name(), e.getMessage());
+		}
+		if (first && !verified) {
+			// Failures may be transient (the key could not be retrieved); don't remember them
+			synchronized (_batches) {
+				_batches.remove(key);
+			}
+		}
+		return verified;
+	}
+
+	protected class PendingSegment implements Runnable {
+		protected final ContentObject _segment;
+		protected final Interest _interest;
+		protected boolean _verified = false;
+		protected boolean _done = false;
+
+		protected PendingSegment(ContentObject segment, Interest interest) {
+			_segment = segment;
+			_interest = interest;
+		}
+
+		public void run() {
+			boolean verified = false;
+			try {
+				verified = verifySegment(_segment);
+			} finally {
+				synchronized (_pending) {
+					_verified = verified;
+					_done = true;
+				}
+				release();
+			}
+		}
+	}
+
+	/**
+	 * What one signature check over a Merkle root vouches for
+	 */
+	protected static class BatchKey {
+		protected final byte [] _root;
+		protected final byte [] _signature;
+		protected final String _digestAlgorithm;
+		protected final PublisherPublicKeyDigest _publisher;
+
+		protected BatchKey(byte [] root, ContentObject segment) {
+			_root = root;
+			_signature = segment.signature().signature();
+			_digestAlgorithm = segment.signature().digestAlgorithm();
+			_publisher = segment.signedInfo().getPublisherKeyID();
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(_root) ^ Arrays.hashCode(_signature);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof BatchKey))
+				return false;
+			BatchKey other = (BatchKey)obj;
+			return Arrays.equals(_root, other._root) && Arrays.equals(_signature, other._signature)
+					&& ((null == _digestAlgorithm) ? (null == other._digestAlgorithm) : _digestAlgorithm.equals(other._digestAlgorithm))
+					&& ((null == _publisher) ? (null == other._publisher) : _publisher.equals(other._publisher));
+		}
+	}
+}
@@ -19,10 +19,14 @@ package org.ccnx.ccn.protocol;
 
 import java.io.Serializable;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.ccnx.ccn.config.SystemConfiguration;
 import org.ccnx.ccn.impl.encoding.CCNProtocolDTags;
 import org.ccnx.ccn.impl.encoding.GenericXMLEncodable;
 import org.ccnx.ccn.impl.encoding.XMLDecoder;
@@ -61,6 +65,41 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	// Goal is to make this final in the future.
 	protected byte[][]  _components;
 
+	// Hash of _components, computed on first use. 0 means not yet computed.
+	private transient int _hash;
+
+	/**
+	 * Pool of name components shared between decoded names, so that the many names
+	 * under a common prefix do not each hold their own copy of it. Holds at most
+	 * SystemConfiguration.NAME_COMPONENT_POOL_SIZE components, dropping the least
+	 * recently used first; a size of 0 disables interning.
+	 */
+	private static class ComponentPool {
+
+		@SuppressWarnings("serial")
+		static final Map<ByteBuffer, byte[]> _pool = new LinkedHashMap<ByteBuffer, byte[]>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ByteBuffer, byte[]> eldest) {
+				return size() > SystemConfiguration.NAME_COMPONENT_POOL_SIZE;
+			}
+		};
+
+		static boolean enabled() {
+			return SystemConfiguration.NAME_COMPONENT_POOL_SIZE > 0;
+		}
+
+		static byte[] intern(byte[] component) {
+			ByteBuffer key = ByteBuffer.wrap(component);
+			synchronized (_pool) {
+				byte[] shared = _pool.get(key);
+				if (null != shared)
+					return shared;
+				_pool.put(key, component);
+			}
+			return component;
+		}
+	}
+
 	// Constructors
 	/**
 	 * Will become private in future. Today used together with {@link #decode(XMLDecoder)}
@@ -340,6 +379,7 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	 */
 	public ContentName(ContentName otherName) {
 		_components = otherName._components;
+		_hash = otherName._hash;
 	}
 
 	/**
@@ -848,7 +888,28 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 			components.add(decoder.readBinaryElement(CCNProtocolDTags.Component));
 
 		decoder.readEndElement();
+		// The last component is usually a segment number or digest that no other name
+		// will share, so only intern the prefix.
+		if (ComponentPool.enabled()) {
+			for (int i = 0; i < components.size() - 1; i++)
+				components.set(i, ComponentPool.intern(components.get(i)));
+		}
 		_components = components.toArray(new byte[components.size()][]);
+		_hash = 0;
+	}
+
+	/**
+	 * Return a shared copy of a name component with the same contents, if the component
+	 * interning pool is enabled (see SystemConfiguration.NAME_COMPONENT_POOL_SIZE).
+	 * Like all components held by a ContentName, the result must never be modified.
+	 * @param component the component to intern
+	 * @return an equal component, possibly shared with other names; component itself
+	 * 	if interning is disabled or it was not yet in the pool
+	 */
+	public static byte[] internComponent(byte[] component) {
+		if ((null == component) || (!ComponentPool.enabled()))
+			return component;
+		return ComponentPool.intern(component);
 	}
 
 	/**
@@ -907,6 +968,8 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 	public boolean equals(Object obj) {
 		if (obj == null)
 			return false;
+		if (obj instanceof ContentNameSlice)
+			return obj.equals(this);
 		if (! (obj instanceof ContentName)) {
 			if (obj instanceof ContentNameProvider)
 				obj = ((ContentNameProvider) obj).getContentName();
@@ -914,12 +977,25 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 				return false;
 		}
 		ContentName other = (ContentName) obj;
+		if (_components == other._components)
+			return true;
+		// Names whose hashes are both already known can be told apart cheaply
+		if ((0 != _hash) && (0 != other._hash) && (_hash != other._hash))
+			return false;
 		return Arrays.deepEquals(_components, other._components);
 	}
 
+	/**
+	 * ContentNames are immutable, so the hash is computed only the first time it is needed.
+	 */
 	@Override
 	public int hashCode() {
-		return Arrays.deepHashCode(_components);
+		int h = _hash;
+		if (0 == h) {
+			h = Arrays.deepHashCode(_components);
+			_hash = h;
+		}
+		return h;
 	}
 
 	/**
@@ -1186,6 +1262,30 @@ public class ContentName extends GenericXMLEncodable implements XMLEncodable, Co
 		return result;
 	}
 
+	/**
+	 * Return a view of the first count components of this name, without copying them.
+	 * Unlike {@link #cut(int)} this is cheap enough to use for probing a table with every
+	 * prefix of a name.
+	 * @param count number of components in the prefix
+	 * @return the prefix view
+	 * @see ContentNameSlice
+	 */
+	public ContentNameSlice prefix(int count) {
+		return new ContentNameSlice(this, 0, count);
+	}
+
+	/**
+	 * Return a view of the components of this name between two indexes, without copying them.
+	 * @param start the starting component index (0-based)
+	 * @param end the number of the last component to include. (1-based)
+	 * @return the slice view
+	 * @see #subname(int, int)
+	 * @see ContentNameSlice
+	 */
+	public ContentNameSlice slice(int start, int end) {
+		return new ContentNameSlice(this, start, end);
+	}
+
 	/**
 	 * Return the remainder of this name after the prefix, if the prefix
 	 * is a prefix of this name. Otherwise return null. If the prefix is
@@ -0,0 +1,172 @@
+/*
+ * Part of the CCNx Java Library.
+ *
+ * Copyright (C) 2012 Palo Alto Research Center, Inc.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. You should have received
+ * a copy of the GNU Lesser General Public License along with this library;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.ccnx.ccn.protocol;
+
+import java.util.Arrays;
+
+import org.ccnx.ccn.impl.support.DataUtils;
+
+/**
+ * A view of a contiguous run of the components of a ContentName, most often one of its
+ * prefixes. A slice shares the component storage of the name it was taken from, so taking
+ * one does not copy anything, which makes it suitable for probing a table with every prefix
+ * of a name.
+ *
+ * A slice has the same hashCode as the equivalent ContentName, and equals() and compareTo()
+ * treat the two interchangeably, so a slice can be used to look up a ContentName key in a
+ * HashMap or a TreeMap whose comparator accepts slices. Use {@link #getContentName()} to get a
+ * real ContentName, e.g. to store it.
+ *
+ * @see ContentName#prefix(int)
+ * @see ContentName#slice(int, int)
+ */
+public final class ContentNameSlice implements ContentNameProvider, Comparable<ContentNameProvider> {
+
+	protected final ContentName _name;
+	protected final int _start;
+	protected final int _end;
+
+	// Hash of the components in the slice, computed on first use. 0 means not yet computed.
+	private int _hash;
+
+	/**
+	 * @param name the name to take a slice of
+	 * @param start index of the first component in the slice
+	 * @param end index one past the last component in the slice
+	 */
+	ContentNameSlice(ContentName name, int start, int end) {
+		if ((start < 0) || (end > name.count()) || (start > end)) {
+			throw new IllegalArgumentException("Illegal slice [" + start + ", " + end + ") of a name with " + name.count() + " components");
+		}
+		_name = name;
+		_start = start;
+		_end = end;
+	}
+
+	/**
+	 * @return the number of components in this slice.
+	 */
+	public int count() {
+		return _end - _start;
+	}
+
+	/**
+	 * Get the i'th component of the slice, indexed from 0.
+	 * Warning: as with {@link ContentName#component(int)}, this returns the internal byte
+	 * array of the underlying name, which must not be modified.
+	 * @return null if i is out of range.
+	 */
+	public byte[] component(int i) {
+		if ((i < 0) || (i >= _end - _start)) return null;
+		return _name._components[_start + i];
+	}
+
+	/**
+	 * Test if this slice is a prefix of a name.
+	 */
+	public boolean isPrefixOf(ContentName name) {
+		if ((null == name) || (count() > name.count()))
+			return false;
+		for (int i = _start; i < _end; i++) {
+			if (!Arrays.equals(_name._components[i], name._components[i - _start]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Get a ContentName with the components of this slice. If the slice covers the whole of
+	 * the underlying name, that name is returned, otherwise the components are copied.
+	 */
+	public ContentName getContentName() {
+		if ((0 == _start) && (_name.count() == _end))
+			return _name;
+		return _name.subname(_start, _end);
+	}
+
+	/**
+	 * The same value as {@link ContentName#hashCode()} of the equivalent name.
+	 */
+	@Override
+	public int hashCode() {
+		int h = _hash;
+		if (0 == h) {
+			// Same computation as Arrays.deepHashCode over the sliced components
+			h = 1;
+			for (int i = _start; i < _end; i++)
+				h = 31 * h + Arrays.hashCode(_name._components[i]);
+			_hash = h;
+		}
+		return h;
+	}
+
+	/**
+	 * A slice is equal to any slice or ContentName having the same components.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj instanceof ContentNameSlice) {
+			ContentNameSlice other = (ContentNameSlice) obj;
+			if (count() != other.count())
+				return false;
+			for (int i = 0; i < count(); i++) {
+				if (!Arrays.equals(component(i), other.component(i)))
+					return false;
+			}
+			return true;
+		}
+		if (obj instanceof ContentName) {
+			ContentName other = (ContentName) obj;
+			return (count() == other.count()) && isPrefixOf(other);
+		}
+		return false;
+	}
+
+	/**
+	 * Compare to a name or slice in the same order as {@link ContentName#compareTo(ContentName)}.
+	 */
+	public int compareTo(ContentNameProvider o) {
+		if (this == o)
+			return 0;
+		int oCount;
+		ContentNameSlice slice = null;
+		ContentName name = null;
+		if (o instanceof ContentNameSlice) {
+			slice = (ContentNameSlice) o;
+			oCount = slice.count();
+		} else {
+			name = o.getContentName();
+			oCount = name.count();
+		}
+		int len = (count() > oCount) ? count() : oCount;
+		int componentResult;
+		for (int i = 0; i < len; ++i) {
+			componentResult = DataUtils.compare(component(i), (null != slice) ? slice.component(i) : name.component(i));
+			if (0 != componentResult)
+				return componentResult;
+		}
+		return 0;
+	}
+
+	@Override
+	public String toString() {
+		return getContentName().toString();
+	}
+}
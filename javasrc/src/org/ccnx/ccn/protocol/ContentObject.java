@@ -20,6 +20,7 @@ package org.ccnx.ccn.protocol;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.DigestOutputStream;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
@@ -72,6 +73,12 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 	 */
 	protected byte [] _digest = null;
 	protected Signature _signature; 
+
+	/**
+	 * Cache of the ccnb wire encoding. Set when first needed by wireEncoding(), and
+	 * cleared along with the digest when the signature is set or the object is decoded.
+	 */
+	protected byte [] _encoded = null;
 	
 	/**
 	 * We don't specify a required publisher, and right now we don't enforce
@@ -366,6 +373,8 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 	 * @see org.ccnx.ccn.impl.encoding.XMLEncodable
 	 */
 	public void decode(XMLDecoder decoder) throws ContentDecodingException {
+		_encoded = null;
+		_digest = null;
 		decoder.readStartElement(getElementLabel());
 
 		_signature = new Signature();
@@ -401,6 +410,47 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 		encoder.writeEndElement();   		
 	}
 
+	/**
+	 * Get the ccnb wire encoding of this object. The encoding is cached, so an object which
+	 * is written more than once (to the network, to a repository, or to compute its digest)
+	 * is only encoded once. The returned array is shared and must not be modified.
+	 * @return the encoding
+	 * @throws ContentEncodingException
+	 */
+	public byte [] wireEncoding() throws ContentEncodingException {
+		byte [] encoded = _encoded;
+		if (null == encoded) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			XMLEncoder encoder = XMLCodecFactory.getEncoder(BinaryXMLCodec.CODEC_NAME);
+			encoder.beginEncoding(baos);
+			encode(encoder);
+			encoder.endEncoding();
+			encoded = baos.toByteArray();
+			_encoded = encoded;
+		}
+		return encoded;
+	}
+
+	@Override
+	public void encode(OutputStream ostream, String codec) throws ContentEncodingException {
+		if (!BinaryXMLCodec.CODEC_NAME.equals((null == codec) ? XMLCodecFactory.getDefaultCodecName() : codec)) {
+			super.encode(ostream, codec);
+			return;
+		}
+		try {
+			ostream.write(wireEncoding());
+		} catch (IOException e) {
+			throw new ContentEncodingException(e.getMessage());
+		}
+	}
+
+	@Override
+	public byte [] encode(String codec) throws ContentEncodingException {
+		if (!BinaryXMLCodec.CODEC_NAME.equals((null == codec) ? XMLCodecFactory.getDefaultCodecName() : codec))
+			return super.encode(codec);
+		return wireEncoding().clone();
+	}
+
 	@Override
 	public long getElementLabel() { return CCNProtocolDTags.ContentObject; }
 
@@ -467,6 +517,8 @@ public class ContentObject extends GenericXMLEncodable implements XMLEncodable,
 				Log.fine(Log.FAC_SIGNING, "Setting signature to null on content object: " + name());
 		}
 		_signature = signature;
+		_encoded = null;
+		_digest = null;
 	}
 
 	public void sign(PrivateKey signingKey) throws InvalidKeyException, SignatureException {
@@ -71,6 +71,9 @@ public class Exclude extends GenericXMLEncodable implements XMLEncodable,
 	}
 
 	protected ArrayList<Element> _values = new ArrayList<Element>();
+
+	// Count of changes to _values, so that an Interest can tell if its cached encoding is stale
+	protected int _changes = 0;
 	
 	/**
 	 * @param values Must be a list of ExcludeElements - Components must be in increasing order
@@ -191,6 +194,7 @@ public class Exclude extends GenericXMLEncodable implements XMLEncodable,
 		Element ee;
 		Filler lastFiller = null;
 		synchronized (_values) {
+			_changes++;
 			for(;i<omissions.length && j<_values.size();) {
 				omission = omissions[i];
 				ee = _values.get(j);
@@ -246,6 +250,7 @@ public class Exclude extends GenericXMLEncodable implements XMLEncodable,
 
 		Filler lastFiller = null;
 		synchronized (_values) {
+			_changes++;
 			int res = -2;
 			int removes = 0;
 			for (Element ee : _values) {
@@ -287,6 +292,15 @@ public class Exclude extends GenericXMLEncodable implements XMLEncodable,
 		return;		
 	}
 
+	/**
+	 * @return the number of times this filter has been changed
+	 */
+	int changes() {
+		synchronized (_values) {
+			return _changes;
+		}
+	}
+
 	/**
 	 * Check for exclude with no elements
 	 * @return true if exclude has no elements
@@ -301,6 +315,7 @@ public class Exclude extends GenericXMLEncodable implements XMLEncodable,
 		decoder.readStartElement(getElementLabel());
 		
 		synchronized (_values) {
+			_changes++;
 			boolean component;
 			boolean any = false;
 			while ((component = decoder.peekStartElement(CCNProtocolDTags.Component)) || 
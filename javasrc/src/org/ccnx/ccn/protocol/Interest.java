@@ -19,13 +19,17 @@ package org.ccnx.ccn.protocol;
 
 import static org.ccnx.ccn.protocol.Component.NONCE;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.logging.Level;
 
 import org.ccnx.ccn.TrustManager;
+import org.ccnx.ccn.impl.encoding.BinaryXMLCodec;
 import org.ccnx.ccn.impl.encoding.CCNProtocolDTags;
 import org.ccnx.ccn.impl.encoding.GenericXMLEncodable;
+import org.ccnx.ccn.impl.encoding.XMLCodecFactory;
 import org.ccnx.ccn.impl.encoding.XMLDecoder;
 import org.ccnx.ccn.impl.encoding.XMLEncodable;
 import org.ccnx.ccn.impl.encoding.XMLEncoder;
@@ -75,6 +79,11 @@ public class Interest extends GenericXMLEncodable implements XMLEncodable, Compa
 	protected byte[] _interestLifetime = null;		// For now we don't have the ability to set an interest lifetime
 	protected byte[] _nonce;
 
+	// Cached ccnb encoding, see wireEncoding(). Cleared by the setters; if the exclude filter is
+	// changed in place we notice from its change count.
+	protected byte[] _encoded = null;
+	protected int _encodedExcludeChanges = 0;
+
 	public long userTime;
 	
 	/**
@@ -113,25 +122,25 @@ public class Interest extends GenericXMLEncodable implements XMLEncodable, Compa
 	public Interest() {} // for use by decoders
 
 	public ContentName name() { return _name; }
-	public void name(ContentName name) { _name = name; }
+	public void name(ContentName name) { _name = name; _encoded = null; }
 	
 	public Integer maxSuffixComponents() { return _maxSuffixComponents; }
-	public void maxSuffixComponents(Integer maxSuffixComponents) { _maxSuffixComponents = maxSuffixComponents; }
+	public void maxSuffixComponents(Integer maxSuffixComponents) { _maxSuffixComponents = maxSuffixComponents; _encoded = null; }
 	
 	public Integer minSuffixComponents() { return _minSuffixComponents; }
-	public void minSuffixComponents(Integer minSuffixComponents) { _minSuffixComponents = minSuffixComponents; }
+	public void minSuffixComponents(Integer minSuffixComponents) { _minSuffixComponents = minSuffixComponents; _encoded = null; }
 	
 	public PublisherID publisherID() { return _publisher; }
-	public void publisherID(PublisherID publisherID) { _publisher = publisherID; }
+	public void publisherID(PublisherID publisherID) { _publisher = publisherID; _encoded = null; }
 	
 	public Exclude exclude() { return _exclude; }
-	public void exclude(Exclude exclude) { _exclude = exclude; }
+	public void exclude(Exclude exclude) { _exclude = exclude; _encoded = null; }
 	
 	public Integer childSelector() { return _childSelector;}
-	public void childSelector(int childSelector) { _childSelector = childSelector; }
+	public void childSelector(int childSelector) { _childSelector = childSelector; _encoded = null; }
 	
 	public byte[] interestLifetime() { return _interestLifetime;}
-	public void interestLifetime(byte[] interestLifetime) { _interestLifetime = interestLifetime; }
+	public void interestLifetime(byte[] interestLifetime) { _interestLifetime = interestLifetime; _encoded = null; }
 	
 	public Integer answerOriginKind() { 
 		if (null == _answerOriginKind) {
@@ -141,6 +150,7 @@ public class Interest extends GenericXMLEncodable implements XMLEncodable, Compa
 	}
 	
 	public void answerOriginKind(int answerOriginKind) {
+		_encoded = null;
 		if (DEFAULT_ANSWER_ORIGIN_KIND == answerOriginKind) {
 			_answerOriginKind = null;
 		} else {
@@ -149,7 +159,7 @@ public class Interest extends GenericXMLEncodable implements XMLEncodable, Compa
 	}
 	
 	public Integer scope() { return _scope; }
-	public void scope(int scope) { _scope = scope; }
+	public void scope(int scope) { _scope = scope; _encoded = null; }
 	
 	/**
 	 * XXX - This isn't user settable and is only useful for ccnd internal functionality. 
@@ -455,6 +465,7 @@ public class Interest extends GenericXMLEncodable implements XMLEncodable, Compa
 	 * declaration. But then couldn't use these solo.
 	 */
 	public void decode(XMLDecoder decoder) throws ContentDecodingException {
+		_encoded = null;
 		decoder.readStartElement(getElementLabel());
 
 		_name = new ContentName();
@@ -537,6 +548,50 @@ public class Interest extends GenericXMLEncodable implements XMLEncodable, Compa
 		encoder.writeEndElement();   		
 	}
 	
+	/**
+	 * Get the ccnb wire encoding of this interest. The encoding is cached, so an interest
+	 * which is written more than once (e.g. when it is refreshed) is only encoded once.
+	 * The returned array is shared and must not be modified.
+	 * @return the encoding
+	 * @throws ContentEncodingException
+	 */
+	public byte [] wireEncoding() throws ContentEncodingException {
+		byte [] encoded = _encoded;
+		Exclude exclude = _exclude;
+		int excludeChanges = (null == exclude) ? 0 : exclude.changes();
+		if (null == encoded || excludeChanges != _encodedExcludeChanges) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			XMLEncoder encoder = XMLCodecFactory.getEncoder(BinaryXMLCodec.CODEC_NAME);
+			encoder.beginEncoding(baos);
+			encode(encoder);
+			encoder.endEncoding();
+			encoded = baos.toByteArray();
+			_encodedExcludeChanges = excludeChanges;
+			_encoded = encoded;
+		}
+		return encoded;
+	}
+
+	@Override
+	public void encode(OutputStream ostream, String codec) throws ContentEncodingException {
+		if (!BinaryXMLCodec.CODEC_NAME.equals((null == codec) ? XMLCodecFactory.getDefaultCodecName() : codec)) {
+			super.encode(ostream, codec);
+			return;
+		}
+		try {
+			ostream.write(wireEncoding());
+		} catch (IOException e) {
+			throw new ContentEncodingException(e.getMessage());
+		}
+	}
+
+	@Override
+	public byte [] encode(String codec) throws ContentEncodingException {
+		if (!BinaryXMLCodec.CODEC_NAME.equals((null == codec) ? XMLCodecFactory.getDefaultCodecName() : codec))
+			return super.encode(codec);
+		return wireEncoding().clone();
+	}
+
 	@Override
 	public long getElementLabel() { return CCNProtocolDTags.Interest; }
 
@@ -0,0 +1,78 @@
+/*
+ * A CCNx library test.
+ *
+ * Copyright (C) 2011 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ccnx.ccn.test.ccnmp;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.ccnx.ccn.impl.encoding.BinaryXMLCodec;
+import org.ccnx.ccn.protocol.ContentName;
+import org.ccnx.ccn.test.impl.encoding.XMLEncodableTester;
+import org.ccnx.ccnmp.CCNMP;
+import org.ccnx.ccnmp.NamespaceBatch;
+import org.junit.Test;
+
+/**
+ * Test encoding and decoding of the CCNMP batch command payload and response.
+ */
+public class NamespaceBatchTest {
+
+	@Test
+	public void testEncodeDecode() throws Exception {
+		ContentName namespace = ContentName.fromURI("/home/node/files");
+		ContentName remoteName = ContentName.fromURI("/visited/node");
+
+		NamespaceBatch batch = new NamespaceBatch();
+		// Optional remote name and flags both present, both missing, and each alone
+		batch.add(new NamespaceBatch.Entry(CCNMP.COMMAND_REGISTERREDIRECT, namespace, remoteName, true));
+		batch.add(new NamespaceBatch.Entry(CCNMP.COMMAND_REGISTER, namespace, null, false));
+		batch.add(new NamespaceBatch.Entry(CCNMP.COMMAND_REDIRECT, namespace, remoteName, false));
+		batch.add(new NamespaceBatch.Entry(CCNMP.COMMAND_REMOVE, namespace, null, true));
+
+		NamespaceBatch textBatch = new NamespaceBatch();
+		NamespaceBatch binaryBatch = new NamespaceBatch();
+		XMLEncodableTester.encodeDecodeTest("NamespaceBatch", batch, textBatch, binaryBatch);
+		Assert.assertEquals(4, binaryBatch.size());
+		Assert.assertEquals(remoteName, binaryBatch.get(0).remoteName());
+		Assert.assertTrue(binaryBatch.get(0).isForwardASAPEnabled());
+		Assert.assertNull(binaryBatch.get(1).remoteName());
+		Assert.assertFalse(binaryBatch.get(1).isForwardASAPEnabled());
+		Assert.assertEquals(remoteName, binaryBatch.get(2).remoteName());
+		Assert.assertFalse(binaryBatch.get(2).isForwardASAPEnabled());
+		Assert.assertNull(binaryBatch.get(3).remoteName());
+		Assert.assertTrue(binaryBatch.get(3).isForwardASAPEnabled());
+
+		// As carried in a command name component
+		Assert.assertEquals(batch, new NamespaceBatch(batch.encode(BinaryXMLCodec.codecName())));
+
+		NamespaceBatch empty = new NamespaceBatch();
+		XMLEncodableTester.encodeDecodeTest("EmptyNamespaceBatch", empty, new NamespaceBatch(), new NamespaceBatch());
+	}
+
+	@Test
+	public void testStatuses() {
+		boolean [] statuses = new boolean[] {true, false, true};
+		byte [] content = NamespaceBatch.encodeStatuses(statuses);
+		Assert.assertEquals(CCNMP.RESPONSE_SUCCESS + NamespaceBatch.STATUS_SEPARATOR + CCNMP.RESPONSE_FAILURE
+				+ NamespaceBatch.STATUS_SEPARATOR + CCNMP.RESPONSE_SUCCESS, new String(content));
+		Assert.assertTrue(Arrays.equals(statuses, NamespaceBatch.decodeStatuses(content)));
+
+		Assert.assertEquals(0, NamespaceBatch.decodeStatuses(NamespaceBatch.encodeStatuses(new boolean[0])).length);
+	}
+}
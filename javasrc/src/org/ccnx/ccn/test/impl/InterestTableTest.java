@@ -679,6 +679,31 @@ public class InterestTableTest extends CCNTestBase {
 		Log.info(Log.FAC_TEST, "Completed testRemovesLast");
 	}
 	
+	@Test
+	public void testMatchDigest() throws MalformedContentNameStringException, InvalidKeyException, SignatureException, ConfigurationException {
+		Log.info(Log.FAC_TEST, "Starting testMatchDigest");
+
+		setID(0);
+		ContentObject co = getContentObject(ContentName.fromNative(ab), 1);
+		InterestTable<Integer> table = new InterestTable<Integer>();
+		table.add(new Interest(co.fullName()), Integer.valueOf(1));
+		table.add(new Interest(new ContentName(co.name(), new byte[co.digest().length])), Integer.valueOf(2));
+		table.add(new Interest(ContentName.fromNative(a)), Integer.valueOf(3));
+		table.add(new Interest(ContentName.fromNative(c)), Integer.valueOf(4));
+		sizes(table, 4, 4);
+
+		List<InterestTable.Entry<Integer>> result = table.getMatches(co);
+		assertEquals(2, result.size());
+		assertEquals(1, result.get(0).value().intValue());
+		assertEquals(3, result.get(1).value().intValue());
+		assertEquals(1, table.getMatch(co).value().intValue());
+		assertEquals(1, table.removeMatch(co).value().intValue());
+		assertEquals(3, table.getMatch(co).value().intValue());
+		sizes(table, 3, 3);
+
+		Log.info(Log.FAC_TEST, "Completed testMatchDigest");
+	}
+
 	@Test
 	public void testLRU() throws MalformedContentNameStringException, InvalidKeyException, SignatureException, ConfigurationException {
 		Log.info(Log.FAC_TEST, "Starting testLRU");
@@ -700,6 +725,18 @@ public class InterestTableTest extends CCNTestBase {
 		match(table, abc, 7);
 		matches(table, ab, new String[] {ab, ab}, new int[] {2, 45});
 		noMatch(table, a);
+		sizes(table, 7, 6);
+		assertEquals(4, table.getStats().getCounter("Evictions"));
+		assertEquals(4, table.getStats().getCounter("EvictedEntries"));
+
+		// Entries removed directly must not be evicted again later
+		remove(table, abc, 7);
+		addEntry(table, abb, Integer.valueOf(11));
+		sizes(table, 7, 6);
+		assertEquals(4, table.getStats().getCounter("Evictions"));
+		addEntry(table, a_bb, Integer.valueOf(12));
+		noMatch(table, _aa);
+		assertEquals(5, table.getStats().getCounter("Evictions"));
 		
 		Log.info(Log.FAC_TEST, "Completed testLRU");
 	}
@@ -1,6 +1,7 @@
 package org.ccnx.ccn.test.impl.encoding;
 
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 import junit.framework.Assert;
@@ -43,6 +44,41 @@ public class DecoderTest {
 		Assert.assertEquals(((ContentObject)packet).name(), contentName);
 	}
 
+	@Test
+	public void testBufferDecoding() throws Exception {
+		ContentName interestName = ContentName.fromNative(interestTest);
+		byte[] interestBytes = new Interest(interestName).encode();
+		ContentName contentName = ContentName.fromNative(contentTest);
+		ContentObject co = ContentObject.buildContentObject(contentName, "test decoder".getBytes());
+		byte[] contentBytes = co.encode();
+
+		// Two packets back to back, then part of a third
+		ByteBuffer buffer = ByteBuffer.allocateDirect(interestBytes.length + 2 * contentBytes.length);
+		buffer.put(interestBytes);
+		buffer.put(contentBytes);
+		buffer.put(contentBytes, 0, contentBytes.length - 1);
+		buffer.flip();
+
+		Assert.assertTrue(_decoder.beginDecoding(buffer));
+		Assert.assertEquals(interestBytes.length, buffer.position());
+		XMLEncodable packet = _decoder.getPacket();
+		Assert.assertTrue("Packet has incorrect type", packet instanceof Interest);
+		Assert.assertEquals(((Interest)packet).name(), interestName);
+
+		Assert.assertTrue(_decoder.beginDecoding(buffer));
+		packet = _decoder.getPacket();
+		Assert.assertTrue("Packet has incorrect type", packet instanceof ContentObject);
+		Assert.assertEquals(co, packet);
+
+		int position = buffer.position();
+		Assert.assertFalse(_decoder.beginDecoding(buffer));
+		Assert.assertEquals(position, buffer.position());
+
+		ContentObject decoded = new ContentObject();
+		decoded.decode(contentBytes);
+		Assert.assertEquals(co, decoded);
+	}
+
 	@Test
 	public void testResync() throws Exception {
 		Log.info(Log.FAC_TEST, "Starting testResync");
@@ -0,0 +1,168 @@
+/*
+ * A CCNx library test.
+ *
+ * Copyright (C) 2010, 2011 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ccnx.ccn.test.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.ccnx.ccn.CCNHandle;
+import org.ccnx.ccn.KeyManager;
+import org.ccnx.ccn.io.CCNFileSegmentCache;
+import org.ccnx.ccn.protocol.CCNTime;
+import org.ccnx.ccn.protocol.ContentName;
+import org.ccnx.ccn.protocol.Interest;
+import org.ccnx.ccn.test.CCNTestHelper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test that CCNFileSegmentCache signs each version of a file once per name,
+ * signs it again when the file changes, and drops the least recently used
+ * files when full.
+ */
+public class CCNFileSegmentCacheTest {
+
+	public static CCNTestHelper testHelper = new CCNTestHelper(CCNFileSegmentCacheTest.class);
+
+	public static final int FILE_SIZE = 10000;
+
+	public static CCNHandle handle;
+	public static ContentName namespace;
+	public static File directory;
+
+	/**
+	 * Counts the files it segments and signs.
+	 */
+	static class CountingCache extends CCNFileSegmentCache {
+		int _writes = 0;
+
+		CountingCache(long maxBytes, CCNHandle handle) {
+			super(maxBytes, handle);
+		}
+
+		@Override
+		protected void write(File file, CacheEntry entry, Interest interest) throws IOException {
+			_writes++;
+			super.write(file, entry, interest);
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		handle = CCNHandle.open();
+		namespace = testHelper.getTestNamespace("fileSegmentCacheTest");
+		directory = File.createTempFile("CCNFileSegmentCacheTest", "");
+		directory.delete();
+		directory.mkdir();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		for (File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+		handle.close();
+		KeyManager.closeDefaultKeyManager();
+	}
+
+	@Test
+	public void testHitAndChange() throws IOException {
+		CountingCache cache = new CountingCache(CCNFileSegmentCache.DEFAULT_CACHE_BYTES, handle);
+		File file = createFile("changing", 1);
+		ContentName name = new ContentName(namespace, "changing");
+
+		Assert.assertTrue(serve(cache, file, name));
+		Assert.assertEquals(1, cache._writes);
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(FILE_SIZE, cache.bytes());
+
+		// The same version is answered from the held content
+		Assert.assertTrue(serve(cache, file, name));
+		Assert.assertEquals(1, cache._writes);
+
+		// A new version replaces the old one
+		Assert.assertTrue(file.setLastModified(file.lastModified() + 2000));
+		Assert.assertTrue(serve(cache, file, name));
+		Assert.assertEquals(2, cache._writes);
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(FILE_SIZE, cache.bytes());
+		cache.close();
+	}
+
+	@Test
+	public void testSeveralNames() throws IOException {
+		CountingCache cache = new CountingCache(CCNFileSegmentCache.DEFAULT_CACHE_BYTES, handle);
+		File file = createFile("named", 2);
+		ContentName first = new ContentName(namespace, "first", "named");
+		ContentName second = new ContentName(namespace, "second", "named");
+
+		// The same file under two names is held under both, neither replacing the other
+		Assert.assertTrue(serve(cache, file, first));
+		Assert.assertTrue(serve(cache, file, second));
+		Assert.assertTrue(serve(cache, file, first));
+		Assert.assertTrue(serve(cache, file, second));
+		Assert.assertEquals(2, cache._writes);
+		Assert.assertEquals(2, cache.size());
+		cache.close();
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		CountingCache cache = new CountingCache(FILE_SIZE * 3 / 2, handle);
+		File file1 = createFile("evicted1", 3);
+		File file2 = createFile("evicted2", 4);
+		ContentName name1 = new ContentName(namespace, "evicted1");
+		ContentName name2 = new ContentName(namespace, "evicted2");
+
+		Assert.assertTrue(serve(cache, file1, name1));
+		Assert.assertTrue(serve(cache, file2, name2));
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(FILE_SIZE, cache.bytes());
+
+		// file1 was dropped to make room for file2, so it is signed again
+		Assert.assertTrue(serve(cache, file1, name1));
+		Assert.assertEquals(3, cache._writes);
+		Assert.assertEquals(1, cache.size());
+		cache.close();
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.bytes());
+	}
+
+	private boolean serve(CCNFileSegmentCache cache, File file, ContentName name) throws IOException {
+		ContentName versionedName = new ContentName(name, new CCNTime(file.lastModified()));
+		return cache.serve(file, versionedName, new Interest(name));
+	}
+
+	private File createFile(String name, long seed) throws IOException {
+		byte [] content = new byte[FILE_SIZE];
+		new Random(seed).nextBytes(content);
+		File file = new File(directory, name);
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(content);
+		} finally {
+			fos.close();
+		}
+		return file;
+	}
+}
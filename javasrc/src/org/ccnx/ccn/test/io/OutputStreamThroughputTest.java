@@ -0,0 +1,195 @@
+/*
+ * A CCNx library test.
+ *
+ * Copyright (C) 2010, 2011 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ccnx.ccn.test.io;
+
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.ccnx.ccn.CCNHandle;
+import org.ccnx.ccn.KeyManager;
+import org.ccnx.ccn.config.SystemConfiguration;
+import org.ccnx.ccn.impl.CCNFlowControl;
+import org.ccnx.ccn.io.CCNOutputStream;
+import org.ccnx.ccn.profiles.SegmentationProfile;
+import org.ccnx.ccn.profiles.VersioningProfile;
+import org.ccnx.ccn.protocol.ContentName;
+import org.ccnx.ccn.protocol.ContentObject;
+import org.ccnx.ccn.test.CCNTestHelper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * This is not a unit test designed to verify functionality.
+ * Instead, this test times writing content through CCNOutputStream, with the
+ * segments' Merkle trees built and encoded on one thread and in parallel, and
+ * signed and output on the writing thread or in the background, to benchmark
+ * segmenting and signing. The segments are encoded and then discarded rather
+ * than written to ccnd, so the network does not limit the rate.
+ *
+ * Writes of 1 MB and 32 MB are timed; set org.ccnx.test.OutputStreamThroughputMaxBytes
+ * to time larger writes, up to 1 GB.
+ */
+public class OutputStreamThroughputTest {
+
+	public static CCNTestHelper testHelper = new CCNTestHelper(OutputStreamThroughputTest.class);
+
+	public static final int MB = 1024 * 1024;
+	public static final long [] SIZES = {MB, 32L * MB, 256L * MB, 1024L * MB};
+	public static final long MAX_BYTES = Long.getLong("org.ccnx.test.OutputStreamThroughputMaxBytes", 32L * MB);
+
+	public static ContentName namespace;
+	public static CCNHandle handle;
+	public static byte [] buffer;
+
+	private static int parallelThreads;
+
+	/**
+	 * Encodes what it is handed, as writing it to ccnd would, and discards it.
+	 */
+	static class DiscardingFlowControl extends CCNFlowControl {
+		long _objects = 0;
+		long _bytes = 0;
+		long _failAfter = -1;
+
+		DiscardingFlowControl(CCNHandle handle) throws IOException {
+			super(handle);
+		}
+
+		@Override
+		public ContentObject put(ContentObject co) throws IOException {
+			if (_objects == _failAfter)
+				throw new IOException("Failing put of " + co.name());
+			// Segments must arrive in order, whichever thread puts them
+			Assert.assertEquals(_objects, SegmentationProfile.getSegmentNumber(co.name()));
+			_objects++;
+			_bytes += co.wireEncoding().length;
+			return co;
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		handle = CCNHandle.open();
+		namespace = testHelper.getTestNamespace("outputStreamThroughputTest");
+		buffer = new byte[64 * 1024];
+		new Random(1).nextBytes(buffer);
+		parallelThreads = SystemConfiguration.PARALLEL_THREADS;
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		SystemConfiguration.PARALLEL_THREADS = parallelThreads;
+		handle.close();
+		KeyManager.closeDefaultKeyManager();
+	}
+
+	@Test
+	public void testSerialThroughput() throws IOException {
+		SystemConfiguration.PARALLEL_THREADS = 1;
+		for (long size : SIZES)
+			if (size <= MAX_BYTES)
+				writeStream("serial", size, false);
+	}
+
+	@Test
+	public void testParallelThroughput() throws IOException {
+		SystemConfiguration.PARALLEL_THREADS = Math.max(parallelThreads, 2);
+		for (long size : SIZES)
+			if (size <= MAX_BYTES)
+				writeStream("parallel", size, false);
+	}
+
+	@Test
+	public void testAsynchronousThroughput() throws IOException {
+		SystemConfiguration.PARALLEL_THREADS = parallelThreads;
+		for (long size : SIZES)
+			if (size <= MAX_BYTES)
+				writeStream("asynchronous", size, true);
+	}
+
+	@Test
+	public void testAsynchronousFailure() throws IOException {
+		ContentName name = VersioningProfile.addVersion(new ContentName(namespace, "asynchronousFailure"));
+		DiscardingFlowControl flowControl = new DiscardingFlowControl(handle);
+		flowControl._failAfter = 10;
+		CCNOutputStream ostream = new CCNOutputStream(name, null, null, null, null, flowControl);
+		ostream.setAsynchronous(true);
+
+		// The failure happens in the background, and is thrown by a later write or the close
+		boolean failed = false;
+		try {
+			for (int i = 0; i < 64; i++)
+				ostream.write(buffer);
+			ostream.close();
+		} catch (IOException e) {
+			failed = true;
+		}
+		Assert.assertTrue(failed);
+		Assert.assertEquals(10, flowControl._objects);
+
+		// The failure is thrown again by everything that follows
+		failed = false;
+		try {
+			ostream.write(buffer);
+		} catch (IOException e) {
+			failed = true;
+		}
+		Assert.assertTrue(failed);
+		failed = false;
+		try {
+			ostream.flush();
+		} catch (IOException e) {
+			failed = true;
+		}
+		Assert.assertTrue(failed);
+		failed = false;
+		try {
+			ostream.close();
+		} catch (IOException e) {
+			failed = true;
+		}
+		Assert.assertTrue(failed);
+		Assert.assertEquals(10, flowControl._objects);
+	}
+
+	private void writeStream(String label, long size, boolean asynchronous) throws IOException {
+		ContentName name = VersioningProfile.addVersion(new ContentName(namespace, label + "-" + size));
+		DiscardingFlowControl flowControl = new DiscardingFlowControl(handle);
+		CCNOutputStream ostream = new CCNOutputStream(name, null, null, null, null, flowControl);
+		ostream.setAsynchronous(asynchronous);
+
+		long start = System.nanoTime();
+		long written = 0;
+		while (written < size) {
+			int length = (int)Math.min(buffer.length, size - written);
+			ostream.write(buffer, 0, length);
+			written += length;
+		}
+		ostream.close();
+		long elapsed = System.nanoTime() - start;
+
+		double seconds = elapsed / 1000000000.0;
+		System.out.println("Output stream " + label + " (" + SystemConfiguration.PARALLEL_THREADS + " threads): wrote "
+				+ (size / MB) + " MB in " + flowControl._objects + " segments in " + Math.round(seconds * 1000) + " ms, "
+				+ Math.round(size / seconds / MB * 10) / 10.0 + " MB/s");
+		Assert.assertTrue(flowControl._bytes > size);
+	}
+}
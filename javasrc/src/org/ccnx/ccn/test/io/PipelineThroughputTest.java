@@ -0,0 +1,123 @@
+/*
+ * A CCNx library test.
+ *
+ * Copyright (C) 2010, 2011 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ccnx.ccn.test.io;
+
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.ccnx.ccn.CCNHandle;
+import org.ccnx.ccn.KeyManager;
+import org.ccnx.ccn.config.SystemConfiguration;
+import org.ccnx.ccn.impl.support.Log;
+import org.ccnx.ccn.io.AIMDPipelineWindow;
+import org.ccnx.ccn.io.CCNInputStream;
+import org.ccnx.ccn.io.FixedPipelineWindow;
+import org.ccnx.ccn.io.PipelineWindow;
+import org.ccnx.ccn.profiles.SegmentationProfile;
+import org.ccnx.ccn.profiles.VersioningProfile;
+import org.ccnx.ccn.protocol.ContentName;
+import org.ccnx.ccn.protocol.ContentObject;
+import org.ccnx.ccn.test.CCNTestHelper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * This is not a unit test designed to verify functionality.
+ * Instead, this test times reading a stream of segments already held by the
+ * local ccnd through a fixed size pipeline and through an adaptive one, to
+ * benchmark the read pipeline of CCNAbstractInputStream.
+ */
+public class PipelineThroughputTest {
+
+	public static CCNTestHelper testHelper = new CCNTestHelper(PipelineThroughputTest.class);
+
+	public static final int SEGMENTS = 2000;
+	public static final int SEGMENT_SIZE = 4096;
+
+	public static ContentName testName;
+
+	public static CCNHandle readHandle;
+	public static CCNHandle writeHandle;
+
+	private static long bytesWritten;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		readHandle = CCNHandle.open();
+		writeHandle = CCNHandle.open();
+
+		ContentName namespace = testHelper.getTestNamespace("pipelineThroughputTest");
+		testName = VersioningProfile.addVersion(new ContentName(namespace, "ThroughputSegments"));
+		putSegments();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		readHandle.close();
+		writeHandle.close();
+		KeyManager.closeDefaultKeyManager();
+	}
+
+	private static void putSegments() throws Exception {
+		Random random = new Random(1);
+		byte [] finalSegment = SegmentationProfile.getSegmentNumberNameComponent(SEGMENTS - 1);
+		bytesWritten = 0;
+		for (int i = 0; i < SEGMENTS; i++) {
+			byte [] content = new byte[SEGMENT_SIZE];
+			random.nextBytes(content);
+			ContentObject object = ContentObject.buildContentObject(SegmentationProfile.segmentName(testName, i), content,
+					null, null, finalSegment);
+			writeHandle.put(object);
+			bytesWritten += content.length;
+		}
+		Log.info(Log.FAC_TEST, "wrote {0} bytes in {1} segments", bytesWritten, SEGMENTS);
+	}
+
+	@Test
+	public void testFixedPipelineThroughput() throws IOException {
+		readStream("fixed", new FixedPipelineWindow(SystemConfiguration.PIPELINE_SIZE));
+	}
+
+	@Test
+	public void testAdaptivePipelineThroughput() throws IOException {
+		readStream("adaptive", new AIMDPipelineWindow(SystemConfiguration.PIPELINE_SIZE, SystemConfiguration.PIPELINE_MAX_SIZE));
+	}
+
+	private void readStream(String label, PipelineWindow window) throws IOException {
+		CCNInputStream istream = new CCNInputStream(testName, readHandle);
+		istream.setPipelineWindow(window);
+
+		byte [] buffer = new byte[SEGMENT_SIZE];
+		long received = 0;
+		long start = System.nanoTime();
+		int read;
+		while ((read = istream.read(buffer)) >= 0)
+			received += read;
+		long elapsed = System.nanoTime() - start;
+		istream.close();
+
+		double seconds = elapsed / 1000000000.0;
+		System.out.println("Pipeline " + label + ": read " + received + " bytes in " + Math.round(seconds * 1000) + " ms, "
+				+ Math.round(received / seconds / 1024) + " KB/s, final window " + window.size()
+				+ ", " + istream.getRTTEstimator());
+		Assert.assertEquals(bytesWritten, received);
+	}
+}
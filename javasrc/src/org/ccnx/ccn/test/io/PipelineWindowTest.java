@@ -0,0 +1,126 @@
+/*
+ * A CCNx library test.
+ *
+ * Copyright (C) 2010, 2011 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ccnx.ccn.test.io;
+
+import junit.framework.Assert;
+
+import org.ccnx.ccn.io.AIMDPipelineWindow;
+import org.ccnx.ccn.io.FixedPipelineWindow;
+import org.ccnx.ccn.io.RTTEstimator;
+import org.junit.Test;
+
+/**
+ * Test the window controllers and round trip time estimation of the
+ * CCNAbstractInputStream pipeline.
+ */
+public class PipelineWindowTest {
+
+	@Test
+	public void testSlowStart() {
+		AIMDPipelineWindow window = new AIMDPipelineWindow(4, 256);
+		Assert.assertEquals(4, window.size());
+		// One round trip: every segment of the window arrives, window doubles
+		for (int i = 0; i < 4; i++)
+			window.segmentReceived(i);
+		Assert.assertEquals(8, window.size());
+		for (int i = 4; i < 1000; i++)
+			window.segmentReceived(i);
+		Assert.assertEquals(256, window.size());
+	}
+
+	@Test
+	public void testMultiplicativeDecrease() {
+		AIMDPipelineWindow window = new AIMDPipelineWindow(4, 256);
+		for (int i = 0; i < 60; i++)
+			window.segmentReceived(i);
+		Assert.assertEquals(64, window.size());
+
+		window.segmentLost(61, 127);
+		Assert.assertEquals(32, window.size());
+		Assert.assertEquals(32, window.threshold());
+
+		// Further losses of the same round trip do not shrink the window again
+		window.segmentLost(70, 127);
+		Assert.assertEquals(32, window.size());
+
+		// Congestion avoidance: about one segment per round trip
+		for (int i = 0; i < 34; i++)
+			window.segmentReceived(128 + i);
+		Assert.assertEquals(33, window.size());
+
+		window.segmentLost(200, 300);
+		Assert.assertEquals(16, window.size());
+	}
+
+	@Test
+	public void testTimeout() {
+		AIMDPipelineWindow window = new AIMDPipelineWindow(4, 256);
+		for (int i = 0; i < 60; i++)
+			window.segmentReceived(i);
+		window.segmentTimedOut(61, 127);
+		Assert.assertEquals(4, window.size());
+		Assert.assertEquals(32, window.threshold());
+
+		// Slow start again up to the threshold
+		for (int i = 0; i < 28; i++)
+			window.segmentReceived(128 + i);
+		Assert.assertEquals(32, window.size());
+		window.segmentReceived(200);
+		Assert.assertEquals(32, window.size());
+	}
+
+	@Test
+	public void testFixedWindow() {
+		FixedPipelineWindow window = new FixedPipelineWindow(4);
+		for (int i = 0; i < 100; i++)
+			window.segmentReceived(i);
+		window.segmentLost(100, 104);
+		window.segmentTimedOut(105, 110);
+		Assert.assertEquals(4, window.size());
+	}
+
+	@Test
+	public void testRTTEstimator() {
+		RTTEstimator rtt = new RTTEstimator(4000);
+		Assert.assertFalse(rtt.hasSample());
+		Assert.assertEquals(4000, rtt.rto());
+
+		rtt.sample(100);
+		Assert.assertTrue(rtt.hasSample());
+		Assert.assertEquals(100.0, rtt.srtt());
+		Assert.assertEquals(50.0, rtt.rttvar());
+		Assert.assertEquals(300, rtt.rto());
+
+		// A steady path converges on its round trip time
+		for (int i = 0; i < 100; i++)
+			rtt.sample(100);
+		Assert.assertTrue(Math.abs(rtt.srtt() - 100) < 1);
+		Assert.assertTrue(rtt.rto() < 110);
+
+		rtt.backoff();
+		long backedOff = rtt.rto();
+		Assert.assertTrue(backedOff >= 2 * RTTEstimator.MIN_RTO);
+		for (int i = 0; i < 10; i++)
+			rtt.backoff();
+		Assert.assertEquals(4000, rtt.rto());
+
+		// The next sample ends the backoff
+		rtt.sample(100);
+		Assert.assertTrue(rtt.rto() < 110);
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * A CCNx library test.
+ *
+ * Copyright (C) 2010, 2011 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ccnx.ccn.test.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.ccnx.ccn.CCNHandle;
+import org.ccnx.ccn.KeyManager;
+import org.ccnx.ccn.config.SystemConfiguration;
+import org.ccnx.ccn.io.CCNInputStream;
+import org.ccnx.ccn.io.SegmentCache;
+import org.ccnx.ccn.profiles.SegmentationProfile;
+import org.ccnx.ccn.profiles.VersioningProfile;
+import org.ccnx.ccn.protocol.ContentName;
+import org.ccnx.ccn.protocol.ContentObject;
+import org.ccnx.ccn.protocol.Interest;
+import org.ccnx.ccn.test.CCNTestHelper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the segment cache of CCNAbstractInputStream, which serves seeks back to
+ * segments already read without retrieving them again.
+ */
+public class SegmentCacheTest {
+
+	public static CCNTestHelper testHelper = new CCNTestHelper(SegmentCacheTest.class);
+
+	public static final int SEGMENTS = 20;
+	public static final int SEGMENT_SIZE = 1000;
+
+	public static ContentName testName;
+
+	public static CCNHandle readHandle;
+	public static CCNHandle writeHandle;
+
+	private static byte [] content;
+	private static int cacheSize;
+
+	/**
+	 * Counts the segments delivered to it by the network.
+	 */
+	static class CountingInputStream extends CCNInputStream {
+		int _delivered = 0;
+
+		CountingInputStream(ContentName name, CCNHandle handle) throws IOException {
+			super(name, handle);
+		}
+
+		@Override
+		public Interest handleContent(ContentObject result, Interest interest) {
+			synchronized (this) {
+				_delivered++;
+			}
+			return super.handleContent(result, interest);
+		}
+
+		synchronized int delivered() {
+			return _delivered;
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		readHandle = CCNHandle.open();
+		writeHandle = CCNHandle.open();
+		cacheSize = SystemConfiguration.SEGMENT_CACHE_SIZE;
+
+		ContentName namespace = testHelper.getTestNamespace("segmentCacheTest");
+		testName = VersioningProfile.addVersion(new ContentName(namespace, "CachedSegments"));
+		content = new byte[SEGMENTS * SEGMENT_SIZE];
+		new Random(1).nextBytes(content);
+		byte [] finalSegment = SegmentationProfile.getSegmentNumberNameComponent(SEGMENTS - 1);
+		for (int i = 0; i < SEGMENTS; i++) {
+			byte [] segmentContent = new byte[SEGMENT_SIZE];
+			System.arraycopy(content, i * SEGMENT_SIZE, segmentContent, 0, SEGMENT_SIZE);
+			writeHandle.put(ContentObject.buildContentObject(SegmentationProfile.segmentName(testName, i), segmentContent,
+					null, null, finalSegment));
+		}
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		SystemConfiguration.SEGMENT_CACHE_SIZE = cacheSize;
+		readHandle.close();
+		writeHandle.close();
+		KeyManager.closeDefaultKeyManager();
+	}
+
+	@Test
+	public void testLeastRecentlyUsed() {
+		SegmentCache cache = new SegmentCache(2);
+		ContentObject [] segments = new ContentObject[3];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = ContentObject.buildContentObject(SegmentationProfile.segmentName(testName, i), new byte[] {(byte)i});
+		}
+		cache.put(0, segments[0], segments[0].content());
+		cache.put(1, segments[1]);
+		Assert.assertSame(segments[0], cache.getSegment(0));
+		cache.put(2, segments[2]);
+		// 1 was used least recently
+		Assert.assertEquals(2, cache.size());
+		Assert.assertTrue(cache.contains(0));
+		Assert.assertFalse(cache.contains(1));
+		Assert.assertTrue(cache.contains(2));
+
+		// Data is only handed back for the segment it belongs to
+		Assert.assertNotNull(cache.getData(0, segments[0]));
+		Assert.assertNull(cache.getData(0, segments[2]));
+		Assert.assertNull(cache.getData(2, segments[2]));
+		// Adding the segment again without data keeps what we have
+		cache.put(0, segments[0]);
+		Assert.assertNotNull(cache.getData(0, segments[0]));
+
+		SegmentCache disabled = new SegmentCache(0);
+		disabled.put(0, segments[0]);
+		Assert.assertEquals(0, disabled.size());
+	}
+
+	@Test
+	public void testBackwardSeekServedLocally() throws IOException {
+		SystemConfiguration.SEGMENT_CACHE_SIZE = SEGMENTS;
+		CountingInputStream istream = new CountingInputStream(testName, readHandle);
+		readAll(istream, 0);
+		int delivered = istream.delivered();
+
+		// Every segment is cached, so going back does not go to the network
+		istream.seek(0);
+		readAll(istream, 0);
+		istream.seek(SEGMENT_SIZE * 5 + 17);
+		readAll(istream, SEGMENT_SIZE * 5 + 17);
+		Assert.assertEquals(delivered, istream.delivered());
+		istream.close();
+	}
+
+	@Test
+	public void testSeekPastCache() throws IOException {
+		// Only some segments are cached; the rest must be retrieved again
+		SystemConfiguration.SEGMENT_CACHE_SIZE = 4;
+		CCNInputStream istream = new CCNInputStream(testName, readHandle);
+		readAll(istream, 0);
+		istream.seek(SEGMENT_SIZE * 3 + 1);
+		readAll(istream, SEGMENT_SIZE * 3 + 1);
+		istream.seek(0);
+		readAll(istream, 0);
+		istream.close();
+
+		SystemConfiguration.SEGMENT_CACHE_SIZE = 0;
+		istream = new CCNInputStream(testName, readHandle);
+		readAll(istream, 0);
+		istream.seek(SEGMENT_SIZE * 2);
+		readAll(istream, SEGMENT_SIZE * 2);
+		istream.close();
+	}
+
+	private void readAll(CCNInputStream istream, int position) throws IOException {
+		byte [] buffer = new byte[content.length + 1];
+		int total = 0;
+		int read;
+		while ((read = istream.read(buffer, total, buffer.length - total)) > 0)
+			total += read;
+		Assert.assertEquals(content.length - position, total);
+		Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(content, position, content.length), Arrays.copyOf(buffer, total)));
+	}
+}
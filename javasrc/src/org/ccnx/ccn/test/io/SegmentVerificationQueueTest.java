@@ -0,0 +1,260 @@
+/*
+ * A CCNx library test.
+ *
+ * Copyright (C) 2011 Palo Alto Research Center, Inc.
+ *
+ * This work is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License version 2 as published by the
+ * Free Software Foundation.
+ * This work is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public
+ * License along with this program; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ */
+
+package org.ccnx.ccn.test.io;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.ccnx.ccn.ContentVerifier;
+import org.ccnx.ccn.KeyManager;
+import org.ccnx.ccn.config.SystemConfiguration;
+import org.ccnx.ccn.impl.security.crypto.CCNMerkleTree;
+import org.ccnx.ccn.io.SegmentVerificationQueue;
+import org.ccnx.ccn.profiles.SegmentationProfile;
+import org.ccnx.ccn.profiles.VersioningProfile;
+import org.ccnx.ccn.protocol.ContentName;
+import org.ccnx.ccn.protocol.ContentObject;
+import org.ccnx.ccn.protocol.Interest;
+import org.ccnx.ccn.protocol.KeyLocator;
+import org.ccnx.ccn.protocol.PublisherPublicKeyDigest;
+import org.ccnx.ccn.protocol.Signature;
+import org.ccnx.ccn.protocol.SignedInfo;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test that SegmentVerificationQueue hands segments back in the order they were
+ * submitted, checks the root signature of a Merkle batch only once, and does not
+ * remember a failed check, both with verification threads and without.
+ */
+public class SegmentVerificationQueueTest {
+
+	public static final int SEGMENTS = 8;
+	public static final int TIMEOUT = 10000;
+
+	static KeyPair pair;
+	static SignedInfo signedInfo;
+	static int verifyThreads;
+	static Random rand = new Random();
+
+	/**
+	 * Counts the checks it makes, answering with _result. Segments are delayed in
+	 * reverse order of their segment number, so verification finishes out of order.
+	 */
+	static class CountingVerifier extends ContentObject.SimpleVerifier {
+		int _checks = 0;
+		boolean _result = true;
+		ArrayList<ContentObject> _finished = new ArrayList<ContentObject>();
+
+		CountingVerifier() {
+			super(null);
+		}
+
+		@Override
+		public boolean verify(ContentObject segment) {
+			synchronized (this) {
+				_checks++;
+			}
+			return finish(segment, _result);
+		}
+
+		boolean finish(ContentObject segment, boolean result) {
+			try {
+				Thread.sleep((SEGMENTS - SegmentationProfile.getSegmentNumber(segment.name())) * 20);
+			} catch (InterruptedException e) {}
+			synchronized (this) {
+				_finished.add(segment);
+			}
+			return result;
+		}
+
+		synchronized int checks() {
+			return _checks;
+		}
+	}
+
+	/**
+	 * Not a SimpleVerifier, so every segment is checked on its own.
+	 */
+	static class DelayingVerifier implements ContentVerifier {
+		CountingVerifier _counter = new CountingVerifier();
+
+		public boolean verify(ContentObject segment) {
+			return _counter.verify(segment);
+		}
+	}
+
+	static class Collector implements SegmentVerificationQueue.Listener {
+		ArrayList<ContentObject> _segments = new ArrayList<ContentObject>();
+		ArrayList<Boolean> _verified = new ArrayList<Boolean>();
+
+		public synchronized void segmentVerified(ContentObject segment, Interest interest, boolean verified) {
+			_segments.add(segment);
+			_verified.add(verified);
+			notifyAll();
+		}
+
+		synchronized void waitFor(int count) throws InterruptedException {
+			long end = System.currentTimeMillis() + TIMEOUT;
+			while (_segments.size() < count && System.currentTimeMillis() < end)
+				wait(end - System.currentTimeMillis());
+			Assert.assertEquals(count, _segments.size());
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		verifyThreads = SystemConfiguration.VERIFY_THREADS;
+		KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+		kpg.initialize(512); // go for fast
+		pair = kpg.generateKeyPair();
+		signedInfo = new SignedInfo(new PublisherPublicKeyDigest(pair.getPublic()), new KeyLocator(pair.getPublic()));
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		SystemConfiguration.VERIFY_THREADS = verifyThreads;
+		KeyManager.closeDefaultKeyManager();
+	}
+
+	@Test
+	public void testOrderWithThreads() throws Exception {
+		SystemConfiguration.VERIFY_THREADS = 4;
+		testOrder(true);
+	}
+
+	@Test
+	public void testOrderWithoutThreads() throws Exception {
+		SystemConfiguration.VERIFY_THREADS = 0;
+		testOrder(false);
+	}
+
+	@Test
+	public void testBatchWithThreads() throws Exception {
+		SystemConfiguration.VERIFY_THREADS = 4;
+		testBatch();
+	}
+
+	@Test
+	public void testBatchWithoutThreads() throws Exception {
+		SystemConfiguration.VERIFY_THREADS = 0;
+		testBatch();
+	}
+
+	@Test
+	public void testFailureWithThreads() throws Exception {
+		SystemConfiguration.VERIFY_THREADS = 4;
+		testFailure();
+	}
+
+	@Test
+	public void testFailureWithoutThreads() throws Exception {
+		SystemConfiguration.VERIFY_THREADS = 0;
+		testFailure();
+	}
+
+	private void testOrder(boolean outOfOrder) throws Exception {
+		ContentObject [] segments = makeSegments("order");
+		DelayingVerifier verifier = new DelayingVerifier();
+		Collector collector = new Collector();
+		SegmentVerificationQueue queue = new SegmentVerificationQueue(verifier, collector);
+		for (ContentObject segment : segments)
+			queue.submit(segment, null);
+		collector.waitFor(SEGMENTS);
+
+		// Each segment was checked, and handed back in the order submitted
+		Assert.assertEquals(SEGMENTS, verifier._counter.checks());
+		for (int i = 0; i < SEGMENTS; i++) {
+			Assert.assertSame(segments[i], collector._segments.get(i));
+			Assert.assertTrue(collector._verified.get(i));
+		}
+		Assert.assertEquals(0, queue.size());
+		// whatever order the checks finished in
+		Assert.assertEquals(outOfOrder, segments[0] != verifier._counter._finished.get(0));
+	}
+
+	private void testBatch() throws Exception {
+		ContentObject [] segments = makeSegments("batch");
+		CountingVerifier verifier = new CountingVerifier();
+		Collector collector = new Collector();
+		SegmentVerificationQueue queue = new SegmentVerificationQueue(verifier, collector);
+		for (ContentObject segment : segments)
+			queue.submit(segment, null);
+		collector.waitFor(SEGMENTS);
+
+		// One check covers the whole batch
+		Assert.assertEquals(1, verifier.checks());
+		for (int i = 0; i < SEGMENTS; i++) {
+			Assert.assertSame(segments[i], collector._segments.get(i));
+			Assert.assertTrue(collector._verified.get(i));
+		}
+
+		// A second batch needs a check of its own
+		ContentObject [] others = makeSegments("otherBatch");
+		for (ContentObject segment : others)
+			queue.submit(segment, null);
+		collector.waitFor(SEGMENTS * 2);
+		Assert.assertEquals(2, verifier.checks());
+	}
+
+	private void testFailure() throws Exception {
+		ContentObject [] segments = makeSegments("failure");
+		CountingVerifier verifier = new CountingVerifier();
+		Collector collector = new Collector();
+		SegmentVerificationQueue queue = new SegmentVerificationQueue(verifier, collector);
+
+		verifier._result = false;
+		queue.submit(segments[0], null);
+		collector.waitFor(1);
+		Assert.assertFalse(collector._verified.get(0));
+		Assert.assertEquals(1, verifier.checks());
+
+		// The failure is not remembered, so the next segment of the batch is checked again
+		verifier._result = true;
+		queue.submit(segments[1], null);
+		collector.waitFor(2);
+		Assert.assertTrue(collector._verified.get(1));
+		Assert.assertEquals(2, verifier.checks());
+
+		// and the success is
+		queue.submit(segments[2], null);
+		collector.waitFor(3);
+		Assert.assertTrue(collector._verified.get(2));
+		Assert.assertEquals(2, verifier.checks());
+	}
+
+	/**
+	 * @return the segments of one Merkle batch, signed with one signature over its root
+	 */
+	private ContentObject [] makeSegments(String name) throws Exception {
+		ContentName versionedName = VersioningProfile.addVersion(new ContentName("test", "verificationQueue", name));
+		ContentObject [] segments = new ContentObject[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			byte [] content = new byte[100];
+			rand.nextBytes(content);
+			segments[i] = new ContentObject(SegmentationProfile.segmentName(versionedName, i), signedInfo, content, (Signature)null);
+		}
+		new CCNMerkleTree(segments, pair.getPrivate());
+		return segments;
+	}
+}
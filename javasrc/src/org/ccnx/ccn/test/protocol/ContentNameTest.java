@@ -23,17 +23,22 @@ import static org.ccnx.ccn.protocol.ContentName.fromNative;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
 
+import org.ccnx.ccn.config.SystemConfiguration;
 import org.ccnx.ccn.impl.support.DataUtils;
 import org.ccnx.ccn.impl.support.Log;
 import org.ccnx.ccn.io.content.ContentDecodingException;
 import org.ccnx.ccn.io.content.ContentEncodingException;
 import org.ccnx.ccn.protocol.ContentName;
+import org.ccnx.ccn.protocol.ContentNameSlice;
 import org.ccnx.ccn.protocol.MalformedContentNameStringException;
 import org.ccnx.ccn.test.impl.encoding.XMLEncodableTester;
 import org.junit.After;
@@ -633,6 +638,217 @@ public class ContentNameTest {
 		Log.info(Log.FAC_TEST, "Completed testContentNamePrintPerformance");
 	}
 	
+	@Test
+	public void testHashCode() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testHashCode");
+
+		ContentName name = new ContentName(fromNative("/a/b/c"), document3);
+		int hash = name.hashCode();
+		assertEquals(hash, name.hashCode());
+		assertEquals(hash, new ContentName(name).hashCode());
+
+		ContentName decoded = new ContentName();
+		decoded.decode(name.encode());
+		assertEquals(name, decoded);
+		assertEquals(hash, decoded.hashCode());
+
+		// Decoding into a name whose hash is already cached must not keep the old hash
+		ContentName other = fromNative("/x/y");
+		int otherHash = other.hashCode();
+		other.decode(name.encode());
+		assertEquals(hash, other.hashCode());
+		assertFalse(otherHash == other.hashCode());
+		assertFalse(fromNative("/x/y").equals(other));
+
+		// Interned components are equal to the originals whether or not the pool is enabled
+		byte [] component = "component".getBytes();
+		assertTrue(Arrays.equals(component, ContentName.internComponent(component)));
+		assertTrue(Arrays.equals(component, ContentName.internComponent(component.clone())));
+
+		Log.info(Log.FAC_TEST, "Completed testHashCode");
+	}
+
+	@Test
+	public void testSlices() throws MalformedContentNameStringException {
+		Log.info(Log.FAC_TEST, "Starting testSlices");
+
+		ContentName name = fromNative("/a/b/c/d");
+		HashMap<ContentName, Integer> map = new HashMap<ContentName, Integer>();
+		for (int i = 0; i <= name.count(); i++)
+			map.put(name.cut(i), i);
+
+		for (int i = 0; i <= name.count(); i++) {
+			ContentNameSlice prefix = name.prefix(i);
+			ContentName cut = name.cut(i);
+			assertEquals(i, prefix.count());
+			assertEquals(cut.hashCode(), prefix.hashCode());
+			assertTrue(prefix.equals(cut));
+			assertTrue(cut.equals(prefix));
+			assertEquals(0, prefix.compareTo(cut));
+			assertTrue(prefix.isPrefixOf(name));
+			assertEquals(cut, prefix.getContentName());
+			assertEquals(Integer.valueOf(i), map.get(prefix));
+		}
+		assertTrue(name == name.prefix(name.count()).getContentName());
+
+		ContentNameSlice middle = name.slice(1, 3);
+		assertEquals(fromNative("/b/c"), middle.getContentName());
+		assertEquals(fromNative("/b/c").hashCode(), middle.hashCode());
+		assertFalse(middle.isPrefixOf(name));
+		assertFalse(middle.equals(name.prefix(2)));
+		assertEquals(fromNative("/b/c").compareTo(fromNative("/a/b")), middle.compareTo(name.prefix(2)));
+		assertEquals(fromNative("/b/c").compareTo(name), middle.compareTo(name));
+		assertEquals(null, map.get(middle));
+
+		try {
+			name.prefix(name.count() + 1);
+			fail("Slice past the end of the name should fail");
+		} catch (IllegalArgumentException e) {}
+
+		Log.info(Log.FAC_TEST, "Completed testSlices");
+	}
+
+	@Test
+	public void testHashMapLookup() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testHashMapLookup");
+
+		ContentName prefix = ContentName.fromURI(veryEscapedName);
+		ContentName [] names = new ContentName[100];
+		HashMap<ContentName, Integer> map = new HashMap<ContentName, Integer>();
+		for (int i = 0; i < names.length; i++) {
+			names[i] = new ContentName(prefix, Integer.toString(i));
+			map.put(names[i], i);
+		}
+		assertEquals(names.length, map.size());
+
+		// The cached hash is the hash of the components
+		for (int i = 0; i < names.length; i++) {
+			byte [][] components = new byte[names[i].count()][];
+			for (int j = 0; j < components.length; j++)
+				components[j] = names[i].component(j);
+			assertEquals(Arrays.deepHashCode(components), names[i].hashCode());
+		}
+
+		// Equal but distinct names, as when a name has just been decoded, find the same entries
+		for (int i = 0; i < names.length; i++) {
+			ContentName copy = new ContentName();
+			copy.decode(names[i].encode());
+			assertEquals(Integer.valueOf(i), map.get(names[i]));
+			assertEquals(Integer.valueOf(i), map.get(copy));
+		}
+		assertNull(map.get(new ContentName(prefix, "none")));
+
+		Log.info(Log.FAC_TEST, "Completed testHashMapLookup");
+	}
+
+	@Test
+	public void testContentNameHashPerformance() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testContentNameHashPerformance");
+
+		ContentName prefix = ContentName.fromURI(veryEscapedName);
+		ContentName [] names = new ContentName[1000];
+		byte [][][] components = new byte[names.length][][];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = new ContentName(prefix, Integer.toString(i));
+			components[i] = new byte[names[i].count()][];
+			for (int j = 0; j < components[i].length; j++)
+				components[i][j] = names[i].component(j);
+		}
+
+		// Baseline: the cost of hashing the components on every put and get
+		long loops = 0;
+		long elapsed = 0;
+		int sum = 0;
+		while (elapsed < 1000) { // run for about 1s elapsed
+			long time = System.currentTimeMillis();
+			HashMap<Integer, Integer> map = new HashMap<Integer, Integer>();
+			for (int i = 0; i < names.length; i++)
+				map.put(Arrays.deepHashCode(components[i]), i);
+			for (int i = 0; i < names.length; i++)
+				sum += map.get(Arrays.deepHashCode(components[i]));
+			elapsed += System.currentTimeMillis() - time;
+			loops += names.length;
+		}
+		System.out.println("Executed "+ loops + " uncached name hash puts and gets in " + elapsed + " ms; " + ((loops * 1000) / elapsed) + "/s");
+
+		loops = 0;
+		elapsed = 0;
+		while (elapsed < 1000) {
+			long time = System.currentTimeMillis();
+			HashMap<ContentName, Integer> map = new HashMap<ContentName, Integer>();
+			for (int i = 0; i < names.length; i++)
+				map.put(names[i], i);
+			for (int i = 0; i < names.length; i++)
+				sum += map.get(names[i]);
+			elapsed += System.currentTimeMillis() - time;
+			loops += names.length;
+		}
+		System.out.println("Executed "+ loops + " HashMap<ContentName> puts and gets in " + elapsed + " ms; " + ((loops * 1000) / elapsed) + "/s");
+
+		// Gets with equal but distinct names, as when a name has just been decoded
+		HashMap<ContentName, Integer> map = new HashMap<ContentName, Integer>();
+		ContentName [] copies = new ContentName[names.length];
+		for (int i = 0; i < names.length; i++) {
+			map.put(names[i], i);
+			copies[i] = new ContentName();
+			copies[i].decode(names[i].encode());
+		}
+		loops = 0;
+		elapsed = 0;
+		while (elapsed < 1000) {
+			long time = System.currentTimeMillis();
+			for (int i = 0; i < copies.length; i++)
+				sum += map.get(copies[i]);
+			elapsed += System.currentTimeMillis() - time;
+			loops += copies.length;
+		}
+		System.out.println("Executed "+ loops + " HashMap<ContentName> gets of decoded names in " + elapsed + " ms; " + ((loops * 1000) / elapsed) + "/s (" + sum + ")");
+
+		Log.info(Log.FAC_TEST, "Completed testContentNameHashPerformance");
+	}
+
+	@Test
+	public void testComponentPool() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testComponentPool");
+
+		int poolSize = SystemConfiguration.NAME_COMPONENT_POOL_SIZE;
+		SystemConfiguration.NAME_COMPONENT_POOL_SIZE = 4;
+		try {
+			// Decoded names share their prefix components, but not their last
+			ContentName name = fromNative("/componentPool/shared/first");
+			ContentName first = new ContentName();
+			first.decode(name.encode());
+			ContentName second = new ContentName();
+			second.decode(name.encode());
+			assertEquals(name, second);
+			assertTrue(first.component(0) == second.component(0));
+			assertTrue(first.component(1) == second.component(1));
+			assertFalse(first.component(2) == second.component(2));
+
+			// The pool holds at most 4 components, dropping the least recently used
+			byte [][] components = new byte[5][];
+			for (int i = 0; i < components.length; i++)
+				components[i] = ("componentPool" + i).getBytes();
+			for (int i = 0; i < 4; i++)
+				assertTrue(components[i] == ContentName.internComponent(components[i]));
+			assertTrue(components[0] == ContentName.internComponent(components[0].clone()));
+			assertTrue(components[4] == ContentName.internComponent(components[4]));
+			// 1 was used least recently, so was dropped for 4
+			assertTrue(components[0] == ContentName.internComponent(components[0].clone()));
+			assertTrue(components[2] == ContentName.internComponent(components[2].clone()));
+			byte [] copy = components[1].clone();
+			assertTrue(copy == ContentName.internComponent(copy));
+		} finally {
+			SystemConfiguration.NAME_COMPONENT_POOL_SIZE = poolSize;
+		}
+
+		// With the pool disabled components are returned as they are
+		byte [] component = "componentPool".getBytes();
+		assertTrue(component == ContentName.internComponent(component));
+
+		Log.info(Log.FAC_TEST, "Completed testComponentPool");
+	}
+
 	@Test
 	public void testPostfix() throws MalformedContentNameStringException {
 		assertEquals( fromNative("/a/b/c/d/e").postfix(fromNative("/a/b/c")), fromNative("/d/e") );
@@ -174,6 +174,34 @@ public class ContentObjectTest {
 		Log.info(Log.FAC_TEST, "Completed testImmutable");
 	}
 	
+	@Test
+	public void testEncodingCache() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testEncodingCache");
+
+		ContentObject co = new ContentObject(name, auth, document2.getBytes(), pair.getPrivate());
+		byte [] encoded = co.encode();
+		Assert.assertSame(co.wireEncoding(), co.wireEncoding());
+		Assert.assertArrayEquals(encoded, co.wireEncoding());
+
+		// Callers of encode() get their own copy
+		encoded[encoded.length - 1]++;
+		Assert.assertFalse(Arrays.equals(encoded, co.encode()));
+
+		// Setting the signature must invalidate the encoding and the digest
+		byte [] digest = co.digest();
+		byte [] oldEncoding = co.encode();
+		co.setSignature(signature);
+		Assert.assertFalse(Arrays.equals(oldEncoding, co.encode()));
+		Assert.assertFalse(Arrays.equals(digest, co.digest()));
+
+		ContentObject decoded = new ContentObject();
+		decoded.decode(co.encode());
+		Assert.assertEquals(co, decoded);
+		Assert.assertArrayEquals(co.wireEncoding(), decoded.wireEncoding());
+
+		Log.info(Log.FAC_TEST, "Completed testEncodingCache");
+	}
+
 	@Test
 	public void testDigest() {
 		Log.info(Log.FAC_TEST, "Starting testDigest");
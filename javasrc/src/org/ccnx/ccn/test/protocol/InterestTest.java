@@ -20,6 +20,7 @@ package org.ccnx.ccn.test.protocol;
 
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.ccnx.ccn.KeyManager;
 import org.ccnx.ccn.impl.security.crypto.CCNDigestHelper;
@@ -169,6 +170,34 @@ public class InterestTest extends CCNTestBase {
 		Log.info(Log.FAC_TEST, "Completed testExclude");
 	}
 	
+	@Test
+	public void testEncodingCache() throws Exception {
+		Log.info(Log.FAC_TEST, "Starting testEncodingCache");
+
+		Interest interest = new Interest(tcn);
+		byte [] plain = interest.encode();
+		Assert.assertSame(interest.wireEncoding(), interest.wireEncoding());
+
+		// Setters must invalidate the cached encoding
+		interest.scope(1);
+		byte [] scoped = interest.encode();
+		Assert.assertFalse(Arrays.equals(plain, scoped));
+
+		// So must changes to the exclude filter in place
+		interest.exclude(new Exclude());
+		byte [] excluded = interest.encode();
+		interest.exclude().add(new byte[][]{"excludeme".getBytes()});
+		byte [] excludedMore = interest.encode();
+		Assert.assertFalse(Arrays.equals(excluded, excludedMore));
+
+		Interest decoded = new Interest();
+		decoded.decode(excludedMore);
+		Assert.assertEquals(interest, decoded);
+		Assert.assertEquals(1, decoded.exclude().size());
+
+		Log.info(Log.FAC_TEST, "Completed testEncodingCache");
+	}
+
 	@Test
 	public void testMatch() {
 		Log.info(Log.FAC_TEST, "Starting testMatch");
@@ -19,6 +19,8 @@ public class CCNMP {
 	public final static String COMMAND_REDIRECT = "rd";
 	public final static String COMMAND_REGISTERREDIRECT = "rr";
 	public final static String COMMAND_REMOVE = "rm";
+	public final static String COMMAND_NOTIFY = "nt";
+	public final static String COMMAND_BATCH = "bt";
 	
 	/**
 	 * CCNMP home-mobile node communicate response
@@ -0,0 +1,251 @@
+package org.ccnx.ccnmp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.ccnx.ccn.impl.encoding.CCNProtocolDTags;
+import org.ccnx.ccn.impl.encoding.GenericXMLEncodable;
+import org.ccnx.ccn.impl.encoding.XMLDecoder;
+import org.ccnx.ccn.impl.encoding.XMLEncodable;
+import org.ccnx.ccn.impl.encoding.XMLEncoder;
+import org.ccnx.ccn.io.content.ContentDecodingException;
+import org.ccnx.ccn.io.content.ContentEncodingException;
+import org.ccnx.ccn.protocol.ContentName;
+
+/**
+ * The payload of a CCNMP batch command: a list of namespace commands that
+ * the home agent applies together, answering with one status per command.
+ * A mobile node serving many namespaces can so register, redirect or
+ * remove all of them in a single round trip.
+ *
+ * The batch is carried binary encoded in one name component of the command
+ * interest, {H}/ccnmp/bt/{batch}/<timestamp>, where {H} is any prefix that
+ * reaches the home agent. Each command is encoded much like a ccnd
+ * ForwardingEntry:
+ *
+ * <pre>
+ * Collection := Entry*
+ * Entry      := Action Name [Name] [ForwardingFlags]
+ * </pre>
+ *
+ * where Action is one of CCNMP.COMMAND_REGISTER, COMMAND_REDIRECT,
+ * COMMAND_REGISTERREDIRECT or COMMAND_REMOVE, the first Name is the
+ * namespace, the second the remote name to redirect to, and the flags
+ * hold FLAG_FORWARD_ASAP.
+ *
+ * @author ebollens
+ */
+public class NamespaceBatch extends GenericXMLEncodable implements XMLEncodable, Iterable<NamespaceBatch.Entry> {
+
+	/**
+	 * Set if interests for the namespace should be forwarded as they arrive
+	 */
+	public final static int FLAG_FORWARD_ASAP = 1;
+
+	/**
+	 * Separates the statuses in a batch response
+	 */
+	public final static String STATUS_SEPARATOR = "/";
+
+	/**
+	 * One namespace command of a batch.
+	 */
+	public static class Entry extends GenericXMLEncodable implements XMLEncodable {
+
+		protected String _command;
+		protected ContentName _namespace;
+		protected ContentName _remoteName;
+		protected int _flags;
+
+		public Entry(String command, ContentName namespace, ContentName remoteName, boolean isForwardASAPEnabled) {
+			_command = command;
+			_namespace = namespace;
+			_remoteName = remoteName;
+			_flags = isForwardASAPEnabled ? FLAG_FORWARD_ASAP : 0;
+		}
+
+		/**
+		 * For use by decoders
+		 */
+		public Entry() {}
+
+		public String command() { return _command; }
+		public ContentName namespace() { return _namespace; }
+		public ContentName remoteName() { return _remoteName; }
+		public boolean isForwardASAPEnabled() { return (_flags & FLAG_FORWARD_ASAP) != 0; }
+
+		@Override
+		public void decode(XMLDecoder decoder) throws ContentDecodingException {
+			decoder.readStartElement(getElementLabel());
+			_command = decoder.readUTF8Element(CCNProtocolDTags.Action);
+			_namespace = new ContentName();
+			_namespace.decode(decoder);
+			if (decoder.peekStartElement(CCNProtocolDTags.Name)) {
+				_remoteName = new ContentName();
+				_remoteName.decode(decoder);
+			}
+			if (decoder.peekStartElement(CCNProtocolDTags.ForwardingFlags)) {
+				_flags = decoder.readIntegerElement(CCNProtocolDTags.ForwardingFlags);
+			}
+			decoder.readEndElement();
+		}
+
+		@Override
+		public void encode(XMLEncoder encoder) throws ContentEncodingException {
+			if (!validate()) {
+				throw new ContentEncodingException("Cannot encode " + this.getClass().getName() + ": field values missing.");
+			}
+			encoder.writeStartElement(getElementLabel());
+			encoder.writeElement(CCNProtocolDTags.Action, _command);
+			_namespace.encode(encoder);
+			if (null != _remoteName)
+				_remoteName.encode(encoder);
+			if (0 != _flags)
+				encoder.writeElement(CCNProtocolDTags.ForwardingFlags, _flags);
+			encoder.writeEndElement();
+		}
+
+		@Override
+		public long getElementLabel() { return CCNProtocolDTags.Entry; }
+
+		@Override
+		public boolean validate() {
+			return (null != _command) && (null != _namespace);
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((_command == null) ? 0 : _command.hashCode());
+			result = prime * result + ((_namespace == null) ? 0 : _namespace.hashCode());
+			result = prime * result + ((_remoteName == null) ? 0 : _remoteName.hashCode());
+			result = prime * result + _flags;
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (obj == null) return false;
+			if (getClass() != obj.getClass()) return false;
+			Entry other = (Entry) obj;
+			if (_command == null) {
+				if (other._command != null) return false;
+			} else if (!_command.equals(other._command)) return false;
+			if (_namespace == null) {
+				if (other._namespace != null) return false;
+			} else if (!_namespace.equals(other._namespace)) return false;
+			if (_remoteName == null) {
+				if (other._remoteName != null) return false;
+			} else if (!_remoteName.equals(other._remoteName)) return false;
+			if (_flags != other._flags) return false;
+			return true;
+		}
+	}
+
+	protected ArrayList<Entry> _entries = new ArrayList<Entry>();
+
+	public NamespaceBatch() {}
+
+	/**
+	 * Decode a batch as carried in a command name component.
+	 *
+	 * @param encoded
+	 * @throws ContentDecodingException
+	 */
+	public NamespaceBatch(byte [] encoded) throws ContentDecodingException {
+		decode(encoded);
+	}
+
+	public void add(Entry entry) { _entries.add(entry); }
+	public Entry get(int i) { return _entries.get(i); }
+	public int size() { return _entries.size(); }
+
+	public Iterator<Entry> iterator() {
+		return _entries.iterator();
+	}
+
+	@Override
+	public void decode(XMLDecoder decoder) throws ContentDecodingException {
+		decoder.readStartElement(getElementLabel());
+		_entries.clear();
+		while (decoder.peekStartElement(CCNProtocolDTags.Entry)) {
+			Entry entry = new Entry();
+			entry.decode(decoder);
+			_entries.add(entry);
+		}
+		decoder.readEndElement();
+	}
+
+	@Override
+	public void encode(XMLEncoder encoder) throws ContentEncodingException {
+		if (!validate()) {
+			throw new ContentEncodingException("Cannot encode " + this.getClass().getName() + ": field values missing.");
+		}
+		encoder.writeStartElement(getElementLabel());
+		for (Entry entry : _entries)
+			entry.encode(encoder);
+		encoder.writeEndElement();
+	}
+
+	@Override
+	public long getElementLabel() { return CCNProtocolDTags.Collection; }
+
+	@Override
+	public boolean validate() {
+		for (Entry entry : _entries) {
+			if (!entry.validate())
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return _entries.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+		NamespaceBatch other = (NamespaceBatch) obj;
+		return _entries.equals(other._entries);
+	}
+
+	/**
+	 * Build the content of a batch response: CCNMP.RESPONSE_SUCCESS or
+	 * RESPONSE_FAILURE for each command, in order, separated by
+	 * STATUS_SEPARATOR.
+	 *
+	 * @param statuses whether each command succeeded
+	 */
+	public static byte [] encodeStatuses(boolean [] statuses) {
+		StringBuilder response = new StringBuilder(statuses.length * 4);
+		for (int i = 0; i < statuses.length; i++) {
+			if (i > 0)
+				response.append(STATUS_SEPARATOR);
+			response.append(statuses[i] ? CCNMP.RESPONSE_SUCCESS : CCNMP.RESPONSE_FAILURE);
+		}
+		return response.toString().getBytes();
+	}
+
+	/**
+	 * Read the statuses from the content of a batch response.
+	 *
+	 * @param content
+	 * @return whether each command succeeded
+	 */
+	public static boolean [] decodeStatuses(byte [] content) {
+		String response = new String(content);
+		if (response.length() == 0)
+			return new boolean[0];
+		String [] tokens = response.split(STATUS_SEPARATOR);
+		boolean [] statuses = new boolean[tokens.length];
+		for (int i = 0; i < tokens.length; i++)
+			statuses[i] = tokens[i].equals(CCNMP.RESPONSE_SUCCESS);
+		return statuses;
+	}
+}
@@ -5,6 +5,11 @@ import java.util.logging.Level;
 
 import org.ccnx.ccn.CCNContentHandler;
 import org.ccnx.ccn.CCNHandle;
+import org.ccnx.ccn.config.SystemConfiguration;
+import org.ccnx.ccn.impl.CCNStats;
+import org.ccnx.ccn.impl.CCNStats.CCNStatistics;
+import org.ccnx.ccn.impl.CCNStats.CCNEnumStats;
+import org.ccnx.ccn.impl.CCNStats.CCNEnumStats.IStatsEnum;
 import org.ccnx.ccn.impl.repo.RepositoryInterestHandler;
 import org.ccnx.ccn.impl.repo.RepositoryServer;
 import org.ccnx.ccn.impl.support.Log;
@@ -21,7 +26,7 @@ import org.ccnx.ccnmp.CCNMP;
  * 
  * @author ebollens
  */
-public class HomeAgent implements Runnable, CCNContentHandler {
+public class HomeAgent implements Runnable, CCNContentHandler, CCNStatistics {
 	
 	/**
 	 * Set true if the CCNMP home agent should be enabled. This requires that
@@ -29,6 +34,53 @@ public class HomeAgent implements Runnable, CCNContentHandler {
 	 */
 	public final static boolean ENABLED = CCNMP.ENABLED && true;
 	
+	/**
+	 * Number of redirects the HomeAgent runs at once, and how many more it
+	 * queues before refusing redirects and keeping their interests for later.
+	 */
+	public final static int REDIRECT_THREADS = 8;
+	public final static int REDIRECT_QUEUE_SIZE = 1000;
+	
+	/**
+	 * Seconds an idle redirect thread is kept.
+	 */
+	public final static int REDIRECT_THREAD_LIFE = 10;
+	
+	/**
+	 * Size of the buffer redirected content is copied through.
+	 */
+	public final static int REDIRECT_BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * Set true to relay redirected content segment by segment as it arrives
+	 * from the mobile node, rather than reading the whole object and then
+	 * writing it out again.
+	 */
+	public final static boolean REDIRECT_CUT_THROUGH = true;
+	
+	/**
+	 * Number of segments a cut-through relay fetches and signs together.
+	 */
+	public final static int REDIRECT_RELAY_WINDOW = 8;
+	
+	/**
+	 * Most bytes of relayed content kept to answer repeated requests.
+	 */
+	public final static long REDIRECT_CACHE_BYTES = 16 * 1024 * 1024;
+	
+	/**
+	 * Most interests, and most bytes of encoded interests, stored for one
+	 * namespace while its mobile node is away. The oldest are dropped first.
+	 */
+	public final static int INTEREST_BUFFER_COUNT = 1000;
+	public final static long INTEREST_BUFFER_BYTES = 1024 * 1024;
+	
+	/**
+	 * Time in ms an interest is stored for at most, however many later
+	 * interests are aggregated into it.
+	 */
+	public final static long INTEREST_BUFFER_AGE = 60 * 1000;
+	
 	/**
 	 * Reference to the RepositoryServer object that initialized the
 	 * RepositoryInterestHandler which instantiated this HomeAgent.
@@ -50,6 +102,18 @@ public class HomeAgent implements Runnable, CCNContentHandler {
 	
 	protected MobileDataHandler _mobileDataHandler;
 	
+	/**
+	 * Runs redirects off the repository's interest processing thread.
+	 */
+	protected RedirectEngine _redirectEngine;
+	
+	protected SegmentRelay _segmentRelay;
+	
+	/**
+	 * Content already relayed for correspondents
+	 */
+	protected RedirectCache _redirectCache;
+	
 	/**
 	 * Constructor for HomeAgent.
 	 * 
@@ -63,6 +127,9 @@ public class HomeAgent implements Runnable, CCNContentHandler {
 		_repositoryInterestHandler = interestHandler;
 		_mobileInterestHandler = new MobileInterestHandler(this);
 		_mobileDataHandler = new MobileDataHandler(this);
+		_redirectEngine = new RedirectEngine(this, REDIRECT_THREADS, REDIRECT_QUEUE_SIZE);
+		_redirectCache = new RedirectCache(REDIRECT_CACHE_BYTES, _stats);
+		_segmentRelay = new SegmentRelay(server.getHandle(), REDIRECT_RELAY_WINDOW, SystemConfiguration.getDefaultTimeout(), _redirectCache);
 	}
 	
 	public RepositoryInterestHandler getRepositoryInterestHandler(){
@@ -91,6 +158,30 @@ public class HomeAgent implements Runnable, CCNContentHandler {
 		return true;
 	}
 	
+	/**
+	 * Redirect an interest asynchronously.
+	 * 
+	 * @param interest the interest in the mobile node's remote namespace
+	 * @param originalInterest the interest the content is republished for
+	 * @param listener notified when the redirect ends, may be null
+	 * @return true if the redirect was queued, false if the HomeAgent is too
+	 * 	busy and the caller should keep originalInterest for later
+	 * @see RedirectEngine#redirect(Interest, Interest, RedirectEngine.RedirectListener)
+	 */
+	public boolean redirectInterest(Interest interest, Interest originalInterest, RedirectEngine.RedirectListener listener) {
+		return _redirectEngine.redirect(interest, originalInterest, listener);
+	}
+	
+	/**
+	 * Fetch the content for interest and republish it under the name of
+	 * originalInterest. Blocks until the whole object has been republished.
+	 * If REDIRECT_CUT_THROUGH is set, segments are relayed as they arrive.
+	 * 
+	 * @param interest
+	 * @param originalInterest
+	 * @return true
+	 * @throws IOException if the content cannot be read or republished
+	 */
 	public boolean redirectInterest(Interest interest, Interest originalInterest) throws IOException{
 						
 		if (Log.isLoggable(Log.FAC_REPO, Level.FINEST))
@@ -105,28 +196,31 @@ public class HomeAgent implements Runnable, CCNContentHandler {
 		
 		//_mobileDataHandler.registerRemoteInterest(interest, originalInterest);
 
+		if (REDIRECT_CUT_THROUGH) {
+			_segmentRelay.relay(interest.name(), originalInterest);
+			return true;
+		}
+		
 		ContentName originalName = new ContentName(originalInterest.name(), new CCNTime());
 
 		CCNFileInputStream ccnin = new CCNFileInputStream(interest.name(), _repositoryServer.getHandle());
-		CCNFileOutputStream ccnout = new CCNFileOutputStream(originalName, _repositoryServer.getHandle());
-		
-		// ccnout.addOutstandingInterest(originalInterest);
-		
-		int BUF_SIZE = 1024;
-		byte [] buffer = new byte[BUF_SIZE];
-
-		int readcount = 0;
-		while ((readcount = ccnin.read(buffer)) != -1){
-			ccnout.write(buffer, 0, readcount);
-			ccnout.flush();
+		try {
+			CCNFileOutputStream ccnout = new CCNFileOutputStream(originalName, _repositoryServer.getHandle());
+			
+			// ccnout.addOutstandingInterest(originalInterest);
+			
+			// The output stream segments as it goes, so there is no need to
+			// flush until the whole object has been copied
+			byte [] buffer = new byte[REDIRECT_BUFFER_SIZE];
+	
+			int readcount = 0;
+			while ((readcount = ccnin.read(buffer)) != -1){
+				ccnout.write(buffer, 0, readcount);
+			}
+			ccnout.close(); // will flush
+		} finally {
+			ccnin.close();
 		}
-		//int read = ccnin.read(buffer);
-		//while (read >= 0) {
-		//	ccnout.write(buffer, 0, read);
-		//	read = ccnin.read(buffer);
-		//} 
-		ccnin.close();
-		ccnout.close(); // will flush
 		
 		return true;
 	}
@@ -153,5 +247,68 @@ public class HomeAgent implements Runnable, CCNContentHandler {
 	public CCNHandle getHandle(){
 		return _repositoryServer.getHandle();
 	}
+	
+	public RedirectCache getRedirectCache(){
+		return _redirectCache;
+	}
+
+	// ==============================================================
+	// Statistics
+
+	protected CCNEnumStats<StatsEnum> _stats = new CCNEnumStats<StatsEnum>(StatsEnum.RedirectCacheHits);
+
+	public CCNStats getStats() {
+		return _stats;
+	}
+
+	public enum StatsEnum implements IStatsEnum {
+		// ====================================
+		// Just edit this list, dont need to change anything else
 
+		RedirectCacheHits ("interests", "Number of interests answered from the redirect cache"),
+		RedirectCacheMisses ("interests", "Number of interests the redirect cache could not answer"),
+		RedirectCacheEvictions ("objects", "Number of relayed objects evicted from the redirect cache"),
+		RedirectCacheInvalidations ("objects", "Number of relayed objects dropped from the redirect cache on a redirect or remove"),
+		;
+
+		// ====================================
+		// This is the same for every user of IStatsEnum
+
+		protected final String _units;
+		protected final String _description;
+		protected final static String [] _names;
+
+		static {
+			_names = new String[StatsEnum.values().length];
+			for(StatsEnum stat : StatsEnum.values() )
+				_names[stat.ordinal()] = stat.toString();
+
+		}
+
+		StatsEnum(String units, String description) {
+			_units = units;
+			_description = description;
+		}
+
+		public String getDescription(int index) {
+			return StatsEnum.values()[index]._description;
+		}
+
+		public int getIndex(String name) {
+			StatsEnum x = StatsEnum.valueOf(name);
+			return x.ordinal();
+		}
+
+		public String getName(int index) {
+			return StatsEnum.values()[index].toString();
+		}
+
+		public String getUnits(int index) {
+			return StatsEnum.values()[index]._units;
+		}
+
+		public String [] getNames() {
+			return _names;
+		}
+	}
 }
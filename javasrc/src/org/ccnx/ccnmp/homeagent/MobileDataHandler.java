@@ -5,12 +5,13 @@
 package org.ccnx.ccnmp.homeagent;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Vector;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import org.ccnx.ccn.impl.support.Log;
 import org.ccnx.ccn.io.CCNFileInputStream;
-import org.ccnx.ccn.io.CCNFileOutputStream;
+import org.ccnx.ccn.protocol.ContentName;
 import org.ccnx.ccn.protocol.ContentObject;
 import org.ccnx.ccn.protocol.Interest;
 
@@ -21,6 +22,8 @@ import org.ccnx.ccn.protocol.Interest;
  * original name upon reception of the content object in response for the
  * re-issued interest.
  * 
+ * Registrations may be made and looked up from several threads at once.
+ * 
  * @author ebollens
  */
 public class MobileDataHandler implements Runnable {
@@ -35,7 +38,7 @@ public class MobileDataHandler implements Runnable {
 	 * of values equal to the names of all interests that should be fulfilled
 	 * by the content name used as key.
 	 */
-	protected HashMap<String, Vector<String>> _map;
+	protected ConcurrentHashMap<ContentName, Set<ContentName>> _map;
 	
 	/**
 	 * Constructor for MobileDataHandler.
@@ -44,7 +47,7 @@ public class MobileDataHandler implements Runnable {
 	 */
 	MobileDataHandler(HomeAgent agent){
 		_agent = agent;
-		_map = new HashMap<String, Vector<String>>();
+		_map = new ConcurrentHashMap<ContentName, Set<ContentName>>();
 	}
 	
 	public boolean registerRemoteInterest(Interest interest, Interest originalInterest){
@@ -52,18 +55,16 @@ public class MobileDataHandler implements Runnable {
 		if (Log.isLoggable(Log.FAC_REPO, Level.FINEST))
 			Log.finest(Log.FAC_REPO, "Registering {0} within the interest {0} bucket", interest.name(), originalInterest.name());
 		
-		String interestName = interest.getContentName().toString(),
-			   originalInterestName = originalInterest.getContentName().toString();
-		
-		Vector<String> v = _map.containsKey(interestName) 
-								? _map.get(interestName)
-								: new Vector<String>();
+		ContentName interestName = interest.getContentName();
 		
-		if(!v.contains(originalInterestName)){
-			v.addElement(originalInterestName);
-			_map.put(interestName, v);
-			return true;
+		Set<ContentName> originalInterestNames = _map.get(interestName);
+		if (null == originalInterestNames) {
+			Set<ContentName> created = Collections.newSetFromMap(new ConcurrentHashMap<ContentName, Boolean>());
+			originalInterestNames = _map.putIfAbsent(interestName, created);
+			if (null == originalInterestNames)
+				originalInterestNames = created;
 		}
+		originalInterestNames.add(originalInterest.getContentName());
 		
 		return true;
 		
@@ -71,7 +72,7 @@ public class MobileDataHandler implements Runnable {
 	
 	public boolean unregisterRemoteInterest(Interest interest){
 		
-		_map.put(interest.getContentName().toString(), new Vector<String>());
+		_map.remove(interest.getContentName());
 		
 		return true;
 		
@@ -79,15 +80,13 @@ public class MobileDataHandler implements Runnable {
 	
 	public boolean handleContent(ContentObject data, Interest interest){
 		
-		String interestName = interest.getContentName().toString();
+		Set<ContentName> originalInterestNames = _map.get(interest.getContentName());
 		
-		if(!_map.containsKey(interestName)){
+		if(null == originalInterestNames){
 			return false;
 		}
 		
-		Vector<String> originalInterestNames = _map.get(interestName);
-		
-		for(String originalInterestName :  originalInterestNames){
+		for(ContentName originalInterestName :  originalInterestNames){
 			
 			if (Log.isLoggable(Log.FAC_REPO, Level.FINEST))
 				Log.finest(Log.FAC_REPO, "Handling remote data {0} for original interest {1}", interest.name(), originalInterestName);
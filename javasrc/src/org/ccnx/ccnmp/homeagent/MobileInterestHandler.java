@@ -5,10 +5,12 @@ import java.util.*;
 import java.util.logging.Level;
 import org.ccnx.ccn.CCNInterestHandler;
 import org.ccnx.ccn.impl.support.Log;
+import org.ccnx.ccn.io.content.ContentDecodingException;
 import org.ccnx.ccn.protocol.ContentName;
 import org.ccnx.ccn.protocol.ContentObject;
 import org.ccnx.ccn.protocol.Interest;
 import org.ccnx.ccnmp.CCNMP;
+import org.ccnx.ccnmp.NamespaceBatch;
 
 /**
  * RemoteInterestHandler is responsible for queuing Interest that could not be
@@ -19,6 +21,44 @@ import org.ccnx.ccnmp.CCNMP;
  */
 public class MobileInterestHandler implements Runnable, CCNInterestHandler {
 	
+	/**
+	 * Keeps the interests stored for a namespace in step with redirects:
+	 * an interest is dropped once its redirect succeeds, and stored for the
+	 * next redirect command if it fails and has not yet expired.
+	 */
+	protected static class StoredInterestListener implements RedirectEngine.RedirectListener {
+		
+		protected MobileInterestStore.MobileInterestData _data;
+		
+		/**
+		 * The remote namespace the interests are redirected to
+		 */
+		protected ContentName _remoteName;
+		
+		/**
+		 * Time in ms the redirected interests had arrived by
+		 */
+		protected long _received;
+		
+		public StoredInterestListener(MobileInterestStore.MobileInterestData data, ContentName remoteName) {
+			_data = data;
+			_remoteName = remoteName;
+			_received = System.currentTimeMillis();
+		}
+		
+		public void redirectSucceeded(Interest interest, Interest originalInterest) {
+			if (_data.removeInterest(originalInterest))
+				Log.finest(Log.FAC_REPO, "RemoteInterestHandler cleared redirected interest {0}", originalInterest.name());
+		}
+		
+		public void redirectFailed(Interest interest, Interest originalInterest, IOException e) {
+			if (_data.addInterest(originalInterest, _received))
+				Log.finest(Log.FAC_REPO, "RemoteInterestHandler storing interest for retrieval: {0} -> key {1}", originalInterest.name(), _data.namespace());
+			// Offered already; it is tried again when the mobile node moves
+			_data.interestOffered(originalInterest, _remoteName);
+		}
+	}
+	
 
 	/**
 	 * Reference to the HomeAgent that instantiated this object.
@@ -38,7 +78,7 @@ public class MobileInterestHandler implements Runnable, CCNInterestHandler {
 		_homeAgent = homeAgent;
 		
 		// Instantiate an interest store for CCNMP-related interests
-		_interestStore = new MobileInterestStore();
+		_interestStore = new MobileInterestStore(HomeAgent.INTEREST_BUFFER_COUNT, HomeAgent.INTEREST_BUFFER_BYTES, HomeAgent.INTEREST_BUFFER_AGE);
 		
 		// Register an example namespace for testing
 		//this.registerNamespace(new ContentName("ndn", "local"), false);
@@ -110,36 +150,7 @@ public class MobileInterestHandler implements Runnable, CCNInterestHandler {
 				// {A}/ccnmp/rd/{B}, {B} is the remote namespace
 				ContentName remoteName = arguments;
 				
-				if(_interestStore.containsNamespace(namespace)){
-										
-					_interestStore.setRemoteName(namespace, remoteName);
-					
-					/** 
-					 * given {A}/ccnmp/{B}, issue all interests in {A} stored
-					 * in the _interestStore to the namespace defined as {B} such
-					 * that {A}/{C} is remapped to {B}/{C}
-					 */
-					Interest redirectedInterest;
-					Vector<Interest> interests = _interestStore.getInterests(namespace);
-					for (Interest originalInterest : interests)
-					{
-						ContentName newName = remoteName.append(originalInterest.name().postfix(namespace));
-						
-						Log.finest(Log.FAC_REPO, "RemoteInterestHandler translating {0} into {1}", originalInterest.name(), newName);
-						
-						redirectedInterest = Interest.constructInterest(newName, originalInterest.exclude(), originalInterest.childSelector(), originalInterest.maxSuffixComponents(), originalInterest.minSuffixComponents(), null);
-						
-						try {
-							_homeAgent.redirectInterest(redirectedInterest, originalInterest);
-						} catch (IOException e) {
-							// TODO Auto-generated catch block
-							e.printStackTrace();
-						}
-					}
-					
-					// TODO may want to add back removed interests if no response
-					_interestStore.removeInterests(namespace);
-					Log.finest(Log.FAC_REPO, "Interest storage cleared");
+				if(redirectNamespace(namespace, remoteName)){
 					
 					try {
 						ContentObject object = ContentObject.buildContentObject(interest.name(), CCNMP.RESPONSE_SUCCESS.getBytes());
@@ -172,6 +183,51 @@ public class MobileInterestHandler implements Runnable, CCNInterestHandler {
 				
 				}
 				
+			}
+			else if (command.compareTo(CCNMP.COMMAND_BATCH) == 0) {
+				// {H}/ccnmp/bt/{batch}, {batch} is an encoded NamespaceBatch,
+				// answered with one status per command in it
+				
+				if (arguments.count() != 1) {
+					Log.warning(Log.FAC_REPO, "RemoteInterestHandler::handleInterest has encountered invalid batch command: {0}", interest.name());
+					return false;
+				}
+				
+				NamespaceBatch batch;
+				try {
+					batch = new NamespaceBatch(arguments.component(0));
+				} catch (ContentDecodingException e) {
+					Log.warning(Log.FAC_REPO, "RemoteInterestHandler cannot decode batch command {0}: {1}", interest.name(), e.getMessage());
+					sendResponse(interest, CCNMP.RESPONSE_FAILURE);
+					return true;
+				}
+				
+				boolean [] statuses = new boolean[batch.size()];
+				for (int i = 0; i < batch.size(); i++)
+					statuses[i] = applyBatchEntry(batch.get(i));
+				
+				try {
+					ContentObject object = ContentObject.buildContentObject(interest.name(), NamespaceBatch.encodeStatuses(statuses));
+					_homeAgent.getHandle().put(object);
+					
+					Log.finest(Log.FAC_REPO, "RemoteInterestHandler is sending back batch status for {0} commands.", statuses.length);
+				} catch (IOException e) {
+					Log.warning(Log.FAC_REPO, "RemoteInterestHandler cannot answer {0}: {1}", interest.name(), e.getMessage());
+				}
+				
+			}
+			else if (command.compareTo(CCNMP.COMMAND_NOTIFY) == 0) {
+				// {A}/ccnmp/nt, no arguments, answered once interests are stored for {A}
+				
+				MobileInterestStore.MobileInterestData data = _interestStore.getData(namespace);
+				if (null == data) {
+					sendResponse(interest, CCNMP.RESPONSE_FAILURE);
+				} else if (data.awaitInterests(interest)) {
+					sendResponse(interest, CCNMP.RESPONSE_SUCCESS);
+				} else {
+					Log.finest(Log.FAC_REPO, "RemoteInterestHandler holding notify command for {0}", namespace);
+				}
+				
 			}
 			else if (command.compareTo(CCNMP.COMMAND_REMOVE) == 0) {
 				// {A}/ccnmp/rm, no arguments
@@ -179,6 +235,7 @@ public class MobileInterestHandler implements Runnable, CCNInterestHandler {
 				ContentObject object;
 				if (_interestStore.containsNamespace(namespace)) {
 					this.removeNamespace(namespace);
+					_homeAgent.getRedirectCache().invalidate(namespace);
 					object = ContentObject.buildContentObject(interest.name(), CCNMP.RESPONSE_SUCCESS.getBytes());
 				} else {
 					object = ContentObject.buildContentObject(interest.name(), CCNMP.RESPONSE_FAILURE.getBytes());
@@ -202,38 +259,47 @@ public class MobileInterestHandler implements Runnable, CCNInterestHandler {
 			
 		}else{
 
-			/** 
-			 * @todo we should do a longest prefix matching here, not shortest
-			 */
-			for(int i = 0; i < interest.getContentName().count(); i++){
+			// The longest registered namespace the interest falls under handles it
+			MobileInterestStore.MobileInterestData data = _interestStore.getLongestPrefixMatch(interest.name());
+			
+			if(null != data) {
+				ContentName namespace = data.namespace();
 				
-				ContentName namespace = interest.getContentName().cut(i);
+				// Content already relayed for another correspondent is answered here
+				ContentObject cached = _homeAgent.getRedirectCache().get(interest);
+				if (null != cached) {
+					try {
+						_homeAgent.getHandle().put(cached);
+						Log.finest(Log.FAC_REPO, "RemoteInterestHandler answered {0} from the redirect cache", interest.name());
+						return true;
+					} catch (IOException e) {
+						Log.warning(Log.FAC_REPO, "RemoteInterestHandler cannot send cached {0}: {1}", cached.name(), e.getMessage());
+					}
+				}
 				
-				if(_interestStore.containsNamespace(namespace)) {
-					if (_interestStore.isForwardASAPEnabled(namespace)) {
-						// If forwarding ASAP enabled, forward is  immediately
-						ContentName remoteName = _interestStore.getRemoteName(namespace);
-						ContentName newName = remoteName.append(interest.name().postfix(namespace));
-						
-						Log.finest(Log.FAC_REPO, "RemoteInterestHandler translating {0} into {1}", interest.name(), newName);
-						
-						Interest redirectedInterest = Interest.constructInterest(newName, interest.exclude(), interest.childSelector(), interest.maxSuffixComponents(), interest.minSuffixComponents(), null);
-						
-						try {
-							_homeAgent.redirectInterest(redirectedInterest, interest);
-						} catch (IOException e) {
-							// Exception mean the redirect has failed. We should store it for future redirect command
-							Log.finest(Log.FAC_REPO, "RemoteInterestHandler active forrwarding failed: {0}", redirectedInterest.name());
-							if(_interestStore.addInterest(namespace, interest)){
-								Log.finest(Log.FAC_REPO, "RemoteInterestHandler storing interest for retrieval: {0} -> key {1}", interest.name(), namespace);
-							}
-						}
-					} else {
-						// Else, store it and wait for polling
-						if(_interestStore.addInterest(namespace, interest)){
+				if (data.isForwardASAPEnabled()) {
+					// If forwarding ASAP enabled, forward is  immediately
+					ContentName remoteName = data.remoteName();
+					ContentName newName = remoteName.append(interest.name().postfix(namespace));
+					
+					Log.finest(Log.FAC_REPO, "RemoteInterestHandler translating {0} into {1}", interest.name(), newName);
+					
+					Interest redirectedInterest = Interest.constructInterest(newName, interest.exclude(), interest.childSelector(), interest.maxSuffixComponents(), interest.minSuffixComponents(), null);
+					
+					// If the redirect fails it is stored for the next redirect command
+					if (!_homeAgent.redirectInterest(redirectedInterest, interest, new StoredInterestListener(data, remoteName))) {
+						Log.finest(Log.FAC_REPO, "RemoteInterestHandler active forrwarding failed: {0}", redirectedInterest.name());
+						if(data.addInterest(interest)){
 							Log.finest(Log.FAC_REPO, "RemoteInterestHandler storing interest for retrieval: {0} -> key {1}", interest.name(), namespace);
+							notifyMobileNode(data);
 						}
 					}
+				} else {
+					// Else, store it and tell the mobile node, or wait for polling
+					if(data.addInterest(interest)){
+						Log.finest(Log.FAC_REPO, "RemoteInterestHandler storing interest for retrieval: {0} -> key {1}", interest.name(), namespace);
+						notifyMobileNode(data);
+					}
 				}
 			}
 			
@@ -241,6 +307,120 @@ public class MobileInterestHandler implements Runnable, CCNInterestHandler {
 		return true;
 	}
 	
+	/**
+	 * Point a registered namespace at a new remote namespace, and redirect
+	 * the interests stored for it there.
+	 * 
+	 * @param namespace
+	 * @param remoteName
+	 * @return false if the namespace is not registered
+	 */
+	protected boolean redirectNamespace(ContentName namespace, ContentName remoteName) {
+		MobileInterestStore.MobileInterestData data = _interestStore.getData(namespace);
+		if (null == data)
+			return false;
+		
+		data.remoteName(remoteName);
+		
+		// Content relayed from the old remote namespace may be stale
+		_homeAgent.getRedirectCache().invalidate(namespace);
+		
+		/** 
+		 * given {A}/ccnmp/{B}, issue all interests in {A} stored
+		 * in the _interestStore to the namespace defined as {B} such
+		 * that {A}/{C} is remapped to {B}/{C}. Each interest stays
+		 * stored until its redirect succeeds.
+		 */
+		Interest redirectedInterest;
+		RedirectEngine.RedirectListener listener = new StoredInterestListener(data, remoteName);
+		Vector<Interest> interests = new Vector<Interest>(data.interests());
+		for (Interest originalInterest : interests)
+		{
+			data.interestOffered(originalInterest, remoteName);
+			
+			ContentName newName = remoteName.append(originalInterest.name().postfix(namespace));
+			
+			Log.finest(Log.FAC_REPO, "RemoteInterestHandler translating {0} into {1}", originalInterest.name(), newName);
+			
+			redirectedInterest = Interest.constructInterest(newName, originalInterest.exclude(), originalInterest.childSelector(), originalInterest.maxSuffixComponents(), originalInterest.minSuffixComponents(), null);
+			
+			if (!_homeAgent.redirectInterest(redirectedInterest, originalInterest, listener)) {
+				Log.finest(Log.FAC_REPO, "RemoteInterestHandler keeping {0} for the next redirect", originalInterest.name());
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Apply one command of a batch. Unlike the single register command,
+	 * registering a namespace that is already registered succeeds, updating
+	 * its forwarding flag, so that a mobile node can resend a whole batch.
+	 * 
+	 * @param entry
+	 * @return true if the command succeeded
+	 */
+	protected boolean applyBatchEntry(NamespaceBatch.Entry entry) {
+		String command = entry.command();
+		ContentName namespace = entry.namespace();
+		
+		Log.finest(Log.FAC_REPO, "RemoteInterestHandler applying batched {0} for {1}", command, namespace);
+		
+		if ((command.compareTo(CCNMP.COMMAND_REGISTER) == 0) || (command.compareTo(CCNMP.COMMAND_REGISTERREDIRECT) == 0)) {
+			MobileInterestStore.MobileInterestData data = _interestStore.getData(namespace);
+			if (null == data)
+				this.registerNamespace(namespace, entry.isForwardASAPEnabled());
+			else
+				data.isForwardASAPEnabled(entry.isForwardASAPEnabled());
+			
+			if (command.compareTo(CCNMP.COMMAND_REGISTER) == 0)
+				return true;
+		}
+		if ((command.compareTo(CCNMP.COMMAND_REDIRECT) == 0) || (command.compareTo(CCNMP.COMMAND_REGISTERREDIRECT) == 0)) {
+			if (null == entry.remoteName())
+				return false;
+			return redirectNamespace(namespace, entry.remoteName());
+		}
+		if (command.compareTo(CCNMP.COMMAND_REMOVE) == 0) {
+			if (!_interestStore.containsNamespace(namespace))
+				return false;
+			this.removeNamespace(namespace);
+			_homeAgent.getRedirectCache().invalidate(namespace);
+			return true;
+		}
+		
+		Log.warning(Log.FAC_REPO, "RemoteInterestHandler has encountered invalid batched command: {0}", command);
+		return false;
+	}
+	
+	/**
+	 * Answer the notify command the mobile node for a namespace has left
+	 * with us, if any, so that it sends a redirect command.
+	 * 
+	 * @param data
+	 */
+	protected void notifyMobileNode(MobileInterestStore.MobileInterestData data) {
+		Interest notifyInterest = data.takeNotifyInterest();
+		if (null != notifyInterest) {
+			Log.finest(Log.FAC_REPO, "RemoteInterestHandler notifying mobile node of interests under {0}", data.namespace());
+			sendResponse(notifyInterest, CCNMP.RESPONSE_SUCCESS);
+		}
+	}
+	
+	/**
+	 * Answer a command interest.
+	 * 
+	 * @param interest
+	 * @param response CCNMP.RESPONSE_SUCCESS or CCNMP.RESPONSE_FAILURE
+	 */
+	protected void sendResponse(Interest interest, String response) {
+		try {
+			ContentObject object = ContentObject.buildContentObject(interest.name(), response.getBytes());
+			_homeAgent.getHandle().put(object);
+		} catch (IOException e) {
+			Log.warning(Log.FAC_REPO, "RemoteInterestHandler cannot answer {0}: {1}", interest.name(), e.getMessage());
+		}
+	}
+	
 	/**
 	 * Any namespace with CCNMP support must be registered with this method.
 	 * 
@@ -4,10 +4,22 @@
  */
 package org.ccnx.ccnmp.homeagent;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Level;
+import org.ccnx.ccn.config.SystemConfiguration;
+import org.ccnx.ccn.impl.support.DataUtils;
+import org.ccnx.ccn.impl.support.Log;
+import org.ccnx.ccn.io.content.ContentEncodingException;
 import org.ccnx.ccn.protocol.ContentName;
+import org.ccnx.ccn.protocol.ContentNameSlice;
 import org.ccnx.ccn.protocol.Interest;
+import org.ccnx.ccn.protocol.MalformedContentNameStringException;
 
 /**
  * Stores sets of Interests by namespaces that have been explicitly defined. 
@@ -15,6 +27,25 @@ import org.ccnx.ccn.protocol.Interest;
  * namespaces registered with CCNMP and to retrieve interests under a CCNMP
  * namespace so that they can be remapped and issued back out.
  * 
+ * Namespaces are kept in a trie of name components, so the namespace an
+ * Interest falls under is found with a single walk down its name, and the
+ * longest registered namespace wins when namespaces are nested.
+ * 
+ * Interests stored under a namespace are aggregated the way a PIT would:
+ * an Interest that the content fetched for an already stored one would also
+ * satisfy is not stored again, so one redirect answers every requester. A
+ * stored Interest is dropped once the lifetime of every Interest aggregated
+ * into it has passed, rather than being replayed for nobody.
+ * 
+ * The Interests stored for each namespace are bounded in number, in encoded
+ * bytes and in age, so that a mobile node that stays away, or a burst of
+ * requests for it, cannot grow the store without limit. When a bound is
+ * reached the oldest stored Interests are dropped first.
+ * 
+ * The store is safe for concurrent use. Looking up a namespace takes no
+ * lock, and the Interests of each namespace have a lock of their own, so
+ * Interests for different namespaces are handled in parallel.
+ * 
  * @author ebollens
  */
 public class MobileInterestStore {
@@ -22,23 +53,88 @@ public class MobileInterestStore {
 	/**
 	 * Data structure that a namespace to mapped to
 	 */
-	protected static class MobileInterestData {
+	public static class MobileInterestData {
+		/**
+		 * A stored Interest and the requesters aggregated into it
+		 */
+		protected static class PendingInterest {
+			/**
+			 * The Interest that is redirected on behalf of all requesters
+			 */
+			protected Interest _interest;
+			/**
+			 * Time in ms when the last aggregated requester's Interest expires
+			 */
+			protected long _expires;
+			/**
+			 * Time in ms when _interest arrived
+			 */
+			protected long _received;
+			/**
+			 * Number of Interests aggregated, including _interest
+			 */
+			protected int _requesters;
+			/**
+			 * Encoded size of _interest
+			 */
+			protected int _bytes;
+			/**
+			 * The remote namespace _interest was last redirected to, null
+			 * if it has not been
+			 */
+			protected ContentName _offeredTo;
+			
+			public PendingInterest(Interest interest, long received, long expires) {
+				_interest = interest;
+				_received = received;
+				_expires = expires;
+				_requesters = 1;
+				_bytes = size(interest);
+			}
+		}
+		
+		/**
+		 * The namespace this data is registered under
+		 */
+		protected ContentName _namespace;
 		/**
 		 * Whether the HomeAgent should store interest
 		 */
-		protected boolean _isStoringEnabled;
+		protected volatile boolean _isStoringEnabled;
 		/**
 		 * Whether the HomeAgent should forward the interest ASAP (when arrives)
 		 */
-		protected boolean _isForwardASAPEnabled;
+		protected volatile boolean _isForwardASAPEnabled;
 		/**
 		 * The remote namespace (on foreign agent) of the namespace
 		 */
-		protected ContentName _remoteName;
+		protected volatile ContentName _remoteName;
+		/**
+		 * The stored interests for the namespace, in arrival order, keyed by
+		 * the Interest redirected for them. Also the lock for all stored
+		 * interest state of this namespace.
+		 */
+		protected LinkedHashMap<Interest, PendingInterest> _interests;
+		/**
+		 * The same stored interests by name, to find the one a new Interest
+		 * aggregates into without a scan
+		 */
+		protected HashMap<ContentName, ArrayList<PendingInterest>> _byName;
 		/**
-		 * The stored interests for the namespace
+		 * Encoded bytes of the stored interests
 		 */
-		protected Vector<Interest> _interests;
+		protected long _bytes;
+		/**
+		 * Bounds on the stored interests
+		 */
+		protected int _maxInterests = HomeAgent.INTEREST_BUFFER_COUNT;
+		protected long _maxBytes = HomeAgent.INTEREST_BUFFER_BYTES;
+		protected long _maxAge = HomeAgent.INTEREST_BUFFER_AGE;
+		/**
+		 * The mobile node's outstanding notify command, answered when an
+		 * interest is stored for it
+		 */
+		protected Interest _notifyInterest;
 		
 		public MobileInterestData() {
 			this(true);
@@ -49,16 +145,20 @@ public class MobileInterestStore {
 			_isStoringEnabled = true;
 			_isForwardASAPEnabled = isForwardASAPEnabled;
 			_remoteName = null;
-			_interests = new Vector<Interest>();
+			_interests = new LinkedHashMap<Interest, PendingInterest>();
+			_byName = new HashMap<ContentName, ArrayList<PendingInterest>>();
 		}
 		
 		public MobileInterestData(boolean isForwardASAPEnabled, ContentName remoteName) {
 			_isStoringEnabled = true;
 			_isForwardASAPEnabled = isForwardASAPEnabled;
 			_remoteName = new ContentName(remoteName);
-			_interests = new Vector<Interest>();
+			_interests = new LinkedHashMap<Interest, PendingInterest>();
+			_byName = new HashMap<ContentName, ArrayList<PendingInterest>>();
 		}
 		
+		public ContentName namespace() { return _namespace; }
+		
 		public boolean isStoringEnabled() { return _isStoringEnabled; }
 		public void isStoringEnabled(boolean isStoringEnabled) { _isStoringEnabled = isStoringEnabled; }
 		
@@ -68,20 +168,430 @@ public class MobileInterestStore {
 		public ContentName remoteName() { return _remoteName; }
 		public void remoteName(ContentName remoteName) { _remoteName = new ContentName(remoteName); }
 		
-		public Vector<Interest> interests() { return _interests; }
-		public void removeInterests() {_interests.clear();}
+		/**
+		 * Set the bounds on the interests stored for this namespace. Stored
+		 * interests beyond them are dropped when the next one is stored.
+		 * 
+		 * @param maxInterests most interests to store
+		 * @param maxBytes most encoded bytes of interests to store
+		 * @param maxAge most time in ms to store an interest for
+		 */
+		public void bufferLimits(int maxInterests, long maxBytes, long maxAge) {
+			synchronized (_interests) {
+				_maxInterests = maxInterests;
+				_maxBytes = maxBytes;
+				_maxAge = maxAge;
+			}
+		}
+		
+		/**
+		 * @return the number of interests stored, aggregated ones counted once
+		 */
+		public int interestCount() {
+			synchronized (_interests) {
+				return _interests.size();
+			}
+		}
+		
+		/**
+		 * @return the encoded bytes of the interests stored
+		 */
+		public long interestBytes() {
+			synchronized (_interests) {
+				return _bytes;
+			}
+		}
+		
+		/**
+		 * Get the stored Interests that have not expired, one per set of
+		 * aggregated requesters.
+		 * 
+		 * @return a copy of the stored Interests
+		 */
+		public Vector<Interest> interests() {
+			synchronized (_interests) {
+				long now = System.currentTimeMillis();
+				Vector<Interest> interests = new Vector<Interest>(_interests.size());
+				Iterator<PendingInterest> it = _interests.values().iterator();
+				while (it.hasNext()) {
+					PendingInterest pending = it.next();
+					if (pending._expires <= now) {
+						it.remove();
+						unlink(pending);
+					} else {
+						interests.add(pending._interest);
+					}
+				}
+				return interests;
+			}
+		}
+		
+		/**
+		 * Hold the mobile node's notify command until an interest is stored
+		 * for it, unless interests not yet offered to its current remote
+		 * namespace are already stored. Interests in flight, or whose
+		 * redirect there failed, do not count, so the node is not asked to
+		 * redirect them again and again. Replaces any notify command already
+		 * held.
+		 * 
+		 * @param notifyInterest
+		 * @return true if interests are waiting to be offered, so
+		 * 	notifyInterest should be answered now rather than held
+		 */
+		public boolean awaitInterests(Interest notifyInterest) {
+			synchronized (_interests) {
+				long now = System.currentTimeMillis();
+				ContentName remoteName = _remoteName;
+				for (PendingInterest pending : _interests.values()) {
+					if ((pending._expires > now) && ((null == pending._offeredTo) || !pending._offeredTo.equals(remoteName))) {
+						_notifyInterest = null;
+						return true;
+					}
+				}
+				_notifyInterest = notifyInterest;
+				return false;
+			}
+		}
+		
+		/**
+		 * Take the notify command held for the mobile node, if any, so that
+		 * it can be answered.
+		 * 
+		 * @return the notify command, or null if none is held
+		 */
+		public Interest takeNotifyInterest() {
+			synchronized (_interests) {
+				Interest notifyInterest = _notifyInterest;
+				_notifyInterest = null;
+				return notifyInterest;
+			}
+		}
+		
+		/**
+		 * Record that a stored Interest has been redirected to a remote
+		 * namespace, so that a notify command is not answered for it again
+		 * until the mobile node moves.
+		 * 
+		 * @param interest
+		 * @param remoteName
+		 * @return true if the interest is stored
+		 */
+		public boolean interestOffered(Interest interest, ContentName remoteName) {
+			synchronized (_interests) {
+				PendingInterest pending = _interests.get(interest);
+				if (null == pending)
+					return false;
+				pending._offeredTo = remoteName;
+			}
+			return true;
+		}
+		
+		public void removeInterests() {
+			synchronized (_interests) {
+				_interests.clear();
+				_byName.clear();
+				_bytes = 0;
+			}
+		}
+		
+		/**
+		 * Store an Interest for this namespace that has just arrived.
+		 * 
+		 * @see #addInterest(Interest, long)
+		 */
+		public boolean addInterest(Interest interest) {
+			return addInterest(interest, System.currentTimeMillis());
+		}
+		
+		/**
+		 * Store an Interest for this namespace, iff storing is enabled and it
+		 * is not already stored. An Interest that a stored one satisfies is
+		 * aggregated into it instead, keeping the stored Interest until the
+		 * new one expires as well, but no longer than the buffer's max age.
+		 * If storing the Interest goes over the buffer's bounds, the oldest
+		 * stored Interests are dropped.
+		 * 
+		 * @param interest
+		 * @param received time in ms when the Interest arrived
+		 * @return true if the Interest is stored, false if it was aggregated,
+		 * 	already stored, has expired or storing is disabled
+		 */
+		public boolean addInterest(Interest interest, long received) {
+			if (_isStoringEnabled == false)
+				return false;
+			
+			long now = System.currentTimeMillis();
+			long expires = received + lifetime(interest);
+			if (expires <= now)
+				return false;
+			
+			synchronized (_interests) {
+				expireOldest(now);
+				if (_interests.containsKey(interest))
+					return false;
+				
+				ArrayList<PendingInterest> named = _byName.get(interest.name());
+				if (null != named) {
+					for (PendingInterest pending : named) {
+						if ((pending._expires > now) && aggregates(pending._interest, interest)) {
+							if (expires > pending._expires)
+								pending._expires = Math.min(expires, pending._received + _maxAge);
+							pending._requesters++;
+							if (Log.isLoggable(Log.FAC_REPO, Level.FINEST))
+								Log.finest(Log.FAC_REPO, "MobileInterestStore aggregated {0} with {1} other requesters", interest.name(), pending._requesters - 1);
+							return false;
+						}
+					}
+				}
+				
+				PendingInterest pending = new PendingInterest(interest, received, Math.min(expires, received + _maxAge));
+				_interests.put(interest, pending);
+				if (null == named) {
+					named = new ArrayList<PendingInterest>(1);
+					_byName.put(interest.name(), named);
+				}
+				named.add(pending);
+				_bytes += pending._bytes;
+				
+				// Drop the oldest interests until back within bounds
+				Iterator<PendingInterest> it = _interests.values().iterator();
+				while ((_interests.size() > _maxInterests) || ((_bytes > _maxBytes) && !_interests.isEmpty())) {
+					PendingInterest oldest = it.next();
+					it.remove();
+					unlink(oldest);
+					if (Log.isLoggable(Log.FAC_REPO, Level.FINER))
+						Log.finer(Log.FAC_REPO, "MobileInterestStore buffer for {0} is full, dropping {1}", _namespace, oldest._interest.name());
+					if (oldest == pending)
+						return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Remove a stored Interest, e.g. once it has been redirected. Any
+		 * Interests aggregated into it are removed with it, as the redirect
+		 * answered them too.
+		 * 
+		 * @param interest
+		 * @return true if the interest was stored
+		 */
+		public boolean removeInterest(Interest interest) {
+			synchronized (_interests) {
+				PendingInterest pending = _interests.remove(interest);
+				if (null == pending)
+					return false;
+				unlink(pending);
+			}
+			return true;
+		}
+		
+		/**
+		 * Drop the oldest stored Interests while their requesters have all
+		 * expired. Interests behind a live one are left for interests() to
+		 * drop, so storing an Interest does not scan the whole buffer. Must
+		 * be called with _interests locked.
+		 */
+		protected void expireOldest(long now) {
+			Iterator<PendingInterest> it = _interests.values().iterator();
+			while (it.hasNext()) {
+				PendingInterest pending = it.next();
+				if (pending._expires > now)
+					break;
+				it.remove();
+				unlink(pending);
+				if (Log.isLoggable(Log.FAC_REPO, Level.FINEST))
+					Log.finest(Log.FAC_REPO, "MobileInterestStore dropping expired {0}", pending._interest.name());
+			}
+		}
+		
+		/**
+		 * Account for a stored Interest already removed from _interests. Must
+		 * be called with _interests locked.
+		 */
+		protected void unlink(PendingInterest pending) {
+			ArrayList<PendingInterest> named = _byName.get(pending._interest.name());
+			if (null != named) {
+				named.remove(pending);
+				if (named.isEmpty())
+					_byName.remove(pending._interest.name());
+			}
+			_bytes -= pending._bytes;
+		}
 	}
 	
 	/**
-	 * HashMap containing Vector<Interest> objects mapped to namespaces as keys
+	 * Determine whether the content redirected for stored would also satisfy
+	 * interest, so that interest need not be redirected itself. That is so if
+	 * the two differ only in nonce and lifetime, or if interest is for the
+	 * same name with no selectors at all.
+	 * 
+	 * @param stored
+	 * @param interest
 	 */
-	protected HashMap<String, MobileInterestData> _map;
+	protected static boolean aggregates(Interest stored, Interest interest) {
+		if (!stored.name().equals(interest.name()))
+			return false;
+		if (0 == stored.compareTo(interest))
+			return true;
+		return (null == interest.maxSuffixComponents()) && (null == interest.minSuffixComponents())
+				&& (null == interest.exclude()) && (null == interest.childSelector())
+				&& (null == interest.publisherID());
+	}
 	
 	/**
-	 * Constructor for MobileInterestStore.
+	 * Get the time in ms an Interest is pending for, from its InterestLifetime
+	 * in units of 1/4096 second, or the default reexpression period if it
+	 * has none.
+	 * 
+	 * @param interest
+	 */
+	protected static long lifetime(Interest interest) {
+		byte [] lifetime = interest.interestLifetime();
+		if ((null == lifetime) || (0 == lifetime.length))
+			return SystemConfiguration.INTEREST_REEXPRESSION_DEFAULT;
+		return (DataUtils.byteArrayToUnsignedLong(lifetime) * 1000) / 4096;
+	}
+	
+	/**
+	 * Get the encoded size of an Interest, or of its name if it cannot be
+	 * encoded.
+	 * 
+	 * @param interest
+	 */
+	protected static int size(Interest interest) {
+		try {
+			return interest.wireEncoding().length;
+		} catch (ContentEncodingException e) {
+			int size = 0;
+			for (int i = 0; i < interest.name().count(); i++)
+				size += interest.name().component(i).length;
+			return size;
+		}
+	}
+	
+	/**
+	 * Orders name components the same way ContentName does.
+	 */
+	protected static final Comparator<byte []> COMPONENT_COMPARATOR = new Comparator<byte []>() {
+		public int compare(byte [] o1, byte [] o2) {
+			return DataUtils.compare(o1, o2);
+		}
+	};
+	
+	/**
+	 * A node of the namespace trie, one per name component. Holds the data
+	 * for the namespace ending at this node, if one is registered.
+	 * 
+	 * Nodes are read without locking, so that interests under different
+	 * namespaces are looked up in parallel; they are only changed with
+	 * the store's _root locked.
+	 */
+	protected static class NamespaceNode {
+		protected volatile ConcurrentSkipListMap<byte [], NamespaceNode> _children;
+		protected volatile MobileInterestData _data;
+		
+		public NamespaceNode child(byte [] component) {
+			ConcurrentSkipListMap<byte [], NamespaceNode> children = _children;
+			return (null == children) ? null : children.get(component);
+		}
+		
+		public NamespaceNode addChild(byte [] component) {
+			NamespaceNode child = child(component);
+			if (null == child) {
+				if (null == _children)
+					_children = new ConcurrentSkipListMap<byte [], NamespaceNode>(COMPONENT_COMPARATOR);
+				child = new NamespaceNode();
+				_children.put(component, child);
+			}
+			return child;
+		}
+		
+		public boolean isEmpty() {
+			return (null == _data) && ((null == _children) || _children.isEmpty());
+		}
+	}
+	
+	/**
+	 * Root of the trie of registered namespaces, locked while the trie is
+	 * changed
+	 */
+	protected NamespaceNode _root;
+	
+	/**
+	 * Bounds on the interests stored for each namespace
+	 */
+	protected int _maxInterests;
+	protected long _maxBytes;
+	protected long _maxAge;
+	
+	/**
+	 * Constructor for MobileInterestStore, with the HomeAgent's default
+	 * bounds on the interests stored for each namespace.
 	 */
 	public MobileInterestStore(){
-		_map = new HashMap<String, MobileInterestData>();
+		this(HomeAgent.INTEREST_BUFFER_COUNT, HomeAgent.INTEREST_BUFFER_BYTES, HomeAgent.INTEREST_BUFFER_AGE);
+	}
+	
+	/**
+	 * Constructor for MobileInterestStore.
+	 * 
+	 * @param maxInterests most interests to store for each namespace
+	 * @param maxBytes most encoded bytes of interests to store for each namespace
+	 * @param maxAge most time in ms to store an interest for
+	 */
+	public MobileInterestStore(int maxInterests, long maxBytes, long maxAge){
+		_root = new NamespaceNode();
+		_maxInterests = maxInterests;
+		_maxBytes = maxBytes;
+		_maxAge = maxAge;
+	}
+	
+	/**
+	 * Parse a namespace given in its URI form.
+	 * 
+	 * @param key 
+	 * @throws IllegalArgumentException if key is not a valid name
+	 */
+	protected static ContentName namespace(String key){
+		try {
+			return ContentName.fromURI(key);
+		} catch (MalformedContentNameStringException e) {
+			throw new IllegalArgumentException("Invalid namespace: " + key, e);
+		}
+	}
+	
+	/**
+	 * Get the data registered for exactly the namespace provided.
+	 * 
+	 * @param namespace
+	 * @return the data, or null if the namespace is not registered
+	 */
+	protected MobileInterestData getData(ContentName namespace){
+		NamespaceNode node = _root;
+		for (int i = 0; (null != node) && (i < namespace.count()); i++)
+			node = node.child(namespace.component(i));
+		return (null == node) ? null : node._data;
+	}
+	
+	/**
+	 * Find the longest registered namespace that is a prefix of name, which
+	 * may be name itself.
+	 * 
+	 * @param name
+	 * @return the data for that namespace, or null if no namespace matches
+	 */
+	public MobileInterestData getLongestPrefixMatch(ContentName name){
+		NamespaceNode node = _root;
+		MobileInterestData match = _root._data;
+		for (int i = 0; i < name.count(); i++) {
+			node = node.child(name.component(i));
+			if (null == node)
+				break;
+			if (null != node._data)
+				match = node._data;
+		}
+		return match;
 	}
 	
 	/**
@@ -91,7 +601,16 @@ public class MobileInterestStore {
 	 * @param isForwardASAPEnabled 
 	 */
 	public void addNamespace(ContentName key, boolean isForwardASAPEnabled){
-		this.addNamespace(key.toString(), isForwardASAPEnabled);
+		MobileInterestData data = new MobileInterestData(isForwardASAPEnabled);
+		data._namespace = key;
+		data.bufferLimits(_maxInterests, _maxBytes, _maxAge);
+		
+		synchronized (_root) {
+			NamespaceNode node = _root;
+			for (int i = 0; i < key.count(); i++)
+				node = node.addChild(key.component(i));
+			node._data = data;
+		}
 	}
 	
 	/**
@@ -101,7 +620,7 @@ public class MobileInterestStore {
 	 * @param isForwardASAPEnabled 
 	 */
 	public void addNamespace(String key, boolean isForwardASAPEnabled){
-		_map.put(key, new MobileInterestData(isForwardASAPEnabled));
+		this.addNamespace(namespace(key), isForwardASAPEnabled);
 	}
 	
 	/**
@@ -110,7 +629,28 @@ public class MobileInterestStore {
 	 * @param key 
 	 */
 	public void removeNamespace(ContentName key){
-		this.removeNamespace(key.toString());
+		synchronized (_root) {
+			removeNamespace(_root, key, 0);
+		}
+	}
+	
+	/**
+	 * Remove the namespace key below node, which is at depth, pruning any
+	 * nodes left without namespaces under them.
+	 * 
+	 * @return true if node is now empty
+	 */
+	protected boolean removeNamespace(NamespaceNode node, ContentName key, int depth){
+		if (depth == key.count()) {
+			node._data = null;
+		} else {
+			NamespaceNode child = node.child(key.component(depth));
+			if (null == child)
+				return false;
+			if (removeNamespace(child, key, depth + 1))
+				node._children.remove(key.component(depth));
+		}
+		return node.isEmpty();
 	}
 	
 	/**
@@ -119,7 +659,7 @@ public class MobileInterestStore {
 	 * @param key 
 	 */
 	public void removeNamespace(String key){
-		_map.remove(key);
+		this.removeNamespace(namespace(key));
 	}
 	
 	/**
@@ -128,7 +668,20 @@ public class MobileInterestStore {
 	 * @param key 
 	 */
 	public boolean containsNamespace(ContentName key){
-		return this.containsNamespace(key.toString());
+		return null != getData(key);
+	}
+	
+	/**
+	 * Determine if a namespace is one that this object accepts Interests for,
+	 * without first copying it out of the name it is a prefix of.
+	 * 
+	 * @param key 
+	 */
+	public boolean containsNamespace(ContentNameSlice key){
+		NamespaceNode node = _root;
+		for (int i = 0; (null != node) && (i < key.count()); i++)
+			node = node.child(key.component(i));
+		return (null != node) && (null != node._data);
 	}
 	
 	/**
@@ -137,7 +690,7 @@ public class MobileInterestStore {
 	 * @param key 
 	 */
 	public boolean containsNamespace(String key){
-		return _map.containsKey(key);
+		return this.containsNamespace(namespace(key));
 	}
 	
 	/**
@@ -150,7 +703,12 @@ public class MobileInterestStore {
 	 * @return true if successful or false otherwise
 	 */
 	public boolean addInterest(ContentName namespace, Interest interest){
-		return this.addInterest(namespace.toString(), interest);
+		MobileInterestData dataObject = getData(namespace);
+		
+		if (dataObject == null)
+			return false;
+		
+		return dataObject.addInterest(interest);
 	}
 	
 	/**
@@ -163,19 +721,7 @@ public class MobileInterestStore {
 	 * @return true if successful or false otherwise
 	 */
 	public boolean addInterest(String namespace, Interest interest){
-		if(!this.containsNamespace(namespace))
-			return false;
-		
-		MobileInterestData dataObject = (MobileInterestData)_map.get(namespace);
-		
-		if (dataObject._isStoringEnabled == false)
-			return false;
-		
-		if (dataObject.interests().contains(interest))
-			return false;
-		
-		dataObject.interests().add(interest);
-		return true;
+		return this.addInterest(namespace(namespace), interest);
 	}
 	
 	/**
@@ -185,7 +731,12 @@ public class MobileInterestStore {
 	 * @return the interest stored for the given namespace
 	 */
 	public Vector<Interest> getInterests(ContentName namespace) {
-		return this.getInterests(namespace.toString());
+		MobileInterestData dataObject = getData(namespace);
+		
+		if (dataObject == null)
+			return null;
+		
+		return dataObject.interests();
 	}
 	
 	/**
@@ -195,10 +746,7 @@ public class MobileInterestStore {
 	 * @return the interest stored for the given namespace
 	 */
 	public Vector<Interest> getInterests(String namespace) {
-		if(!this.containsNamespace(namespace))
-			return null;
-		
-		return ((MobileInterestData)_map.get(namespace)).interests();
+		return this.getInterests(namespace(namespace));
 	}
 
 	/**
@@ -209,7 +757,13 @@ public class MobileInterestStore {
 	 * @return true if successful or false otherwise
 	 */
 	public boolean setRemoteName(ContentName namespace, ContentName remoteName) {
-		return this.setRemoteName(namespace.toString(), remoteName);
+		MobileInterestData dataObject = getData(namespace);
+		
+		if (dataObject == null)
+			return false;
+		
+		dataObject.remoteName(remoteName);
+		return true;
 	}
 	/**
 	 * Set the remote namespace for a namespace
@@ -219,11 +773,7 @@ public class MobileInterestStore {
 	 * @return true if successful or false otherwise
 	 */
 	public boolean setRemoteName(String namespace, ContentName remoteName) {
-		if(!this.containsNamespace(namespace))
-			return false;
-		
-		((MobileInterestData)_map.get(namespace)).remoteName(remoteName);
-		return true;
+		return this.setRemoteName(namespace(namespace), remoteName);
 	}
 
 	/**
@@ -233,7 +783,7 @@ public class MobileInterestStore {
 	 * @return remoteName
 	 */
 	public ContentName getRemoteName(ContentName namespace) {
-		return this.getRemoteName(namespace.toString());
+		return getData(namespace).remoteName();
 	}
 	
 	/**
@@ -244,7 +794,7 @@ public class MobileInterestStore {
 	 */
 	
 	public ContentName getRemoteName(String namespace) {
-		return ((MobileInterestData)_map.get(namespace)).remoteName();
+		return this.getRemoteName(namespace(namespace));
 	}
 
 	/**
@@ -254,7 +804,7 @@ public class MobileInterestStore {
 	 * @return remoteName
 	 */
 	public boolean isForwardASAPEnabled(ContentName namespace) {
-		return this.isForwardASAPEnabled(namespace.toString());
+		return getData(namespace).isForwardASAPEnabled();
 	}
 	
 	/**
@@ -264,18 +814,19 @@ public class MobileInterestStore {
 	 * @return remoteName
 	 */
 	public boolean isForwardASAPEnabled(String namespace) {
-		return ((MobileInterestData)_map.get(namespace)).isForwardASAPEnabled();
+		return this.isForwardASAPEnabled(namespace(namespace));
 	}
 
 	public boolean removeInterests(ContentName namespace) {
-		return this.removeInterests(namespace.toString());
+		MobileInterestData dataObject = getData(namespace);
 		
-	}
-	public boolean removeInterests(String namespace) {
-		if(!this.containsNamespace(namespace))
+		if (dataObject == null)
 			return false;
 		
-		((MobileInterestData)_map.get(namespace)).removeInterests();
+		dataObject.removeInterests();
 		return true;
 	}
+	public boolean removeInterests(String namespace) {
+		return this.removeInterests(namespace(namespace));
+	}
 }
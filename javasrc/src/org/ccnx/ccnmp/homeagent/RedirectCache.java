@@ -0,0 +1,158 @@
+package org.ccnx.ccnmp.homeagent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.ccnx.ccn.impl.CCNStats.CCNEnumStats;
+import org.ccnx.ccn.impl.support.Log;
+import org.ccnx.ccn.profiles.SegmentationProfile;
+import org.ccnx.ccn.protocol.ContentName;
+import org.ccnx.ccn.protocol.ContentObject;
+import org.ccnx.ccn.protocol.Interest;
+
+/**
+ * Holds the segments the HomeAgent has republished for redirected interests,
+ * keyed by the name the correspondent asked for, so that further requests
+ * for the same content can be answered by the HomeAgent instead of fetching
+ * it from the mobile node again.
+ *
+ * The cache holds at most a given number of content bytes, and evicts the
+ * least recently used content first. Content under a namespace must be
+ * invalidated when the mobile node moves or removes that namespace.
+ *
+ * @author ebollens
+ */
+public class RedirectCache {
+
+	/**
+	 * The segments republished for one original name, all of one version.
+	 */
+	protected static class CacheEntry {
+		protected ContentName _version;
+		protected ArrayList<ContentObject> _segments = new ArrayList<ContentObject>();
+		protected long _bytes;
+	}
+
+	/**
+	 * Entries in least to most recently used order
+	 */
+	protected LinkedHashMap<ContentName, CacheEntry> _entries = new LinkedHashMap<ContentName, CacheEntry>(16, 0.75f, true);
+
+	protected long _maxBytes;
+	protected long _bytes;
+
+	protected CCNEnumStats<HomeAgent.StatsEnum> _stats;
+
+	/**
+	 * Constructor for RedirectCache.
+	 *
+	 * @param maxBytes the most content bytes to hold
+	 * @param stats statistics to count hits, misses and evictions in
+	 */
+	public RedirectCache(long maxBytes, CCNEnumStats<HomeAgent.StatsEnum> stats) {
+		_maxBytes = maxBytes;
+		_stats = stats;
+	}
+
+	/**
+	 * Add republished segments for originalName. Segments of a different
+	 * version than those already held for originalName replace them.
+	 *
+	 * @param originalName the name the correspondent asked for
+	 * @param segments the republished segments
+	 */
+	public synchronized void add(ContentName originalName, ContentObject [] segments) {
+		if (0 == segments.length)
+			return;
+
+		ContentName version = SegmentationProfile.segmentRoot(segments[0].name());
+		CacheEntry entry = _entries.get(originalName);
+		if ((null != entry) && !entry._version.equals(version)) {
+			remove(originalName);
+			entry = null;
+		}
+		if (null == entry) {
+			entry = new CacheEntry();
+			entry._version = version;
+			_entries.put(originalName, entry);
+		}
+
+		for (ContentObject segment : segments) {
+			entry._segments.add(segment);
+			entry._bytes += segment.contentLength();
+			_bytes += segment.contentLength();
+		}
+
+		// Evict least recently used content, but never what was just added
+		Iterator<CacheEntry> it = _entries.values().iterator();
+		while ((_bytes > _maxBytes) && it.hasNext()) {
+			CacheEntry eldest = it.next();
+			if (eldest == entry)
+				continue;
+			it.remove();
+			_bytes -= eldest._bytes;
+			_stats.increment(HomeAgent.StatsEnum.RedirectCacheEvictions);
+		}
+		if (_bytes > _maxBytes)
+			remove(originalName);
+	}
+
+	/**
+	 * Find cached content matching an interest.
+	 *
+	 * @param interest
+	 * @return the matching segment, or null if none is cached
+	 */
+	public synchronized ContentObject get(Interest interest) {
+		ContentName name = interest.name();
+		for (int i = name.count(); i >= 0; i--) {
+			CacheEntry entry = _entries.get(name.prefix(i));
+			if (null == entry)
+				continue;
+			for (ContentObject segment : entry._segments) {
+				if (interest.matches(segment)) {
+					_stats.increment(HomeAgent.StatsEnum.RedirectCacheHits);
+					return segment;
+				}
+			}
+		}
+		_stats.increment(HomeAgent.StatsEnum.RedirectCacheMisses);
+		return null;
+	}
+
+	/**
+	 * Drop all content held for names under namespace.
+	 *
+	 * @param namespace
+	 */
+	public synchronized void invalidate(ContentName namespace) {
+		// Iterate over entries, as a get() would reorder an access ordered map
+		Iterator<Map.Entry<ContentName, CacheEntry>> it = _entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<ContentName, CacheEntry> entry = it.next();
+			if (namespace.isPrefixOf(entry.getKey())) {
+				_bytes -= entry.getValue()._bytes;
+				it.remove();
+				_stats.increment(HomeAgent.StatsEnum.RedirectCacheInvalidations);
+			}
+		}
+		if (Log.isLoggable(Log.FAC_REPO, Level.FINEST))
+			Log.finest(Log.FAC_REPO, "RedirectCache invalidated {0}, now holding {1} bytes", namespace, _bytes);
+	}
+
+	/**
+	 * @return the number of content bytes held
+	 */
+	public synchronized long size() {
+		return _bytes;
+	}
+
+	protected void remove(ContentName originalName) {
+		CacheEntry entry = _entries.remove(originalName);
+		if (null != entry)
+			_bytes -= entry._bytes;
+	}
+}
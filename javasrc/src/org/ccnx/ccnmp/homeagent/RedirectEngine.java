@@ -0,0 +1,150 @@
+package org.ccnx.ccnmp.homeagent;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.ccnx.ccn.impl.support.Log;
+import org.ccnx.ccn.protocol.Interest;
+
+/**
+ * Runs HomeAgent redirects on a bounded pool of worker threads, so that
+ * copying content from a mobile node's remote namespace back under the name
+ * a correspondent asked for does not hold up the repository's interest
+ * processing, and so that many redirects can be in flight at once.
+ *
+ * Each redirect reports its outcome to a RedirectListener, on the worker
+ * thread that ran it. A redirect for an original Interest that is already
+ * in flight, or that a redirect in flight would also satisfy, is not
+ * started again.
+ *
+ * @author ebollens
+ */
+public class RedirectEngine {
+
+	/**
+	 * Notified when a redirect started by {@link RedirectEngine#redirect} ends.
+	 */
+	public interface RedirectListener {
+		/**
+		 * The content for interest has been republished under the name of
+		 * originalInterest.
+		 */
+		public void redirectSucceeded(Interest interest, Interest originalInterest);
+
+		/**
+		 * The content for interest could not be republished.
+		 */
+		public void redirectFailed(Interest interest, Interest originalInterest, IOException e);
+	}
+
+	/**
+	 * Reference to the HomeAgent whose redirects this engine runs.
+	 */
+	protected HomeAgent _agent;
+
+	protected ThreadPoolExecutor _pool;
+
+	/**
+	 * Original interests with a redirect queued or running
+	 */
+	protected HashSet<Interest> _inFlight = new HashSet<Interest>();
+
+	/**
+	 * Constructor for RedirectEngine.
+	 *
+	 * @param agent the HomeAgent that does the redirects
+	 * @param threads number of redirects to run at once
+	 * @param queueSize number of redirects to queue before refusing more
+	 */
+	RedirectEngine(HomeAgent agent, int threads, int queueSize) {
+		_agent = agent;
+		_pool = new ThreadPoolExecutor(threads, threads,
+				HomeAgent.REDIRECT_THREAD_LIFE, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "HomeAgent redirect");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		_pool.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Queue a redirect of interest, reissued on behalf of originalInterest.
+	 *
+	 * @param interest the interest in the mobile node's remote namespace
+	 * @param originalInterest the interest the content is republished for
+	 * @param listener notified when the redirect ends, may be null
+	 * @return true if the redirect is queued or already in flight, false if
+	 * 	the engine is too busy to take it
+	 */
+	public boolean redirect(final Interest interest, final Interest originalInterest, final RedirectListener listener) {
+		synchronized (_inFlight) {
+			for (Interest inFlight : _inFlight) {
+				if (inFlight.equals(originalInterest) || MobileInterestStore.aggregates(inFlight, originalInterest)) {
+					if (Log.isLoggable(Log.FAC_REPO, Level.FINEST))
+						Log.finest(Log.FAC_REPO, "RedirectEngine already redirecting {0}", originalInterest.name());
+					return true;
+				}
+			}
+			_inFlight.add(originalInterest);
+		}
+
+		try {
+			_pool.execute(new Runnable() {
+				public void run() {
+					IOException failure = null;
+					try {
+						_agent.redirectInterest(interest, originalInterest);
+					} catch (IOException e) {
+						failure = e;
+					} finally {
+						synchronized (_inFlight) {
+							_inFlight.remove(originalInterest);
+						}
+					}
+
+					if (null == listener)
+						return;
+					if (null == failure) {
+						listener.redirectSucceeded(interest, originalInterest);
+					} else {
+						Log.warning(Log.FAC_REPO, "RedirectEngine failed to redirect {0} for {1}: {2}", interest.name(), originalInterest.name(), failure.getMessage());
+						listener.redirectFailed(interest, originalInterest, failure);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			synchronized (_inFlight) {
+				_inFlight.remove(originalInterest);
+			}
+			Log.warning(Log.FAC_REPO, "RedirectEngine is too busy to redirect {0}", originalInterest.name());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of redirects queued or running
+	 */
+	public int inFlight() {
+		synchronized (_inFlight) {
+			return _inFlight.size();
+		}
+	}
+
+	/**
+	 * Stop taking redirects. Redirects already queued still run.
+	 */
+	public void shutdown() {
+		_pool.shutdown();
+	}
+}
@@ -0,0 +1,267 @@
+package org.ccnx.ccnmp.homeagent;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.logging.Level;
+
+import org.ccnx.ccn.CCNContentHandler;
+import org.ccnx.ccn.CCNHandle;
+import org.ccnx.ccn.KeyManager;
+import org.ccnx.ccn.impl.CCNFlowControl;
+import org.ccnx.ccn.impl.security.crypto.CCNAggregatedSigner;
+import org.ccnx.ccn.impl.security.crypto.CCNMerkleTreeSigner;
+import org.ccnx.ccn.impl.support.Log;
+import org.ccnx.ccn.impl.support.Tuple;
+import org.ccnx.ccn.io.NoMatchingContentFoundException;
+import org.ccnx.ccn.profiles.SegmentationProfile;
+import org.ccnx.ccn.profiles.VersioningProfile;
+import org.ccnx.ccn.protocol.CCNTime;
+import org.ccnx.ccn.protocol.ContentName;
+import org.ccnx.ccn.protocol.ContentObject;
+import org.ccnx.ccn.protocol.Interest;
+import org.ccnx.ccn.protocol.KeyLocator;
+import org.ccnx.ccn.protocol.PublisherPublicKeyDigest;
+import org.ccnx.ccn.protocol.Signature;
+import org.ccnx.ccn.protocol.SignedInfo;
+
+/**
+ * Relays the segments of an object in a mobile node's remote namespace back
+ * under the name a correspondent asked for, as they arrive, instead of
+ * reading the whole object and writing it out again.
+ *
+ * Segments are fetched a window at a time, with the interests for a whole
+ * window outstanding at once. Each window is republished under the original
+ * name with the same segment numbers, content and final block ID, and signed
+ * with one Merkle tree signature. The first segment is republished on its
+ * own as soon as it arrives, so a correspondent starts receiving content
+ * about one round trip after the relay begins.
+ *
+ * Segment numbers are assumed to increase by one, as they do for content
+ * written by CCNFileOutputStream. No header is written for relayed content.
+ *
+ * @author ebollens
+ */
+public class SegmentRelay {
+
+	protected CCNHandle _handle;
+
+	/**
+	 * Number of segments fetched and signed together
+	 */
+	protected int _window;
+
+	/**
+	 * Time in ms to wait for a segment before giving up on the relay
+	 */
+	protected long _timeout;
+
+	protected CCNAggregatedSigner _signer = new CCNMerkleTreeSigner();
+
+	/**
+	 * Where relayed segments are kept for later requests, may be null
+	 */
+	protected RedirectCache _cache;
+
+	/**
+	 * Collects the segments of one window as they arrive.
+	 */
+	protected static class WindowHandler implements CCNContentHandler {
+		protected HashMap<Long, ContentObject> _segments = new HashMap<Long, ContentObject>();
+
+		public synchronized Interest handleContent(ContentObject data, Interest interest) {
+			_segments.put(SegmentationProfile.getSegmentNumber(data.name()), data);
+			notifyAll();
+			return null;
+		}
+
+		/**
+		 * @return the segment, or null if it has not arrived
+		 */
+		public synchronized ContentObject segment(long segmentNumber) {
+			return _segments.get(segmentNumber);
+		}
+
+		/**
+		 * Wait until the segments first up to last, or up to the final segment
+		 * of the object if that comes sooner, have all arrived.
+		 *
+		 * @return false if they had not all arrived by the deadline
+		 */
+		public synchronized boolean waitFor(long first, long last, long deadline) throws InterruptedException {
+			long segmentNumber = first;
+			while (segmentNumber <= last) {
+				ContentObject segment = _segments.get(segmentNumber);
+				if (null == segment) {
+					long wait = deadline - System.currentTimeMillis();
+					if (wait <= 0)
+						return false;
+					wait(wait);
+					continue;
+				}
+				if (SegmentationProfile.isLastSegment(segment))
+					break;
+				segmentNumber++;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Constructor for SegmentRelay.
+	 *
+	 * @param handle handle to fetch and publish content with
+	 * @param window number of segments to fetch and sign together
+	 * @param timeout time in ms to wait for a segment
+	 */
+	public SegmentRelay(CCNHandle handle, int window, long timeout) {
+		this(handle, window, timeout, null);
+	}
+
+	/**
+	 * Constructor for SegmentRelay.
+	 *
+	 * @param handle handle to fetch and publish content with
+	 * @param window number of segments to fetch and sign together
+	 * @param timeout time in ms to wait for a segment
+	 * @param cache cache to add relayed segments to, may be null
+	 */
+	public SegmentRelay(CCNHandle handle, int window, long timeout, RedirectCache cache) {
+		_handle = handle;
+		_window = window;
+		_timeout = timeout;
+		_cache = cache;
+	}
+
+	/**
+	 * Relay remoteName, or the latest version of it if it has no version, to
+	 * a new version of the name of originalInterest. The first segment is
+	 * sent in answer to originalInterest.
+	 *
+	 * @param remoteName the name of the object in the mobile node's namespace
+	 * @param originalInterest the interest to republish it for
+	 * @return the versioned name the object was republished under
+	 * @throws IOException if the object cannot be fetched or republished
+	 */
+	public ContentName relay(ContentName remoteName, Interest originalInterest) throws IOException {
+
+		ContentObject first;
+		if (VersioningProfile.hasTerminalVersion(remoteName)) {
+			Tuple<ContentName, byte []> version = VersioningProfile.cutTerminalVersion(remoteName);
+			first = SegmentationProfile.getSegment(new ContentName(version.first(), version.second()), null, null, _timeout, _handle.defaultVerifier(), _handle);
+		} else {
+			first = VersioningProfile.getFirstBlockOfLatestVersion(remoteName, null, null, _timeout, _handle.defaultVerifier(), _handle);
+		}
+		if (null == first)
+			throw new NoMatchingContentFoundException("Cannot get first segment of " + remoteName);
+
+		ContentName remoteVersion = SegmentationProfile.segmentRoot(first.name());
+		ContentName versionedName = new ContentName(originalInterest.name(), new CCNTime());
+
+		if (Log.isLoggable(Log.FAC_REPO, Level.FINER))
+			Log.finer(Log.FAC_REPO, "SegmentRelay relaying {0} to {1}", remoteVersion, versionedName);
+
+		KeyManager keyManager = _handle.keyManager();
+		PrivateKey signingKey = keyManager.getDefaultSigningKey();
+		PublisherPublicKeyDigest publisher = keyManager.getPublisherKeyID(signingKey);
+		KeyLocator locator = keyManager.getKeyLocator(signingKey);
+
+		CCNFlowControl flowControl = new CCNFlowControl(versionedName, originalInterest, _handle);
+		try {
+			ArrayList<ContentObject> window = new ArrayList<ContentObject>(_window);
+			window.add(first);
+			long nextSegment = SegmentationProfile.getSegmentNumber(first.name()) + 1;
+			boolean done = SegmentationProfile.isLastSegment(first);
+
+			while (true) {
+				ContentObject [] relayed = publish(window, versionedName, flowControl, signingKey, publisher, locator);
+				if (null != _cache)
+					_cache.add(originalInterest.name(), relayed);
+				if (done)
+					break;
+
+				window.clear();
+				done = fetchWindow(remoteVersion, nextSegment, window);
+				nextSegment += window.size();
+			}
+
+			flowControl.beforeClose();
+			flowControl.afterClose();
+		} finally {
+			flowControl.close();
+		}
+		return versionedName;
+	}
+
+	/**
+	 * Fetch up to _window segments of remoteVersion starting at firstSegment,
+	 * with all of their interests outstanding at once.
+	 *
+	 * @param window filled with the segments fetched, in order
+	 * @return true if the final segment of the object was fetched
+	 * @throws IOException if a segment cannot be fetched or does not verify
+	 */
+	protected boolean fetchWindow(ContentName remoteVersion, long firstSegment, ArrayList<ContentObject> window) throws IOException {
+		long lastSegment = firstSegment + _window - 1;
+		WindowHandler handler = new WindowHandler();
+		ArrayList<Interest> interests = new ArrayList<Interest>(_window);
+		for (long i = firstSegment; i <= lastSegment; i++) {
+			Interest interest = SegmentationProfile.segmentInterest(remoteVersion, i, null);
+			interests.add(interest);
+			_handle.expressInterest(interest, handler);
+		}
+
+		try {
+			handler.waitFor(firstSegment, lastSegment, System.currentTimeMillis() + _timeout);
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted relaying " + remoteVersion);
+		} finally {
+			for (Interest interest : interests)
+				_handle.cancelInterest(interest, handler);
+		}
+
+		for (long i = firstSegment; i <= lastSegment; i++) {
+			ContentObject segment = handler.segment(i);
+			if (null == segment)
+				throw new NoMatchingContentFoundException("Cannot get segment " + i + " of " + remoteVersion);
+			if (!_handle.defaultVerifier().verify(segment))
+				throw new IOException("Segment " + i + " of " + remoteVersion + " did not verify");
+			window.add(segment);
+			if (SegmentationProfile.isLastSegment(segment))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Republish a window of segments under versionedName, signed together.
+	 *
+	 * @return the republished segments
+	 */
+	protected ContentObject [] publish(ArrayList<ContentObject> window, ContentName versionedName, CCNFlowControl flowControl,
+			PrivateKey signingKey, PublisherPublicKeyDigest publisher, KeyLocator locator) throws IOException {
+		CCNTime timestamp = new CCNTime();
+		ContentObject [] relayed = new ContentObject[window.size()];
+		for (int i = 0; i < relayed.length; i++) {
+			ContentObject segment = window.get(i);
+			SignedInfo remoteInfo = segment.signedInfo();
+			ContentName name = SegmentationProfile.segmentName(versionedName, SegmentationProfile.getSegmentNumber(segment.name()));
+			SignedInfo signedInfo = new SignedInfo(publisher, timestamp, remoteInfo.getType(), locator,
+					remoteInfo.emptyFreshnessSeconds() ? null : remoteInfo.getFreshnessSeconds(), remoteInfo.getFinalBlockID());
+			relayed[i] = new ContentObject(name, signedInfo, segment.content(), (Signature) null);
+		}
+
+		try {
+			if (relayed.length == 1)
+				relayed[0].sign(signingKey);
+			else
+				_signer.signBlocks(relayed, signingKey);
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Cannot sign relayed segments of " + versionedName + ": " + e.getMessage());
+		}
+		flowControl.put(relayed);
+		return relayed;
+	}
+}
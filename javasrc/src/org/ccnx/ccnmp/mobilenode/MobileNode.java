@@ -9,6 +9,11 @@ import java.io.InputStreamReader;
 import java.security.InvalidKeyException;
 import java.security.PrivateKey;
 import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.ccnx.ccn.CCNContentHandler;
 import org.ccnx.ccn.CCNHandle;
@@ -16,7 +21,7 @@ import org.ccnx.ccn.CCNInterestHandler;
 import org.ccnx.ccn.KeyManager;
 import org.ccnx.ccn.config.ConfigurationException;
 import org.ccnx.ccn.impl.support.Log;
-import org.ccnx.ccn.io.CCNFileOutputStream;
+import org.ccnx.ccn.io.CCNFileSegmentCache;
 import org.ccnx.ccn.profiles.SegmentationProfile;
 import org.ccnx.ccn.profiles.metadata.MetadataProfile;
 import org.ccnx.ccn.protocol.CCNTime;
@@ -29,24 +34,48 @@ import org.ccnx.ccn.protocol.PublisherPublicKeyDigest;
 import org.ccnx.ccn.protocol.SignedInfo;
 import org.ccnx.ccn.protocol.SignedInfo.ContentType;
 import org.ccnx.ccnmp.CCNMP;
+import org.ccnx.ccnmp.NamespaceBatch;
 
 public class MobileNode implements Runnable, CCNInterestHandler, CCNContentHandler {
 	
-	private static int BUF_SIZE = 4096;
+	/**
+	 * Time in ms a prefix is still served for after moving away from it, so
+	 * that interests already sent there are answered.
+	 */
+	public final static long HANDOVER_GRACE_PERIOD = 10000;
 	
 	protected ContentName _homePrefix;
-	protected ContentName _remotePrefix;
+	protected volatile ContentName _remotePrefix;
+	
+	/**
+	 * Prefixes moved away from but still served until their grace period
+	 * ends, each with the number of the move that started its grace period
+	 */
+	protected ConcurrentHashMap<ContentName, Long> _retiringPrefixes = new ConcurrentHashMap<ContentName, Long>();
+	protected AtomicLong _moveCount = new AtomicLong(0);
+	protected Timer _handoverTimer;
 	protected boolean _isForwardASAPEnabled;
 	protected long _refreshRate;
 	protected String _filePrefix;
 	protected File _rootDirectory;
 	protected CCNHandle _handle;
 	
+	/**
+	 * Signed segments of the files served, so each version is signed once
+	 */
+	protected CCNFileSegmentCache _fileCache;
+	
+	/**
+	 * The notify command left with the home agent, when the home agent tells
+	 * us of pending interests instead of us polling it
+	 */
+	protected Interest _notifyInterest;
+	
 	private final Thread _thd;
 	private boolean _finished;
 	
 	public static void usage() {
-		System.err.println("usage: MobileNode <root directory> <home namespace> <refresh rate in sec> [<isForwardASAPEnabled>default:false <foreign namespace>default:<home namespace>]");
+		System.err.println("usage: MobileNode <root directory> <home namespace> <refresh rate in sec, 0 to be notified by the home agent instead> [<isForwardASAPEnabled>default:false <foreign namespace>default:<home namespace>]");
 	}
 
 	/**
@@ -136,6 +165,8 @@ public class MobileNode implements Runnable, CCNInterestHandler, CCNContentHandl
 			throw new IOException("Cannot serve files from directory " + filePrefix + ": directory does not exist!");
 		}
 		_handle = CCNHandle.open();
+		_fileCache = new CCNFileSegmentCache(_handle);
+		_handoverTimer = new Timer(true);
 
 		_thd = new Thread(this, "MobileNode");
 		_finished = false;
@@ -150,7 +181,10 @@ public class MobileNode implements Runnable, CCNInterestHandler, CCNContentHandl
 			System.exit(1);
 		}
 		
-		_thd.start();
+		if (_refreshRate > 0)
+			_thd.start();
+		else
+			awaitInterests();
 	}
 	
 	public void run() {
@@ -176,11 +210,13 @@ public class MobileNode implements Runnable, CCNInterestHandler, CCNContentHandl
      */
 	public void shutdown() /*throws IOException*/ {
 		if (null != _handle) {
+			_fileCache.close();
 			_handle.close();
 			//_handle.unregisterFilter(_remotePrefix, this);
 			Log.info("Shutting down file proxy for " + _filePrefix + " on CCNx namespace " + _remotePrefix + "...");
 		}
 		// TODO unregister itself at homeagent
+		_handoverTimer.cancel();
 		_finished = true;
 		_thd.interrupt();
 	}
@@ -188,6 +224,54 @@ public class MobileNode implements Runnable, CCNInterestHandler, CCNContentHandl
 	@Override
 	public Interest handleContent(ContentObject data, Interest interest) {
 		Log.info("MobileNode: get content {0} for interest {1}.",data, interest);
+		
+		try {
+			if (commandName(CCNMP.COMMAND_BATCH).isPrefixOf(data.name())) {
+				boolean [] statuses = NamespaceBatch.decodeStatuses(data.content());
+				for (int i = 0; i < statuses.length; i++) {
+					if (!statuses[i])
+						Log.warning("MobileNode: home agent refused command {0} of batch {1}", i, data.name());
+				}
+				return null;
+			}
+		} catch (MalformedContentNameStringException e) {
+			Log.warning("MobileNode: cannot handle response {0}: {1}", data.name(), e.getMessage());
+			return null;
+		}
+		
+		if (_refreshRate > 0)
+			return null;
+		
+		try {
+			boolean success = Arrays.equals(CCNMP.RESPONSE_SUCCESS.getBytes(), data.content());
+			if (commandName(CCNMP.COMMAND_NOTIFY).isPrefixOf(data.name())) {
+				// The home agent has interests for us, or no longer knows us.
+				// The next notify command is left once the redirect is answered,
+				// by when the home agent has offered us what it holds.
+				if (success) {
+					redirect();
+				} else {
+					// It has forgotten our namespace, say after a restart or a remove.
+					// Register again; the next notify command is left once that is answered.
+					Log.warning("MobileNode: home agent refused notify command {0}, registering again", data.name());
+					register();
+				}
+			} else if (commandName(CCNMP.COMMAND_REDIRECT).isPrefixOf(data.name())) {
+				if (!success)
+					Log.warning("MobileNode: home agent refused redirect command {0}", data.name());
+				awaitInterests();
+			} else if (commandName(CCNMP.COMMAND_REGISTER).isPrefixOf(data.name())) {
+				// Anything sent before the registration was refused, try again
+				if (success)
+					awaitInterests();
+				else
+					Log.warning("MobileNode: home agent refused registration {0}", data.name());
+			}
+		} catch (IOException e) {
+			Log.warning("MobileNode: cannot handle response {0}: {1}", data.name(), e.getMessage());
+		} catch (MalformedContentNameStringException e) {
+			Log.warning("MobileNode: cannot handle response {0}: {1}", data.name(), e.getMessage());
+		}
 		return null;
 	}
 
@@ -198,7 +282,7 @@ public class MobileNode implements Runnable, CCNInterestHandler, CCNContentHandl
 		Log.info("MobileNode main responder: got new interest: {0}", interest);
 
 		// Test to see if we need to respond to it.
-		if (!_remotePrefix.isPrefixOf(interest.name())) {
+		if (null == servingPrefix(interest.name())) {
 			Log.info("Unexpected: got an interest not matching our prefix (which is {0})", _remotePrefix);
 			return false;
 		}
@@ -242,19 +326,75 @@ public class MobileNode implements Runnable, CCNInterestHandler, CCNContentHandl
 		}
 	}
 
+	/**
+	 * Move to a new remote prefix, make-before-break: the new prefix is
+	 * served before the home agent is told to redirect to it, and the old
+	 * one is still served for HANDOVER_GRACE_PERIOD after, so no interest
+	 * sent to either during the move goes unanswered.
+	 * 
+	 * @param newRemoteName
+	 * @throws MalformedContentNameStringException
+	 * @throws IOException
+	 */
 	public boolean move(String newRemoteName) throws MalformedContentNameStringException, IOException {
-		_handle.unregisterFilter(_remotePrefix, this);
+		final ContentName oldPrefix = _remotePrefix;
+		ContentName newPrefix = ContentName.fromURI(newRemoteName);
+		if (newPrefix.equals(oldPrefix))
+			return redirect();
 		
-		_remotePrefix = ContentName.fromURI(newRemoteName);
-
-		_handle.registerFilter(_remotePrefix, this);
+		if (null == _retiringPrefixes.remove(newPrefix))
+			_handle.registerFilter(newPrefix, this);
+		final Long move = _moveCount.incrementAndGet();
+		_retiringPrefixes.put(oldPrefix, move);
+		_remotePrefix = newPrefix;
+		
+		// The home agent sends its stored interests on to the new prefix at once
+		boolean redirected = redirect();
+		
+		_handoverTimer.schedule(new TimerTask() {
+			public void run() {
+				retire(oldPrefix, move);
+			}
+		}, HANDOVER_GRACE_PERIOD);
 		
-		return redirect();
+		return redirected;
+	}
+	
+	/**
+	 * Stop serving a prefix moved away from, unless it has been moved back to
+	 * or moved away from again since, which starts a new grace period.
+	 * 
+	 * @param prefix
+	 * @param move the move that started the grace period ending now
+	 */
+	protected void retire(ContentName prefix, Long move) {
+		if (_retiringPrefixes.remove(prefix, move)) {
+			_handle.unregisterFilter(prefix, this);
+			Log.info("MobileNode: no longer serving {0}.", prefix);
+		}
+	}
+	
+	/**
+	 * Find the prefix a name is served under: the current remote prefix, or
+	 * one still in its grace period.
+	 * 
+	 * @param name
+	 * @return the prefix, or null if name is not under any served prefix
+	 */
+	protected ContentName servingPrefix(ContentName name) {
+		ContentName prefix = _remotePrefix;
+		if (prefix.isPrefixOf(name))
+			return prefix;
+		for (ContentName retiring : _retiringPrefixes.keySet()) {
+			if (retiring.isPrefixOf(name))
+				return retiring;
+		}
+		return null;
 	}
 	
 	protected File ccnNameToFilePath(ContentName name) {
 		
-		ContentName fileNamePostfix = name.postfix(_remotePrefix);
+		ContentName fileNamePostfix = name.postfix(servingPrefix(name));
 		assert (fileNamePostfix != null);	// _remotePrefix is not a prefix of name
 
 		File fileToWrite = new File(_rootDirectory, fileNamePostfix.toString());
@@ -320,49 +460,27 @@ public class MobileNode implements Runnable, CCNInterestHandler, CCNContentHandl
 	
 	/**
 	 * Actually write the file; should probably run in a separate thread.
-	 * Copied from CCNFileProxy
+	 * Each version of a file is segmented and signed once, later requests
+	 * are answered from _fileCache.
 	 * @param fileNamePostfix
 	 * @throws IOException 
 	 */
 	protected boolean writeFile(Interest outstandingInterest) throws IOException {
 		
-		File fileToWrite = ccnNameToFilePath(outstandingInterest.name());
+		// An interest for the first segment names the file the same way as one without a segment
+		ContentName fileName = SegmentationProfile.segmentRoot(outstandingInterest.name());
+		File fileToWrite = ccnNameToFilePath(fileName);
 		Log.info("MobileNode: extracted request for file: " + fileToWrite.getAbsolutePath() + " exists? ", fileToWrite.exists());
 		if (!fileToWrite.exists()) {
 			Log.warning("MobileNode: File {0} does not exist. Ignoring request.", fileToWrite.getAbsoluteFile());
 			return false;
 		}
 		
-		FileInputStream fis = null;
-		try {
-			fis = new FileInputStream(fileToWrite);
-		} catch (FileNotFoundException fnf) {
-			Log.warning("MobileNode: file we expected to exist doesn't exist: {0}.", fileToWrite.getAbsolutePath());
-			return false;
-		}
-		
 		// Set the version of the CCN content to be the last modification time of the file.
 		CCNTime modificationTime = new CCNTime(fileToWrite.lastModified());
-		ContentName versionedName = new ContentName(outstandingInterest.name(), modificationTime);
+		ContentName versionedName = new ContentName(fileName, modificationTime);
 
-		// CCNFileOutputStream will use the version on a name you hand it (or if the name
-		// is unversioned, it will version it).
-		CCNFileOutputStream ccnout = new CCNFileOutputStream(versionedName, _handle);
-		
-		// We have an interest already, register it so we can write immediately.
-		ccnout.addOutstandingInterest(outstandingInterest);
-		
-		byte [] buffer = new byte[BUF_SIZE];
-		
-		int read = fis.read(buffer);
-		while (read >= 0) {
-			ccnout.write(buffer, 0, read);
-			read = fis.read(buffer);
-		} 
-		fis.close();
-		ccnout.close(); // will flush
-		
-		return true;
+		return _fileCache.serve(fileToWrite, versionedName, outstandingInterest);
 	}
 	
 	protected boolean register() throws IOException {
@@ -397,6 +515,58 @@ public class MobileNode implements Runnable, CCNInterestHandler, CCNContentHandl
 		return true;
 	}
 	
+	/**
+	 * Leave a notify command with the home agent, which it answers once
+	 * interests are stored for us, replacing any notify command already left.
+	 * 
+	 * @throws IOException 
+	 */
+	protected synchronized boolean awaitInterests() throws IOException {
+		ContentName name;
+		try {
+			name = commandName(CCNMP.COMMAND_NOTIFY);
+		} catch (MalformedContentNameStringException e) {
+			Log.warning("MobileNode notify commnad generation failed");
+			return false;
+		}
+		if (null != _notifyInterest)
+			_handle.cancelInterest(_notifyInterest, this);
+		
+		CCNTime timestamp = new CCNTime();
+		ContentName versionedName = new ContentName(name, timestamp);
+		_notifyInterest = new Interest(versionedName);
+		_handle.expressInterest(_notifyInterest, this);
+		Log.info("MobileNode: waiting for interests: {0}.", name);
+		return true;
+	}
+	
+	/**
+	 * Send several namespace commands to the home agent in one interest,
+	 * answered with one status per command.
+	 * 
+	 * @param batch
+	 * @throws IOException 
+	 */
+	protected boolean batch(NamespaceBatch batch) throws IOException {
+		ContentName name;
+		try {
+			name = commandName(CCNMP.COMMAND_BATCH);
+		} catch (MalformedContentNameStringException e) {
+			Log.warning("MobileNode batch commnad generation failed");
+			return false;
+		}
+		CCNTime timestamp = new CCNTime();
+		ContentName versionedName = new ContentName(new ContentName(name, batch.encode()), timestamp);
+		Interest interest = new Interest(versionedName);
+		_handle.expressInterest(interest, this);
+		Log.info("MobileNode: sending batch of {0} commands: {1}.", batch.size(), name);
+		return true;
+	}
+	
+	protected ContentName commandName(String command) throws MalformedContentNameStringException {
+		return _homePrefix.append(CCNMP.COMMAND_ROOT + "/" + command);
+	}
+	
 	protected boolean remove() throws IOException {
 		ContentName name;
 		try {